@@ -0,0 +1,137 @@
+package org.yan.application.admin.mcp.dto;
+
+/** MCP运行指标 */
+public class McpMetricsDTO {
+
+    /** 握手成功次数 */
+    private long handshakes;
+
+    /** 平均握手耗时（毫秒） */
+    private double averageHandshakeMillis;
+
+    /** 握手失败次数 */
+    private long handshakeFailures;
+
+    /** 连接断开次数 */
+    private long disconnects;
+
+    /** 工具调用次数 */
+    private long calls;
+
+    /** 因并发已满被拒绝的调用次数 */
+    private long rejectedCalls;
+
+    /** 空闲回收的客户端数 */
+    private long evictions;
+
+    /** 当前登记的客户端数 */
+    private int clients;
+
+    /** 网关调用次数，包括部署和就绪探测 */
+    private long gatewayCalls;
+
+    /** 网关调用失败次数 */
+    private long gatewayErrors;
+
+    /** 网关调用平均耗时（毫秒） */
+    private double gatewayAverageLatencyMillis;
+
+    /** 网关调用错误率 */
+    private double gatewayErrorRate;
+
+    public long getHandshakes() {
+        return handshakes;
+    }
+
+    public void setHandshakes(long handshakes) {
+        this.handshakes = handshakes;
+    }
+
+    public double getAverageHandshakeMillis() {
+        return averageHandshakeMillis;
+    }
+
+    public void setAverageHandshakeMillis(double averageHandshakeMillis) {
+        this.averageHandshakeMillis = averageHandshakeMillis;
+    }
+
+    public long getHandshakeFailures() {
+        return handshakeFailures;
+    }
+
+    public void setHandshakeFailures(long handshakeFailures) {
+        this.handshakeFailures = handshakeFailures;
+    }
+
+    public long getDisconnects() {
+        return disconnects;
+    }
+
+    public void setDisconnects(long disconnects) {
+        this.disconnects = disconnects;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public void setCalls(long calls) {
+        this.calls = calls;
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    public void setRejectedCalls(long rejectedCalls) {
+        this.rejectedCalls = rejectedCalls;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public void setClients(int clients) {
+        this.clients = clients;
+    }
+
+    public long getGatewayCalls() {
+        return gatewayCalls;
+    }
+
+    public void setGatewayCalls(long gatewayCalls) {
+        this.gatewayCalls = gatewayCalls;
+    }
+
+    public long getGatewayErrors() {
+        return gatewayErrors;
+    }
+
+    public void setGatewayErrors(long gatewayErrors) {
+        this.gatewayErrors = gatewayErrors;
+    }
+
+    public double getGatewayAverageLatencyMillis() {
+        return gatewayAverageLatencyMillis;
+    }
+
+    public void setGatewayAverageLatencyMillis(double gatewayAverageLatencyMillis) {
+        this.gatewayAverageLatencyMillis = gatewayAverageLatencyMillis;
+    }
+
+    public double getGatewayErrorRate() {
+        return gatewayErrorRate;
+    }
+
+    public void setGatewayErrorRate(double gatewayErrorRate) {
+        this.gatewayErrorRate = gatewayErrorRate;
+    }
+}
@@ -0,0 +1,44 @@
+package org.yan.application.admin.mcp.service;
+
+import org.springframework.stereotype.Service;
+import org.yan.application.admin.mcp.dto.McpMetricsDTO;
+import org.yan.infrastructure.mcp_gateway.MCPGatewayMetrics;
+import org.yan.infrastructure.mcp_gateway.MCPGatewayService;
+import org.yan.infrastructure.mcp_gateway.McpClientPool;
+import org.yan.infrastructure.mcp_gateway.McpClientPoolMetrics;
+
+/** 管理员MCP运行状态查询 */
+@Service
+public class AdminMcpAppService {
+
+    private final McpClientPool mcpClientPool;
+
+    private final MCPGatewayService mcpGatewayService;
+
+    public AdminMcpAppService(McpClientPool mcpClientPool, MCPGatewayService mcpGatewayService) {
+        this.mcpClientPool = mcpClientPool;
+        this.mcpGatewayService = mcpGatewayService;
+    }
+
+    /** 获取MCP客户端池和网关调用的运行指标
+     *
+     * @return 指标快照 */
+    public McpMetricsDTO getMetrics() {
+        McpClientPoolMetrics poolMetrics = mcpClientPool.getMetrics();
+        McpMetricsDTO dto = new McpMetricsDTO();
+        dto.setHandshakes(poolMetrics.getHandshakes());
+        dto.setAverageHandshakeMillis(poolMetrics.getAverageHandshakeMillis());
+        dto.setHandshakeFailures(poolMetrics.getHandshakeFailures());
+        dto.setDisconnects(poolMetrics.getDisconnects());
+        dto.setCalls(poolMetrics.getCalls());
+        dto.setRejectedCalls(poolMetrics.getRejectedCalls());
+        dto.setEvictions(poolMetrics.getEvictions());
+        dto.setClients(mcpClientPool.size());
+        MCPGatewayMetrics gatewayMetrics = mcpGatewayService.getMetrics();
+        dto.setGatewayCalls(gatewayMetrics.getCalls());
+        dto.setGatewayErrors(gatewayMetrics.getErrors());
+        dto.setGatewayAverageLatencyMillis(gatewayMetrics.getAverageLatencyMillis());
+        dto.setGatewayErrorRate(gatewayMetrics.getErrorRate());
+        return dto;
+    }
+}
@@ -69,8 +69,8 @@ public class AgentSessionAppService {
         AgentEntity agent = agentServiceDomainService.getAgentById(agentId);
         Boolean multiModal = agent.getMultiModal();
         if (!agent.getUserId().equals(userId)) {
-            AgentVersionEntity latestAgentVersion = agentServiceDomainService.getLatestAgentVersion(agentId);
-            multiModal = latestAgentVersion.getMultiModal();
+            AgentVersionEntity latestAgentVersion = agentServiceDomainService.getPublishedAgentVersion(agentId);
+            multiModal = latestAgentVersion != null ? latestAgentVersion.getMultiModal() : multiModal;
         }
 
         List<SessionDTO> dtOs = SessionAssembler.toDTOs(sessions);
@@ -24,18 +24,23 @@ import org.yan.domain.conversation.model.ContextEntity;
 import org.yan.domain.conversation.model.MessageEntity;
 import org.yan.domain.conversation.model.SessionEntity;
 import org.yan.domain.conversation.service.ContextDomainService;
+import org.yan.domain.conversation.service.ContextSummaryDomainService;
 import org.yan.domain.conversation.service.ConversationDomainService;
 import org.yan.domain.conversation.service.MessageDomainService;
 import org.yan.domain.conversation.service.SessionDomainService;
 import org.yan.domain.llm.model.ModelEntity;
 import org.yan.domain.llm.model.ProviderEntity;
 import org.yan.domain.llm.service.LLMDomainService;
+import org.yan.domain.quota.service.QuotaDomainService;
 import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
 import org.yan.domain.token.model.TokenMessage;
 import org.yan.domain.token.model.TokenProcessResult;
 import org.yan.domain.token.model.config.TokenOverflowConfig;
 import org.yan.domain.token.service.TokenDomainService;
+import org.yan.domain.tool.model.ToolEntity;
 import org.yan.domain.tool.model.UserToolEntity;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.domain.tool.service.ToolDomainService;
 import org.yan.domain.tool.service.UserToolDomainService;
 import org.yan.infrastructure.exception.BusinessException;
 import org.yan.infrastructure.llm.config.ProviderConfig;
@@ -44,7 +49,11 @@ import org.yan.infrastructure.transport.MessageTransportFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /** 对话应用服务，用于适配域层的对话服务 */
@@ -57,6 +66,7 @@ public class ConversationAppService {
     private final AgentWorkspaceDomainService agentWorkspaceDomainService;
     private final LLMDomainService llmDomainService;
     private final ContextDomainService contextDomainService;
+    private final ContextSummaryDomainService contextSummaryDomainService;
     private final TokenDomainService tokenDomainService;
     private final MessageDomainService messageDomainService;
 
@@ -64,29 +74,36 @@ public class ConversationAppService {
     private final MessageTransportFactory transportFactory;
 
     private final UserToolDomainService userToolDomainService;
+    private final ToolDomainService toolDomainService;
     private final UserSettingsAppService userSettingsAppService;
     private final PreviewMessageHandler previewMessageHandler;
+    private final QuotaDomainService quotaDomainService;
 
     public ConversationAppService(ConversationDomainService conversationDomainService,
             SessionDomainService sessionDomainService, AgentDomainService agentDomainService,
             AgentWorkspaceDomainService agentWorkspaceDomainService, LLMDomainService llmDomainService,
-            ContextDomainService contextDomainService, TokenDomainService tokenDomainService,
-            MessageDomainService messageDomainService, MessageHandlerFactory messageHandlerFactory,
-            MessageTransportFactory transportFactory, UserToolDomainService toolDomainService,
-            UserSettingsAppService userSettingsAppService, PreviewMessageHandler previewMessageHandler) {
+            ContextDomainService contextDomainService, ContextSummaryDomainService contextSummaryDomainService,
+            TokenDomainService tokenDomainService, MessageDomainService messageDomainService,
+            MessageHandlerFactory messageHandlerFactory, MessageTransportFactory transportFactory,
+            UserToolDomainService userToolDomainService, ToolDomainService toolDomainService,
+            UserSettingsAppService userSettingsAppService, PreviewMessageHandler previewMessageHandler,
+            QuotaDomainService quotaDomainService) {
         this.conversationDomainService = conversationDomainService;
         this.sessionDomainService = sessionDomainService;
         this.agentDomainService = agentDomainService;
         this.agentWorkspaceDomainService = agentWorkspaceDomainService;
         this.llmDomainService = llmDomainService;
         this.contextDomainService = contextDomainService;
+        this.contextSummaryDomainService = contextSummaryDomainService;
         this.tokenDomainService = tokenDomainService;
         this.messageDomainService = messageDomainService;
         this.messageHandlerFactory = messageHandlerFactory;
         this.transportFactory = transportFactory;
-        this.userToolDomainService = toolDomainService;
+        this.userToolDomainService = userToolDomainService;
+        this.toolDomainService = toolDomainService;
         this.userSettingsAppService = userSettingsAppService;
         this.previewMessageHandler = previewMessageHandler;
+        this.quotaDomainService = quotaDomainService;
     }
 
     /** 获取会话中的消息列表
@@ -115,14 +132,18 @@ public class ConversationAppService {
         // 1. 准备对话环境
         ChatContext environment = prepareEnvironment(chatRequest, userId);
 
-        // 2. 获取传输方式 (当前仅支持SSE，将来支持WebSocket)
+        // 2. 配额准入检查，只读内存中的额度，用尽时在建立连接前拒绝
+        environment.setQuotaTicket(quotaDomainService.admit(userId, environment.getAgent().getId(),
+                environment.getProvider().getId()));
+
+        // 3. 获取传输方式 (当前仅支持SSE，将来支持WebSocket)
         MessageTransport<SseEmitter> transport = transportFactory
                 .getTransport(MessageTransportFactory.TRANSPORT_TYPE_SSE);
 
-        // 3. 获取适合的消息处理器 (根据agent类型)
+        // 4. 获取适合的消息处理器 (根据agent类型)
         AbstractMessageHandler handler = messageHandlerFactory.getHandler(environment.getAgent());
 
-        // 4. 处理对话
+        // 5. 处理对话
         return handler.chat(environment, transport);
     }
 
@@ -148,7 +169,10 @@ public class ConversationAppService {
         // 在工作区中的助理会分为用户自己创建的和安装的助理，因此需要区分 agent，如果 agent 的 userId 等于当前用户则使用 agent，反之使用
         // agent_version
         if (!agent.getUserId().equals(userId)) {
-            AgentVersionEntity latestAgentVersion = agentDomainService.getLatestAgentVersion(agentId);
+            AgentVersionEntity latestAgentVersion = agentDomainService.getPublishedAgentVersion(agentId);
+            if (latestAgentVersion == null) {
+                throw new BusinessException("助理未发布或已下架");
+            }
             // 直接转换即可
             toolIds = latestAgentVersion.getToolIds();
             BeanUtils.copyProperties(latestAgentVersion, agent);
@@ -181,6 +205,7 @@ public class ConversationAppService {
         chatContext.setProvider(provider);
         chatContext.setLlmModelConfig(llmModelConfig);
         chatContext.setMcpServerNames(mcpServerNames);
+        chatContext.setMcpToolDefinitions(toToolDefinitions(installTool));
         chatContext.setFileUrls(chatRequest.getFileUrls());
         // 6. 设置上下文信息和消息历史
         setupContextAndHistory(chatContext, chatRequest);
@@ -237,22 +262,31 @@ public class ConversationAppService {
         // 处理Token溢出
         TokenOverflowStrategyEnum strategyType = llmModelConfig.getStrategyType();
 
-        // Token处理
-        List<TokenMessage> tokenMessages = tokenizeMessage(messageEntities);
-
         // 构造Token配置
         TokenOverflowConfig tokenOverflowConfig = new TokenOverflowConfig();
         tokenOverflowConfig.setStrategyType(strategyType);
         tokenOverflowConfig.setMaxTokens(llmModelConfig.getMaxTokens());
         tokenOverflowConfig.setSummaryThreshold(llmModelConfig.getSummaryThreshold());
+        tokenOverflowConfig.setQuery(environment.getUserMessage());
 
         // 设置提供商配置
         org.yan.domain.llm.model.config.ProviderConfig providerConfig = provider.getConfig();
         tokenOverflowConfig.setProviderConfig(new ProviderConfig(providerConfig.getApiKey(),
                 providerConfig.getBaseUrl(), environment.getModel().getModelId(), provider.getProtocol()));
 
+        // 摘要由后台任务提前生成并提交，对话链路只读取上下文中已提交的摘要
+        if (strategyType == TokenOverflowStrategyEnum.SUMMARIZE) {
+            contextSummaryDomainService.scheduleIfNeeded(environment.getSessionId(), contextEntity.getActiveMessages(),
+                    tokenOverflowConfig);
+            return;
+        }
+
+        // Token处理
+        List<TokenMessage> tokenMessages = tokenizeMessage(messageEntities);
+
         // 处理Token
-        TokenProcessResult result = tokenDomainService.processMessages(tokenMessages, tokenOverflowConfig);
+        TokenProcessResult result = tokenDomainService.processMessages(environment.getSessionId(), tokenMessages,
+                tokenOverflowConfig);
 
         // 更新上下文
         if (result.isProcessed()) {
@@ -260,12 +294,12 @@ public class ConversationAppService {
             List<String> retainedMessageIds = retainedMessages.stream().map(TokenMessage::getId)
                     .collect(Collectors.toList());
 
-            if (strategyType == TokenOverflowStrategyEnum.SUMMARIZE) {
-                String newSummary = result.getSummary();
-                String oldSummary = contextEntity.getSummary();
-                contextEntity.setSummary(oldSummary + newSummary);
+            // 相关性策略只筛选本轮发送的历史消息，上下文保留全部消息供后续检索
+            if (strategyType == TokenOverflowStrategyEnum.RELEVANCE) {
+                Set<String> retainedIdSet = new HashSet<>(retainedMessageIds);
+                messageEntities.removeIf(message -> !retainedIdSet.contains(message.getId()));
+                return;
             }
-
             contextEntity.setActiveMessages(retainedMessageIds);
         }
     }
@@ -292,11 +326,14 @@ public class ConversationAppService {
         // 1. 准备预览环境
         ChatContext environment = preparePreviewEnvironment(previewRequest, userId);
 
-        // 2. 获取传输方式
+        // 2. 配额准入检查，预览使用虚拟Agent，不计入Agent请求数
+        environment.setQuotaTicket(quotaDomainService.admit(userId, null, environment.getProvider().getId()));
+
+        // 3. 获取传输方式
         MessageTransport<SseEmitter> transport = transportFactory
                 .getTransport(MessageTransportFactory.TRANSPORT_TYPE_SSE);
 
-        // 3. 使用预览专用的消息处理器
+        // 4. 使用预览专用的消息处理器
         return previewMessageHandler.chat(environment, transport);
     }
 
@@ -329,8 +366,9 @@ public class ConversationAppService {
         // 4. 处理工具配置
         List<String> toolIds = previewRequest.getToolIds();
         List<String> mcpServerNames = new ArrayList<>();
+        List<UserToolEntity> installTool = new ArrayList<>();
         if (toolIds != null && !toolIds.isEmpty()) {
-            List<UserToolEntity> installTool = userToolDomainService.getInstallTool(toolIds, userId);
+            installTool = userToolDomainService.getInstallTool(toolIds, userId);
             mcpServerNames = installTool.stream().map(UserToolEntity::getMcpServerName).toList();
         }
 
@@ -347,6 +385,7 @@ public class ConversationAppService {
         chatContext.setProvider(provider);
         chatContext.setLlmModelConfig(llmModelConfig);
         chatContext.setMcpServerNames(mcpServerNames);
+        chatContext.setMcpToolDefinitions(toToolDefinitions(installTool));
         chatContext.setFileUrls(previewRequest.getFileUrls());
 
         // 7. 设置预览上下文和历史消息
@@ -355,6 +394,41 @@ public class ConversationAppService {
         return chatContext;
     }
 
+    /** 收集已安装工具在发布时记录的工具定义，用于预热工具规范缓存和估算工具Token；
+     * 安装时的快照只决定工具是否启用，结果缓存、超时和输出长度以工具当前声明的配置为准，作者修改配置后对已安装的用户同样生效
+     *
+     * @param installTools 已安装的工具
+     * @return MCP服务名称 -> 工具定义列表 */
+    private Map<String, List<ToolDefinition>> toToolDefinitions(List<UserToolEntity> installTools) {
+        Map<String, List<ToolDefinition>> toolDefinitions = new HashMap<>();
+        if (installTools.isEmpty()) {
+            return toolDefinitions;
+        }
+        Map<String, ToolEntity> tools = toolDomainService
+                .getByIds(installTools.stream().map(UserToolEntity::getToolId).toList()).stream()
+                .collect(Collectors.toMap(ToolEntity::getId, tool -> tool));
+        for (UserToolEntity installTool : installTools) {
+            if (installTool.getMcpServerName() == null || installTool.getToolList() == null) {
+                continue;
+            }
+            ToolEntity tool = tools.get(installTool.getToolId());
+            if (tool != null && tool.getToolList() != null) {
+                Map<String, ToolDefinition> declared = tool.getToolList().stream()
+                        .collect(Collectors.toMap(ToolDefinition::getName, definition -> definition, (a, b) -> a));
+                for (ToolDefinition definition : installTool.getToolList()) {
+                    ToolDefinition current = declared.get(definition.getName());
+                    if (current != null) {
+                        definition.setResultCache(current.getResultCache());
+                        definition.setTimeoutSeconds(current.getTimeoutSeconds());
+                        definition.setMaxOutputChars(current.getMaxOutputChars());
+                    }
+                }
+            }
+            toolDefinitions.put(installTool.getMcpServerName(), installTool.getToolList());
+        }
+        return toolDefinitions;
+    }
+
     /** 创建虚拟Agent实体 */
     private AgentEntity createVirtualAgent(AgentPreviewRequest previewRequest, String userId) {
         AgentEntity virtualAgent = new AgentEntity();
@@ -6,8 +6,11 @@ import org.yan.domain.conversation.model.ContextEntity;
 import org.yan.domain.conversation.model.MessageEntity;
 import org.yan.domain.llm.model.ModelEntity;
 import org.yan.domain.llm.model.ProviderEntity;
+import org.yan.domain.quota.model.QuotaTicket;
+import org.yan.domain.tool.model.config.ToolDefinition;
 
 import java.util.List;
+import java.util.Map;
 
 /** chat 上下文，包含对话所需的所有信息 */
 public class ChatContext {
@@ -41,9 +44,18 @@ public class ChatContext {
     /** 使用的 mcp server name */
     private List<String> mcpServerNames;
 
+    /** 发布时记录的工具定义，MCP服务名称 -> 工具定义列表 */
+    private Map<String, List<ToolDefinition>> mcpToolDefinitions;
+
     /** 多模态的文件 */
     private List<String> fileUrls;
 
+    /** 本轮的Token预算规划结果 */
+    private TokenBudgetPlan tokenBudgetPlan;
+
+    /** 配额凭证，流式输出时扣减Token配额 */
+    private QuotaTicket quotaTicket;
+
     public String getSessionId() {
         return sessionId;
     }
@@ -124,6 +136,14 @@ public class ChatContext {
         this.mcpServerNames = mcpServerNames;
     }
 
+    public Map<String, List<ToolDefinition>> getMcpToolDefinitions() {
+        return mcpToolDefinitions;
+    }
+
+    public void setMcpToolDefinitions(Map<String, List<ToolDefinition>> mcpToolDefinitions) {
+        this.mcpToolDefinitions = mcpToolDefinitions;
+    }
+
     public List<String> getFileUrls() {
         return fileUrls;
     }
@@ -131,4 +151,20 @@ public class ChatContext {
     public void setFileUrls(List<String> fileUrls) {
         this.fileUrls = fileUrls;
     }
-}
\ No newline at end of file
+
+    public TokenBudgetPlan getTokenBudgetPlan() {
+        return tokenBudgetPlan;
+    }
+
+    public void setTokenBudgetPlan(TokenBudgetPlan tokenBudgetPlan) {
+        this.tokenBudgetPlan = tokenBudgetPlan;
+    }
+
+    public QuotaTicket getQuotaTicket() {
+        return quotaTicket;
+    }
+
+    public void setQuotaTicket(QuotaTicket quotaTicket) {
+        this.quotaTicket = quotaTicket;
+    }
+}
@@ -0,0 +1,159 @@
+package org.yan.application.conversation.service.handler.context;
+
+/** Token预算规划结果 记录模型上下文窗口在各部分之间的分配以及裁剪情况，构建历史消息时按此结果执行 */
+public class TokenBudgetPlan {
+
+    /** 模型上下文窗口 */
+    private int contextWindow;
+
+    /** 为模型输出预留的Token数 */
+    private int completionTokens;
+
+    /** 系统提示词（含工具预设参数提示）的Token数 */
+    private int systemTokens;
+
+    /** 工具定义的Token数 */
+    private int toolTokens;
+
+    /** 当前用户消息及附件的Token数 */
+    private int userTokens;
+
+    /** 摘要的Token数（裁剪后） */
+    private int summaryTokens;
+
+    /** 历史消息的Token数（裁剪后） */
+    private int historyTokens;
+
+    /** 裁剪后的摘要，为空表示不发送摘要 */
+    private String summary;
+
+    /** 被丢弃的最早历史消息数 */
+    private int droppedHistoryMessages;
+
+    /** 被丢弃的历史图片数 */
+    private int droppedImages;
+
+    /** 历史消息中从该位置开始才发送图片，之前的图片已被裁剪 */
+    private int imageStartIndex;
+
+    /** 摘要是否被截断 */
+    private boolean summaryTruncated;
+
+    /** 计划发送给模型的输入Token总数
+     *
+     * @return 输入Token总数 */
+    public int getPlannedInputTokens() {
+        return systemTokens + toolTokens + userTokens + summaryTokens + historyTokens;
+    }
+
+    /** 是否发生了裁剪
+     *
+     * @return 是否裁剪 */
+    public boolean isTrimmed() {
+        return droppedHistoryMessages > 0 || droppedImages > 0 || summaryTruncated;
+    }
+
+    public int getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(int contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public void setCompletionTokens(int completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public int getSystemTokens() {
+        return systemTokens;
+    }
+
+    public void setSystemTokens(int systemTokens) {
+        this.systemTokens = systemTokens;
+    }
+
+    public int getToolTokens() {
+        return toolTokens;
+    }
+
+    public void setToolTokens(int toolTokens) {
+        this.toolTokens = toolTokens;
+    }
+
+    public int getUserTokens() {
+        return userTokens;
+    }
+
+    public void setUserTokens(int userTokens) {
+        this.userTokens = userTokens;
+    }
+
+    public int getSummaryTokens() {
+        return summaryTokens;
+    }
+
+    public void setSummaryTokens(int summaryTokens) {
+        this.summaryTokens = summaryTokens;
+    }
+
+    public int getHistoryTokens() {
+        return historyTokens;
+    }
+
+    public void setHistoryTokens(int historyTokens) {
+        this.historyTokens = historyTokens;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public int getDroppedHistoryMessages() {
+        return droppedHistoryMessages;
+    }
+
+    public void setDroppedHistoryMessages(int droppedHistoryMessages) {
+        this.droppedHistoryMessages = droppedHistoryMessages;
+    }
+
+    public int getDroppedImages() {
+        return droppedImages;
+    }
+
+    public void setDroppedImages(int droppedImages) {
+        this.droppedImages = droppedImages;
+    }
+
+    public int getImageStartIndex() {
+        return imageStartIndex;
+    }
+
+    public void setImageStartIndex(int imageStartIndex) {
+        this.imageStartIndex = imageStartIndex;
+    }
+
+    public boolean isSummaryTruncated() {
+        return summaryTruncated;
+    }
+
+    public void setSummaryTruncated(boolean summaryTruncated) {
+        this.summaryTruncated = summaryTruncated;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBudgetPlan{window=" + contextWindow + ", completion=" + completionTokens + ", system="
+                + systemTokens + ", tools=" + toolTokens + ", user=" + userTokens + ", summary=" + summaryTokens
+                + ", history=" + historyTokens + ", droppedHistory=" + droppedHistoryMessages + ", droppedImages="
+                + droppedImages + ", summaryTruncated=" + summaryTruncated + "}";
+    }
+}
@@ -0,0 +1,210 @@
+package org.yan.application.conversation.service.handler.context;
+
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yan.domain.agent.model.AgentEntity;
+import org.yan.domain.conversation.model.MessageEntity;
+import org.yan.domain.llm.model.ModelEntity;
+import org.yan.infrastructure.exception.BusinessException;
+import org.yan.infrastructure.utils.TokenCountUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Token预算规划器 在构建Agent之前按模型的上下文窗口为各部分分配Token，优先级从高到低为：
+ * 系统提示词、当前用户消息及附件、工具定义、输出预留、摘要、历史消息、历史图片。超出窗口时按相反顺序裁剪，
+ * 只做字符级估算，每轮的开销与历史消息数成线性关系 */
+@Component
+public class TokenBudgetPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBudgetPlanner.class);
+
+    /** 未知模型的默认上下文窗口 */
+    private static final int DEFAULT_CONTEXT_WINDOW = 8192;
+
+    /** 默认为输出预留的Token数，不超过上下文窗口的四分之一 */
+    private static final int DEFAULT_COMPLETION_TOKENS = 2048;
+
+    /** 输出预留的下限，必需部分放不下时先压缩输出预留，低于该值则拒绝请求 */
+    private static final int MIN_COMPLETION_TOKENS = 256;
+
+    /** 常见模型系列的上下文窗口，按模型ID前缀匹配，更具体的前缀在前 */
+    private static final Map<String, Integer> KNOWN_CONTEXT_WINDOWS = new LinkedHashMap<>();
+
+    static {
+        KNOWN_CONTEXT_WINDOWS.put("gpt-4o", 128000);
+        KNOWN_CONTEXT_WINDOWS.put("gpt-4-turbo", 128000);
+        KNOWN_CONTEXT_WINDOWS.put("gpt-4.1", 1000000);
+        KNOWN_CONTEXT_WINDOWS.put("gpt-4", 8192);
+        KNOWN_CONTEXT_WINDOWS.put("gpt-3.5", 16385);
+        KNOWN_CONTEXT_WINDOWS.put("o1", 200000);
+        KNOWN_CONTEXT_WINDOWS.put("o3", 200000);
+        KNOWN_CONTEXT_WINDOWS.put("claude", 200000);
+        KNOWN_CONTEXT_WINDOWS.put("gemini", 1000000);
+        KNOWN_CONTEXT_WINDOWS.put("deepseek", 64000);
+        KNOWN_CONTEXT_WINDOWS.put("qwen-long", 1000000);
+        KNOWN_CONTEXT_WINDOWS.put("qwen", 32768);
+        KNOWN_CONTEXT_WINDOWS.put("glm-4", 128000);
+        KNOWN_CONTEXT_WINDOWS.put("moonshot-v1-8k", 8192);
+        KNOWN_CONTEXT_WINDOWS.put("moonshot-v1-32k", 32768);
+        KNOWN_CONTEXT_WINDOWS.put("moonshot-v1-128k", 131072);
+        KNOWN_CONTEXT_WINDOWS.put("doubao", 32768);
+    }
+
+    /** 规划本轮对话的Token预算 裁剪后的历史消息直接写回对话环境，摘要的裁剪结果保存在规划结果中，不修改上下文实体
+     *
+     * @param chatContext 对话环境
+     * @param toolTokens 工具定义的估算Token数
+     * @return 规划结果
+     * @throws BusinessException 系统提示词、当前消息和工具定义本身已超出上下文窗口 */
+    public TokenBudgetPlan plan(ChatContext chatContext, int toolTokens) {
+        TokenBudgetPlan plan = new TokenBudgetPlan();
+        int contextWindow = resolveContextWindow(chatContext);
+        plan.setContextWindow(contextWindow);
+        plan.setToolTokens(toolTokens);
+
+        // 1. 必需部分：系统提示词、当前用户消息及附件、工具定义
+        plan.setSystemTokens(TokenCountUtils.estimateMessage(buildSystemPrompt(chatContext.getAgent())));
+
+        List<MessageEntity> history = chatContext.getMessageHistory() != null
+                ? chatContext.getMessageHistory()
+                : new ArrayList<>();
+        int historyEnd = history.size();
+        int currentImages = 0;
+        // 当前轮的附件作为未保存的消息追加在历史末尾
+        if (historyEnd > 0 && history.get(historyEnd - 1).getId() == null) {
+            currentImages = imageCount(history.get(historyEnd - 1));
+            historyEnd--;
+        }
+        plan.setUserTokens(TokenCountUtils.estimateMessage(chatContext.getUserMessage())
+                + currentImages * TokenCountUtils.IMAGE_TOKENS);
+
+        int required = plan.getSystemTokens() + plan.getUserTokens() + toolTokens;
+        int completionTokens = Math.min(DEFAULT_COMPLETION_TOKENS, contextWindow / 4);
+        if (required + completionTokens > contextWindow) {
+            completionTokens = contextWindow - required;
+            if (completionTokens < MIN_COMPLETION_TOKENS) {
+                throw new BusinessException("本轮对话所需Token约为 " + required + "，超出模型上下文窗口 " + contextWindow
+                        + "，请精简系统提示词、减少工具或缩短消息");
+            }
+        }
+        plan.setCompletionTokens(completionTokens);
+        int available = contextWindow - completionTokens - required;
+
+        // 2. 摘要：放不下时保留末尾（较新）的部分
+        String summary = chatContext.getContextEntity() != null ? chatContext.getContextEntity().getSummary() : null;
+        if (StringUtils.isNotEmpty(summary)) {
+            int prefixTokens = TokenCountUtils.estimateMessage(AgentPromptTemplates.getSummaryPrefix());
+            int summaryTokens = TokenCountUtils.estimate(summary);
+            if (prefixTokens + summaryTokens > available) {
+                summary = available > prefixTokens ? TokenCountUtils.keepTail(summary, available - prefixTokens) : null;
+                summaryTokens = summary != null ? TokenCountUtils.estimate(summary) : 0;
+                plan.setSummaryTruncated(true);
+            }
+            plan.setSummary(summary);
+            plan.setSummaryTokens(summary != null ? prefixTokens + summaryTokens : 0);
+            available -= plan.getSummaryTokens();
+        }
+
+        // 3. 历史消息：从最新往前保留文本，放不下时丢弃更早的消息
+        int historyStart = historyEnd;
+        int historyTokens = 0;
+        while (historyStart > 0) {
+            int tokens = TokenCountUtils.estimateMessage(history.get(historyStart - 1).getContent());
+            if (historyTokens + tokens > available) {
+                break;
+            }
+            historyTokens += tokens;
+            historyStart--;
+        }
+
+        // 4. 历史图片：用剩余预算从最新往前保留，放不下时丢弃更早的图片
+        int imageStart = historyEnd;
+        int droppedImages = 0;
+        while (imageStart > historyStart) {
+            int images = imageCount(history.get(imageStart - 1));
+            if (historyTokens + images * TokenCountUtils.IMAGE_TOKENS > available) {
+                break;
+            }
+            historyTokens += images * TokenCountUtils.IMAGE_TOKENS;
+            imageStart--;
+        }
+        for (int i = historyStart; i < imageStart; i++) {
+            droppedImages += imageCount(history.get(i));
+        }
+
+        plan.setHistoryTokens(historyTokens);
+        plan.setDroppedHistoryMessages(historyStart);
+        plan.setDroppedImages(droppedImages);
+        plan.setImageStartIndex(imageStart - historyStart);
+        if (historyStart > 0) {
+            chatContext.setMessageHistory(history.subList(historyStart, history.size()));
+        }
+
+        if (plan.isTrimmed()) {
+            logger.info("会话 {} Token预算已裁剪: {}", chatContext.getSessionId(), plan);
+        }
+        return plan;
+    }
+
+    /** 记录计划与实际的输入Token数，用于评估估算偏差
+     *
+     * @param chatContext 对话环境
+     * @param actualInputTokens 模型返回的实际输入Token数 */
+    public void report(ChatContext chatContext, Integer actualInputTokens) {
+        TokenBudgetPlan plan = chatContext.getTokenBudgetPlan();
+        if (plan == null || actualInputTokens == null) {
+            return;
+        }
+        int planned = plan.getPlannedInputTokens();
+        double deviation = planned > 0 ? (actualInputTokens - planned) * 100.0 / planned : 0;
+        logger.info("会话 {} 模型 {} Token预算 计划输入: {}，实际输入: {}，偏差: {}%，上下文窗口: {}", chatContext.getSessionId(),
+                chatContext.getModel().getModelId(), planned, actualInputTokens,
+                String.format(Locale.ROOT, "%.1f", deviation), plan.getContextWindow());
+    }
+
+    /** 构建系统提示词，与发送给模型的内容一致
+     *
+     * @param agent 智能体
+     * @return 系统提示词 */
+    public static String buildSystemPrompt(AgentEntity agent) {
+        String presetToolPrompt = "";
+        // 设置预先工具设置的参数到系统提示词中
+        Map<String, Map<String, Map<String, String>>> toolPresetParams = agent.getToolPresetParams();
+        if (toolPresetParams != null) {
+            presetToolPrompt = AgentPromptTemplates.generatePresetToolPrompt(toolPresetParams);
+        }
+        return agent.getSystemPrompt() + "\n" + presetToolPrompt;
+    }
+
+    /** 解析模型的上下文窗口 优先使用模型上配置的值，其次按模型ID匹配常见模型系列，都没有时使用保守的默认值。
+     * Agent配置的最大Token数是历史消息的预算，不是模型的上下文窗口，不参与解析 */
+    private int resolveContextWindow(ChatContext chatContext) {
+        ModelEntity model = chatContext.getModel();
+        if (model != null && model.getContextWindow() != null && model.getContextWindow() > 0) {
+            return model.getContextWindow();
+        }
+        if (model != null && model.getModelId() != null) {
+            String modelId = model.getModelId().toLowerCase(Locale.ROOT);
+            // 兼容带组织前缀的模型ID，如 deepseek-ai/DeepSeek-V3
+            modelId = modelId.substring(modelId.lastIndexOf('/') + 1);
+            for (Map.Entry<String, Integer> entry : KNOWN_CONTEXT_WINDOWS.entrySet()) {
+                if (modelId.startsWith(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        logger.debug("模型 {} 未配置上下文窗口，按默认值 {} 规划Token预算", model != null ? model.getModelId() : null,
+                DEFAULT_CONTEXT_WINDOW);
+        return DEFAULT_CONTEXT_WINDOW;
+    }
+
+    private int imageCount(MessageEntity message) {
+        return message.getFileUrls() != null ? message.getFileUrls().size() : 0;
+    }
+}
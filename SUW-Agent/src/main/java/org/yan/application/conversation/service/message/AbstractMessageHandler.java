@@ -2,8 +2,11 @@ package org.yan.application.conversation.service.message;
 
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import dev.langchain4j.data.message.*;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolProvider;
@@ -11,16 +14,20 @@ import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
 import org.yan.application.conversation.dto.AgentChatResponse;
 import org.yan.application.conversation.service.handler.context.AgentPromptTemplates;
 import org.yan.application.conversation.service.handler.context.ChatContext;
+import org.yan.application.conversation.service.handler.context.TokenBudgetPlan;
+import org.yan.application.conversation.service.handler.context.TokenBudgetPlanner;
 import org.yan.domain.conversation.constant.MessageType;
 import org.yan.domain.conversation.constant.Role;
 import org.yan.domain.conversation.model.MessageEntity;
 import org.yan.domain.conversation.service.MessageDomainService;
+import org.yan.domain.usage.service.TokenUsageLedger;
 import org.yan.infrastructure.llm.LLMServiceFactory;
+import org.yan.infrastructure.utils.TokenCountUtils;
 import org.yan.infrastructure.transport.MessageTransport;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class AbstractMessageHandler {
@@ -30,10 +37,15 @@ public abstract class AbstractMessageHandler {
 
     protected final LLMServiceFactory llmServiceFactory;
     protected final MessageDomainService messageDomainService;
+    protected final TokenBudgetPlanner tokenBudgetPlanner;
+    protected final TokenUsageLedger tokenUsageLedger;
 
-    public AbstractMessageHandler(LLMServiceFactory llmServiceFactory, MessageDomainService messageDomainService) {
+    public AbstractMessageHandler(LLMServiceFactory llmServiceFactory, MessageDomainService messageDomainService,
+            TokenBudgetPlanner tokenBudgetPlanner, TokenUsageLedger tokenUsageLedger) {
         this.llmServiceFactory = llmServiceFactory;
         this.messageDomainService = messageDomainService;
+        this.tokenBudgetPlanner = tokenBudgetPlanner;
+        this.tokenUsageLedger = tokenUsageLedger;
     }
 
     /** 处理对话的模板方法
@@ -43,19 +55,20 @@ public abstract class AbstractMessageHandler {
      * @return 连接对象
      * @param <T> 连接类型 */
     public <T> T chat(ChatContext chatContext, MessageTransport<T> transport) {
-        // 1. 创建连接
+        // 1. 规划Token预算，超出上下文窗口时按优先级裁剪摘要、历史消息和图片，必需部分放不下时在建立连接前失败
+        chatContext.setTokenBudgetPlan(tokenBudgetPlanner.plan(chatContext, estimateToolTokens(chatContext)));
+
+        // 2. 创建连接
         T connection = transport.createConnection(CONNECTION_TIMEOUT);
 
-        // 2. 获取LLM客户端
+        // 3. 获取LLM客户端
         StreamingChatModel streamingClient = llmServiceFactory.getStreamingClient(chatContext.getProvider(),
                 chatContext.getModel());
 
-        // 3. 创建消息实体
+        // 4. 创建消息实体
         MessageEntity llmMessageEntity = createLlmMessage(chatContext);
         MessageEntity userMessageEntity = createUserMessage(chatContext);
 
-        // 4. 保存用户消息和更新上下文
-
         // 5. 初始化聊天内存
         MessageWindowChatMemory memory = initMemory();
 
@@ -63,7 +76,7 @@ public abstract class AbstractMessageHandler {
         buildHistoryMessage(chatContext, memory);
 
         // 7. 根据子类决定是否需要工具
-        ToolProvider toolProvider = provideTools(chatContext);
+        ToolProvider toolProvider = provideTools(chatContext, memory);
 
         // 8. 创建Agent
         Agent agent = buildAgent(streamingClient, memory, toolProvider);
@@ -74,11 +87,49 @@ public abstract class AbstractMessageHandler {
         return connection;
     }
 
+    /** 按估算的Token数实时扣减配额，对话完成后由 {@link #recordUsage} 按实际用量结算 */
+    protected void chargeStreamedTokens(ChatContext chatContext, String reply) {
+        if (chatContext.getQuotaTicket() != null) {
+            chatContext.getQuotaTicket().stream(TokenCountUtils.estimate(reply));
+        }
+    }
+
+    /** 把本轮的Token用量记入用量账本并结算配额，只在内存中累加，由账本定期批量写入汇总表 */
+    protected void recordUsage(ChatContext chatContext, TokenUsage tokenUsage) {
+        if (chatContext.getQuotaTicket() != null) {
+            chatContext.getQuotaTicket().settle(tokenUsage != null ? tokenUsage.inputTokenCount() : null,
+                    tokenUsage != null ? tokenUsage.outputTokenCount() : null);
+        }
+        if (tokenUsage == null) {
+            return;
+        }
+        String agentId = chatContext.getAgent() != null ? chatContext.getAgent().getId() : null;
+        String providerId = chatContext.getProvider() != null ? chatContext.getProvider().getId() : null;
+        tokenUsageLedger.record(chatContext.getUserId(), agentId, chatContext.getModel().getModelId(), providerId,
+                tokenUsage.inputTokenCount(), tokenUsage.outputTokenCount());
+    }
+
+    /** 子类提供工具时需要覆盖这个方法估算工具定义占用的Token数 */
+    protected int estimateToolTokens(ChatContext chatContext) {
+        return 0;
+    }
+
     /** 子类可以覆盖这个方法提供工具 */
-    protected ToolProvider provideTools(ChatContext chatContext) {
+    protected ToolProvider provideTools(ChatContext chatContext, ChatMemory memory) {
         return null; // 默认不提供工具
     }
 
+    /** 获取模型最近一条消息中的全部工具调用，工具执行期间各调用的结果消息追加在这条消息之后 */
+    protected static List<ToolExecutionRequest> lastToolCalls(ChatMemory memory) {
+        List<ChatMessage> messages = memory.messages();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof AiMessage aiMessage) {
+                return aiMessage.hasToolExecutionRequests() ? aiMessage.toolExecutionRequests() : List.of();
+            }
+        }
+        return List.of();
+    }
+
     /** 子类实现具体的聊天处理逻辑 */
     protected <T> void processChat(Agent agent, T connection, MessageTransport<T> transport, ChatContext chatContext,
             MessageEntity userEntity, MessageEntity llmEntity) {
@@ -87,16 +138,21 @@ public abstract class AbstractMessageHandler {
                 chatContext.getContextEntity());
 
         AtomicReference<StringBuilder> messageBuilder = new AtomicReference<>(new StringBuilder());
+        // 同一批工具调用的消息先暂存，在模型继续输出、结束或出错时一次性保存
+        List<MessageEntity> pendingToolMessages = new ArrayList<>();
         TokenStream tokenStream = agent.chat(chatContext.getUserMessage());
 
         tokenStream.onError(throwable -> {
+            flushToolMessages(pendingToolMessages, chatContext);
             transport.sendMessage(connection,
                     AgentChatResponse.buildEndMessage(throwable.getMessage(), MessageType.TEXT));
         });
 
         // 部分响应处理
         tokenStream.onPartialResponse(reply -> {
+            flushToolMessages(pendingToolMessages, chatContext);
             messageBuilder.get().append(reply);
+            chargeStreamedTokens(chatContext, reply);
             transport.sendMessage(connection, AgentChatResponse.build(reply, MessageType.TEXT));
         });
 
@@ -108,8 +164,11 @@ public abstract class AbstractMessageHandler {
 
             userEntity.setTokenCount(chatResponse.tokenUsage().inputTokenCount());
             messageDomainService.updateMessage(userEntity);
+            tokenBudgetPlanner.report(chatContext, chatResponse.tokenUsage().inputTokenCount());
+            recordUsage(chatContext, chatResponse.tokenUsage());
 
             // 保存AI消息
+            flushToolMessages(pendingToolMessages, chatContext);
             messageDomainService.saveMessageAndUpdateContext(Collections.singletonList(llmEntity),
                     chatContext.getContextEntity());
 
@@ -127,6 +186,7 @@ public abstract class AbstractMessageHandler {
             if (!messageBuilder.get().isEmpty()) {
                 transport.sendMessage(connection, AgentChatResponse.buildEndMessage(MessageType.TEXT));
                 llmEntity.setContent(messageBuilder.toString());
+                flushToolMessages(pendingToolMessages, chatContext);
                 messageDomainService.saveMessageAndUpdateContext(Collections.singletonList(llmEntity),
                         chatContext.getContextEntity());
                 messageBuilder.set(new StringBuilder());
@@ -135,8 +195,9 @@ public abstract class AbstractMessageHandler {
             MessageEntity toolMessage = createLlmMessage(chatContext);
             toolMessage.setMessageType(MessageType.TOOL_CALL);
             toolMessage.setContent(message);
-            messageDomainService.saveMessageAndUpdateContext(Collections.singletonList(toolMessage),
-                    chatContext.getContextEntity());
+            synchronized (pendingToolMessages) {
+                pendingToolMessages.add(toolMessage);
+            }
 
             transport.sendMessage(connection, AgentChatResponse.buildEndMessage(message, MessageType.TOOL_CALL));
         });
@@ -145,6 +206,19 @@ public abstract class AbstractMessageHandler {
         tokenStream.start();
     }
 
+    /** 保存暂存的工具调用消息 */
+    private void flushToolMessages(List<MessageEntity> pendingToolMessages, ChatContext chatContext) {
+        List<MessageEntity> toolMessages;
+        synchronized (pendingToolMessages) {
+            if (pendingToolMessages.isEmpty()) {
+                return;
+            }
+            toolMessages = new ArrayList<>(pendingToolMessages);
+            pendingToolMessages.clear();
+        }
+        messageDomainService.saveMessageAndUpdateContext(toolMessages, chatContext.getContextEntity());
+    }
+
     /** 初始化内存 */
     protected MessageWindowChatMemory initMemory() {
         return MessageWindowChatMemory.builder().maxMessages(1000).chatMemoryStore(new InMemoryChatMemoryStore())
@@ -184,26 +258,26 @@ public abstract class AbstractMessageHandler {
 
     /** 构建历史消息到内存中 */
     protected void buildHistoryMessage(ChatContext chatContext, MessageWindowChatMemory memory) {
-        String summary = chatContext.getContextEntity().getSummary();
+        // 使用预算规划后的摘要和历史消息
+        TokenBudgetPlan budgetPlan = chatContext.getTokenBudgetPlan();
+        String summary = budgetPlan != null ? budgetPlan.getSummary() : chatContext.getContextEntity().getSummary();
         if (StringUtils.isNotEmpty(summary)) {
             // 添加为AI消息，但明确标识这是摘要
             memory.add(new AiMessage(AgentPromptTemplates.getSummaryPrefix() + summary));
         }
 
-        String presetToolPrompt = "";
-        // 设置预先工具设置的参数到系统提示词中
-        Map<String, Map<String, Map<String, String>>> toolPresetParams = chatContext.getAgent().getToolPresetParams();
-        if (toolPresetParams != null) {
-            presetToolPrompt = AgentPromptTemplates.generatePresetToolPrompt(toolPresetParams);
-        }
-
-        memory.add(new SystemMessage(chatContext.getAgent().getSystemPrompt() + "\n" + presetToolPrompt));
+        memory.add(new SystemMessage(TokenBudgetPlanner.buildSystemPrompt(chatContext.getAgent())));
         List<MessageEntity> messageHistory = chatContext.getMessageHistory();
-        for (MessageEntity messageEntity : messageHistory) {
+        int imageStartIndex = budgetPlan != null ? budgetPlan.getImageStartIndex() : 0;
+        for (int i = 0; i < messageHistory.size(); i++) {
+            MessageEntity messageEntity = messageHistory.get(i);
             if (messageEntity.isUserMessage()) {
+                // 被裁剪的历史图片不再发送，当前轮的附件位于末尾，始终保留
                 List<String> fileUrls = messageEntity.getFileUrls();
-                for (String fileUrl : fileUrls) {
-                    memory.add(UserMessage.from(ImageContent.from(fileUrl)));
+                if (fileUrls != null && i >= imageStartIndex) {
+                    for (String fileUrl : fileUrls) {
+                        memory.add(UserMessage.from(ImageContent.from(fileUrl)));
+                    }
                 }
                 if (!StringUtils.isEmpty(messageEntity.getContent())) {
                     memory.add(new UserMessage(messageEntity.getContent()));
@@ -1,10 +1,13 @@
 package org.yan.application.conversation.service.message.agent;
 
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.service.tool.ToolProvider;
 import org.springframework.stereotype.Component;
 import org.yan.application.conversation.service.handler.context.ChatContext;
+import org.yan.application.conversation.service.handler.context.TokenBudgetPlanner;
 import org.yan.application.conversation.service.message.AbstractMessageHandler;
 import org.yan.domain.conversation.service.MessageDomainService;
+import org.yan.domain.usage.service.TokenUsageLedger;
 import org.yan.infrastructure.llm.LLMServiceFactory;
 
 /** Agent消息处理器 用于支持工具调用的对话模式 实现任务拆分、执行和结果汇总的工作流 使用事件驱动架构进行状态转换 */
@@ -14,14 +17,19 @@ public class AgentMessageHandler extends AbstractMessageHandler {
     private final AgentToolManager agentToolManager;
 
     public AgentMessageHandler(LLMServiceFactory llmServiceFactory, AgentToolManager agentToolManager,
-            MessageDomainService messageDomainService) {
-        super(llmServiceFactory, messageDomainService);
+            MessageDomainService messageDomainService, TokenBudgetPlanner tokenBudgetPlanner,
+            TokenUsageLedger tokenUsageLedger) {
+        super(llmServiceFactory, messageDomainService, tokenBudgetPlanner, tokenUsageLedger);
         this.agentToolManager = agentToolManager;
     }
 
     @Override
-    protected ToolProvider provideTools(ChatContext chatContext) {
-        return agentToolManager.createToolProvider(agentToolManager.getAvailableTools(chatContext),
-                chatContext.getAgent().getToolPresetParams());
+    protected int estimateToolTokens(ChatContext chatContext) {
+        return agentToolManager.estimateToolTokens(chatContext);
+    }
+
+    @Override
+    protected ToolProvider provideTools(ChatContext chatContext, ChatMemory memory) {
+        return agentToolManager.createToolProvider(chatContext, () -> lastToolCalls(memory));
     }
 }
\ No newline at end of file
@@ -1,66 +1,175 @@
 package org.yan.application.conversation.service.message.agent;
 
-import dev.langchain4j.mcp.McpToolProvider;
-import dev.langchain4j.mcp.client.DefaultMcpClient;
-import dev.langchain4j.mcp.client.McpClient;
-import dev.langchain4j.mcp.client.transport.McpTransport;
-import dev.langchain4j.mcp.client.transport.PresetParameter;
-import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.yan.application.conversation.service.handler.context.ChatContext;
-import org.yan.infrastructure.mcp_gateway.MCPGatewayService;
-import org.yan.infrastructure.utils.JsonUtils;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.infrastructure.mcp_gateway.McpClientPool;
+import org.yan.infrastructure.mcp_gateway.McpToolResultCache;
+import org.yan.infrastructure.mcp_gateway.McpToolSpecificationCache;
+import org.yan.infrastructure.mcp_gateway.PooledMcpClient;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /** Agent工具管理器 负责创建和管理工具提供者 */
 @Component
 public class AgentToolManager {
 
-    private final MCPGatewayService mcpGatewayService;
+    private static final Logger logger = LoggerFactory.getLogger(AgentToolManager.class);
 
-    public AgentToolManager(MCPGatewayService mcpGatewayService) {
-        this.mcpGatewayService = mcpGatewayService;
+    /** 工具未声明超时时间时的默认超时（毫秒） */
+    private static final long DEFAULT_TOOL_CALL_TIMEOUT_MILLIS = 60000;
+
+    /** 工具可声明的最长超时（毫秒） */
+    private static final long MAX_TOOL_CALL_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    /** 工具调用排队等待开始执行的最长时间（毫秒） */
+    private static final long TOOL_CALL_QUEUE_TIMEOUT_MILLIS = 10000;
+
+    /** 并发执行工具调用的线程数，单个MCP服务的并发另由连接池限制 */
+    private static final int TOOL_CALL_THREADS = 32;
+
+    /** 线程池的队列容量，队列已满时拒绝新的调用 */
+    private static final int TOOL_CALL_QUEUE_CAPACITY = 256;
+
+    private final McpClientPool mcpClientPool;
+    private final McpToolSpecificationCache toolSpecificationCache;
+    private final McpToolResultCache toolResultCache;
+    private final ToolOutputProcessor toolOutputProcessor;
+
+    /** 工具调用线程池 */
+    private final ExecutorService toolCallExecutor;
+
+    public AgentToolManager(McpClientPool mcpClientPool, McpToolSpecificationCache toolSpecificationCache,
+            McpToolResultCache toolResultCache, ToolOutputProcessor toolOutputProcessor) {
+        this.mcpClientPool = mcpClientPool;
+        this.toolSpecificationCache = toolSpecificationCache;
+        this.toolResultCache = toolResultCache;
+        this.toolOutputProcessor = toolOutputProcessor;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(TOOL_CALL_THREADS, TOOL_CALL_THREADS, 60L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(TOOL_CALL_QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "tool-call-thread");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.toolCallExecutor = executor;
     }
 
-    /** 创建工具提供者
+    @PreDestroy
+    public void destroy() {
+        toolCallExecutor.shutdownNow();
+    }
+
+    /** 创建工具提供者 MCP客户端从连接池获取，按服务名和该服务的预设参数复用，不在每轮对话中新建连接；
+     * 工具规范优先取缓存或发布时记录的工具定义，不在调用模型前请求MCP服务；发布时声明了结果缓存的工具会复用缓存结果
      *
-     * @param mcpServerNames 工具URL列表
+     * @param chatContext 对话上下文，提供工具列表、预设参数、发布时记录的工具定义和当前用户
+     * @param pendingToolCalls 获取模型当前消息中的全部工具调用，同一消息中的调用并发执行
      * @return 工具提供者实例，如果工具列表为空则返回null */
-    public ToolProvider createToolProvider(List<String> mcpServerNames,
-            Map<String, Map<String, Map<String, String>>> toolPresetParams) {
+    public ToolProvider createToolProvider(ChatContext chatContext,
+            Supplier<List<ToolExecutionRequest>> pendingToolCalls) {
+        List<String> mcpServerNames = getAvailableTools(chatContext);
         if (mcpServerNames == null || mcpServerNames.isEmpty()) {
             return null;
         }
+        Map<String, Map<String, Map<String, String>>> toolPresetParams = chatContext.getAgent().getToolPresetParams();
+        Map<String, List<ToolDefinition>> toolDefinitions = chatContext.getMcpToolDefinitions();
 
-        List<McpClient> mcpClients = new ArrayList<>();
-
+        List<PooledMcpClient> mcpClients = new ArrayList<>();
         for (String mcpServerName : mcpServerNames) {
+            Map<String, Map<String, String>> presetParams = toolPresetParams != null
+                    ? toolPresetParams.get(mcpServerName)
+                    : null;
+            mcpClients.add(mcpClientPool.acquire(mcpServerName, presetParams));
+        }
 
-            String sseUrl = this.mcpGatewayService.getSSEUrl(mcpServerName);
-            McpTransport transport = new HttpMcpTransport.Builder().sseUrl(sseUrl).logRequests(true).logResponses(true)
-                    .timeout(Duration.ofHours(1)).build();
-
-            McpClient mcpClient = new DefaultMcpClient.Builder().transport(transport).build();
-
-            /** 预先设置参数 */
-            if (toolPresetParams != null && toolPresetParams.containsKey(mcpServerName)) {
-                List<PresetParameter> presetParameters = new ArrayList<>();
-                for (String key : toolPresetParams.keySet()) {
-                    toolPresetParams.get(key).forEach((k, v) -> {
-                        presetParameters.add(new PresetParameter(k, JsonUtils.toJsonString(v)));
-                    });
+        ToolCallBatch toolCallBatch = new ToolCallBatch(toolCallExecutor, pendingToolCalls,
+                DEFAULT_TOOL_CALL_TIMEOUT_MILLIS, MAX_TOOL_CALL_TIMEOUT_MILLIS, TOOL_CALL_QUEUE_TIMEOUT_MILLIS,
+                toolResultCache, toolOutputProcessor, chatContext.getUserId());
+        return request -> {
+            ToolProviderResult.Builder builder = ToolProviderResult.builder();
+            for (PooledMcpClient mcpClient : mcpClients) {
+                if (!mcpClient.getBulkhead().isAvailable()) {
+                    // 连续超时的服务暂停期内不提供给模型，避免模型反复调用
+                    logger.info("MCP服务 {} 暂停使用中，本轮不提供其工具", mcpClient.getMcpServerName());
+                    continue;
+                }
+                List<ToolDefinition> definitions = toolDefinitions != null
+                        ? toolDefinitions.get(mcpClient.getMcpServerName())
+                        : null;
+                Map<String, ToolDefinition> definitionsByName = byName(definitions);
+                List<ToolSpecification> toolSpecifications;
+                try {
+                    toolSpecifications = toolSpecificationCache.getTools(mcpClient, definitions);
+                } catch (Exception e) {
+                    // 单个服务不可用时跳过它的工具，不影响其他服务
+                    logger.warn("获取MCP服务 {} 的工具列表失败: {}", mcpClient.getMcpServerName(), e.getMessage());
+                    continue;
+                }
+                for (ToolSpecification toolSpecification : toolSpecifications) {
+                    toolCallBatch.register(toolSpecification.name(), mcpClient,
+                            definitionsByName.get(toolSpecification.name()));
+                    builder.add(toolSpecification,
+                            (toolExecutionRequest, memoryId) -> toolCallBatch.execute(toolExecutionRequest));
                 }
-                mcpClient.presetParameters(presetParameters);
             }
-            mcpClients.add(mcpClient);
+            return builder.build();
+        };
+    }
+
+    /** 按工具名索引工具定义 */
+    private Map<String, ToolDefinition> byName(List<ToolDefinition> definitions) {
+        Map<String, ToolDefinition> definitionsByName = new HashMap<>();
+        if (definitions != null) {
+            for (ToolDefinition definition : definitions) {
+                definitionsByName.put(definition.getName(), definition);
+            }
         }
+        return definitionsByName;
+    }
 
-        return McpToolProvider.builder().mcpClients(mcpClients).build();
+    /** 估算工具定义占用的Token数 按本轮实际会提供给模型的工具规范估算，规范的来源与 {@link #createToolProvider} 一致，
+     * 暂停使用或无法获取工具列表的服务不计入
+     *
+     * @param chatContext 对话上下文
+     * @return 估算的Token数 */
+    public int estimateToolTokens(ChatContext chatContext) {
+        List<String> mcpServerNames = getAvailableTools(chatContext);
+        if (mcpServerNames == null || mcpServerNames.isEmpty()) {
+            return 0;
+        }
+        Map<String, Map<String, Map<String, String>>> toolPresetParams = chatContext.getAgent().getToolPresetParams();
+        Map<String, List<ToolDefinition>> toolDefinitions = chatContext.getMcpToolDefinitions();
+        int tokens = 0;
+        for (String mcpServerName : mcpServerNames) {
+            PooledMcpClient mcpClient = mcpClientPool.acquire(mcpServerName,
+                    toolPresetParams != null ? toolPresetParams.get(mcpServerName) : null);
+            if (!mcpClient.getBulkhead().isAvailable()) {
+                continue;
+            }
+            try {
+                tokens += toolSpecificationCache.getToolTokens(mcpClient,
+                        toolDefinitions != null ? toolDefinitions.get(mcpServerName) : null);
+            } catch (Exception e) {
+                logger.warn("获取MCP服务 {} 的工具列表失败，不计入Token预算: {}", mcpServerName, e.getMessage());
+            }
+        }
+        return tokens;
     }
 
     /** 获取可用的工具列表
@@ -0,0 +1,281 @@
+package org.yan.application.conversation.service.message.agent;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.domain.tool.model.config.ToolResultCacheConfig;
+import org.yan.infrastructure.mcp_gateway.McpToolResultCache;
+import org.yan.infrastructure.mcp_gateway.PooledMcpClient;
+import org.yan.infrastructure.utils.JsonUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/** 一轮对话中的工具调用批次 模型在一条消息中返回多个工具调用时，框架会按顺序逐个调用执行器；
+ * 第一个调用到达时把同一条消息中的全部调用并发提交，后续调用按在消息中的位置等待各自的结果，总耗时接近最慢的一个。
+ * 调用先经所属服务的隔离舱排队，排队超过上限时返回结构化的繁忙结果；开始执行后按工具定义中的超时时间等待，
+ * 超时后返回结构化的超时结果，只有MCP请求本身超时才计入所属服务；声明了结果缓存的工具命中缓存时不再请求MCP服务 */
+public class ToolCallBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolCallBatch.class);
+
+    private final ExecutorService executor;
+
+    /** 获取当前模型消息中的全部工具调用 */
+    private final Supplier<List<ToolExecutionRequest>> pendingToolCalls;
+
+    /** 工具未声明超时时间时的默认值 */
+    private final long defaultTimeoutMillis;
+
+    /** 工具可声明的超时时间上限 */
+    private final long maxTimeoutMillis;
+
+    /** 调用在队列中等待开始执行的最长时间 */
+    private final long queueTimeoutMillis;
+
+    private final McpToolResultCache resultCache;
+
+    private final ToolOutputProcessor outputProcessor;
+
+    /** 发起调用的用户，按用户隔离缓存结果 */
+    private final String userId;
+
+    /** 工具名称 -> 所属的MCP客户端 */
+    private final Map<String, PooledMcpClient> clients = new ConcurrentHashMap<>();
+
+    /** 工具名称 -> 发布时记录的工具定义，只包含有定义的工具 */
+    private final Map<String, ToolDefinition> definitions = new ConcurrentHashMap<>();
+
+    /** 当前模型消息中的全部工具调用 */
+    private List<ToolExecutionRequest> currentBatch = List.of();
+
+    /** 当前消息中按位置提交的调用，结果取走后置为null */
+    private List<ToolCall> currentCalls = new ArrayList<>();
+
+    /** 当前消息中下一个待取结果的位置 */
+    private int cursor;
+
+    public ToolCallBatch(ExecutorService executor, Supplier<List<ToolExecutionRequest>> pendingToolCalls,
+            long defaultTimeoutMillis, long maxTimeoutMillis, long queueTimeoutMillis, McpToolResultCache resultCache,
+            ToolOutputProcessor outputProcessor, String userId) {
+        this.executor = executor;
+        this.pendingToolCalls = pendingToolCalls;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.resultCache = resultCache;
+        this.outputProcessor = outputProcessor;
+        this.userId = userId;
+    }
+
+    /** 登记工具所属的MCP客户端
+     *
+     * @param toolName 工具名称
+     * @param client 池化客户端
+     * @param definition 发布时记录的工具定义，提供超时时间、结果缓存和输出长度配置，可为空 */
+    public void register(String toolName, PooledMcpClient client, ToolDefinition definition) {
+        clients.put(toolName, client);
+        if (definition != null) {
+            definitions.put(toolName, definition);
+        } else {
+            definitions.remove(toolName);
+        }
+    }
+
+    /** 执行工具调用，超时、繁忙或失败时返回错误信息，由模型决定后续处理
+     *
+     * @param request 工具调用请求
+     * @return 工具返回结果 */
+    public String execute(ToolExecutionRequest request) {
+        return await(take(request));
+    }
+
+    /** 取出请求对应的调用 新消息的第一个调用到达时一次性提交整条消息，之后从上次取到的位置往后按位置匹配，
+     * 同名同参的重复调用各自对应一次执行，已提交的调用不会再次提交；不在当前消息中的请求单独提交 */
+    private synchronized ToolCall take(ToolExecutionRequest request) {
+        List<ToolExecutionRequest> batch = pendingToolCalls.get();
+        if (batch != null && (cursor >= currentBatch.size() || !batch.equals(currentBatch))) {
+            // 上一条消息中没有被取走的调用不会再有人等待结果
+            currentCalls.stream().filter(Objects::nonNull).forEach(call -> call.future.cancel(true));
+            currentBatch = batch;
+            currentCalls = new ArrayList<>(batch.size());
+            batch.forEach(r -> currentCalls.add(submit(r)));
+            cursor = 0;
+        }
+        for (int i = cursor; i < currentBatch.size(); i++) {
+            if (currentBatch.get(i).equals(request)) {
+                cursor = i + 1;
+                return currentCalls.set(i, null);
+            }
+        }
+        return submit(request);
+    }
+
+    /** 等待调用结果 开始执行前按排队上限等待，开始执行后从开始时间起按工具的超时时间等待 */
+    private String await(ToolCall call) {
+        ToolExecutionRequest request = call.request;
+        long timeoutMillis = timeoutMillis(request.name());
+        try {
+            while (true) {
+                long startedAt = call.startedAt;
+                long deadline = startedAt > 0 ? startedAt + timeoutMillis : call.submittedAt + queueTimeoutMillis;
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    if (startedAt == 0 && call.startedAt > 0) {
+                        // 到期时刚好开始执行，按执行超时重新计算
+                        continue;
+                    }
+                    boolean requesting = call.requesting;
+                    call.future.cancel(true);
+                    if (startedAt == 0) {
+                        logger.warn("工具 {} 排队超过 {} 毫秒仍未开始执行", request.name(), queueTimeoutMillis);
+                        return overloadedResult(request);
+                    }
+                    logger.warn("工具 {} 执行超时（{} 毫秒）", request.name(), timeoutMillis);
+                    return timeoutResult(request, timeoutMillis, requesting);
+                }
+                try {
+                    return call.future.get(remaining, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // 重新判断是仍在排队还是已经执行超时
+                }
+            }
+        } catch (CancellationException e) {
+            // 名额释放时线程池已满，排队的调用被取消
+            return overloadedResult(request);
+        } catch (ExecutionException e) {
+            return "工具调用失败: " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.future.cancel(true);
+            return "工具 " + request.name() + " 执行被中断";
+        }
+    }
+
+    /** 提交调用 命中结果缓存或没有所属客户端的调用直接交给线程池，其余调用经所属服务的隔离舱提交 */
+    private ToolCall submit(ToolExecutionRequest request) {
+        PooledMcpClient client = clients.get(request.name());
+        ToolDefinition definition = definitions.get(request.name());
+        ToolResultCacheConfig cacheConfig = definition != null ? definition.getResultCache() : null;
+        String cached = client != null && cacheConfig != null
+                ? resultCache.get(client, request, cacheConfig, userId)
+                : null;
+        ToolCall call = new ToolCall(request, cached);
+        if (client != null && cached == null) {
+            if (!client.submit(call.future, executor)) {
+                logger.warn("MCP服务 {} 调用排队已满，拒绝工具 {}", client.getMcpServerName(), request.name());
+                call.future.cancel(false);
+            }
+            return call;
+        }
+        try {
+            executor.execute(call.future);
+        } catch (RejectedExecutionException e) {
+            call.future.cancel(false);
+        }
+        return call;
+    }
+
+    private String invoke(ToolCall call) {
+        call.startedAt = System.currentTimeMillis();
+        ToolExecutionRequest request = call.request;
+        PooledMcpClient client = clients.get(request.name());
+        if (client == null) {
+            return "工具 " + request.name() + " 不存在";
+        }
+        ToolDefinition definition = definitions.get(request.name());
+        try {
+            // 缓存的是工具的原始结果，输出处理按当前调用者进行，处理后的内容可能写入调用者自己的文件
+            if (call.cached != null) {
+                return outputProcessor.process(request.name(), call.cached, definition, userId);
+            }
+            String raw;
+            call.requesting = true;
+            try {
+                raw = client.executeTool(request);
+            } finally {
+                call.requesting = false;
+            }
+            client.getBulkhead().recordSuccess();
+            ToolResultCacheConfig cacheConfig = definition != null ? definition.getResultCache() : null;
+            if (cacheConfig != null) {
+                resultCache.put(client, request, cacheConfig, userId, raw);
+            }
+            return outputProcessor.process(request.name(), raw, definition, userId);
+        } catch (Exception e) {
+            logger.warn("调用MCP服务 {} 的工具 {} 失败: {}", client.getMcpServerName(), request.name(), e.getMessage());
+            return "工具调用失败: " + e.getMessage();
+        }
+    }
+
+    /** 工具的超时时间，未声明时取默认值，不超过上限 */
+    private long timeoutMillis(String toolName) {
+        ToolDefinition definition = definitions.get(toolName);
+        if (definition == null || definition.getTimeoutSeconds() == null || definition.getTimeoutSeconds() <= 0) {
+            return defaultTimeoutMillis;
+        }
+        return Math.min(definition.getTimeoutSeconds() * 1000L, maxTimeoutMillis);
+    }
+
+    /** 生成超时结果 结构化的结果便于模型判断是超时而不是工具报错，可以换一种方式继续；
+     * 超时时MCP请求仍在进行的记录到所属服务，连续超时的服务会被暂停使用 */
+    private String timeoutResult(ToolExecutionRequest request, long timeoutMillis, boolean requesting) {
+        PooledMcpClient client = clients.get(request.name());
+        if (requesting && client != null && client.getBulkhead().recordTimeout()) {
+            logger.warn("MCP服务 {} 连续调用超时，暂停使用", client.getMcpServerName());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", "TOOL_TIMEOUT");
+        result.put("tool", request.name());
+        result.put("timeoutSeconds", timeoutMillis / 1000);
+        result.put("message", "工具执行超时，结果不可用，请不要重复调用，换用其他方式继续");
+        return JsonUtils.toJsonString(result);
+    }
+
+    /** 生成繁忙结果 调用因所属服务排队已满或排队超时未执行，不计入服务的超时次数 */
+    private String overloadedResult(ToolExecutionRequest request) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", "TOOL_OVERLOADED");
+        result.put("tool", request.name());
+        result.put("message", "工具所属服务繁忙，调用未执行，可以稍后再试或换用其他方式继续");
+        return JsonUtils.toJsonString(result);
+    }
+
+    /** 一次工具调用 记录开始执行的时间，用于区分排队等待和执行超时 */
+    private final class ToolCall {
+
+        private final ToolExecutionRequest request;
+
+        /** 提交时命中的缓存结果，未命中时为null */
+        private final String cached;
+
+        private final long submittedAt = System.currentTimeMillis();
+
+        private final FutureTask<String> future;
+
+        /** 开始执行的时间，0表示仍在排队 */
+        private volatile long startedAt;
+
+        /** MCP请求是否正在进行 */
+        private volatile boolean requesting;
+
+        private ToolCall(ToolExecutionRequest request, String cached) {
+            this.request = request;
+            this.cached = cached;
+            this.future = new FutureTask<>(() -> invoke(this));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.yan.application.conversation.service.message.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.infrastructure.storage.LocalStorageService;
+import org.yan.infrastructure.storage.UploadResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** 工具输出处理器 工具返回结果超过长度上限时，先把完整结果转存到存储服务，再截断后交给模型：
+ * JSON结果保留结构，逐步收紧数组长度和字符串长度直到满足上限；其他文本保留开头和结尾的摘录，
+ * 中间省略的部分按行抽取与全文用词最接近的若干行作为摘要。截断后的结果连同说明不超过上限，
+ * 附带原始长度和完整结果的地址，写入对话记录的也是截断后的内容 */
+@Component
+public class ToolOutputProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolOutputProcessor.class);
+
+    /** 工具未声明长度上限时的默认值（字符） */
+    private static final int DEFAULT_MAX_OUTPUT_CHARS = 16000;
+
+    /** 工具可声明的长度上限（字符） */
+    private static final int MAX_OUTPUT_CHARS = 100000;
+
+    /** JSON截断时数组和对象保留的初始项数 */
+    private static final int INITIAL_MAX_ITEMS = 50;
+
+    /** JSON截断时字符串保留的初始长度 */
+    private static final int INITIAL_MAX_STRING = 2000;
+
+    /** JSON截断时字符串保留的最小长度 */
+    private static final int MIN_STRING = 64;
+
+    /** 文本截断时开头摘录所占的比例 */
+    private static final double HEAD_RATIO = 0.5;
+
+    /** 文本截断时中间摘要所占的比例，其余留给结尾 */
+    private static final double DIGEST_RATIO = 0.25;
+
+    /** 摘要中单行保留的最大长度 */
+    private static final int MAX_DIGEST_LINE = 200;
+
+    /** 摘要计算词频用的词，连续的字母数字或单个汉字 */
+    private static final Pattern TERM = Pattern.compile("\\p{IsHan}|[\\p{L}\\p{N}_]{2,}");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LocalStorageService storageService;
+
+    public ToolOutputProcessor(LocalStorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    /** 处理工具输出，未超过长度上限时原样返回
+     *
+     * @param toolName 工具名称
+     * @param output 工具返回的原始结果
+     * @param definition 发布时记录的工具定义，提供长度上限，可为空
+     * @param userId 调用者，转存时按用户分目录
+     * @return 交给模型的结果 */
+    public String process(String toolName, String output, ToolDefinition definition, String userId) {
+        int limit = maxOutputChars(definition);
+        if (output == null || output.length() <= limit) {
+            return output;
+        }
+        String reference = spill(toolName, output, userId);
+        String note = "[输出过长已截断，原始长度 " + output.length() + " 字符"
+                + (reference != null ? "，完整结果: " + reference : "") + "]";
+        int budget = limit - note.length() - 1;
+        if (budget <= 0) {
+            // 上限连说明都放不下时只返回说明
+            return note.substring(0, Math.min(note.length(), limit));
+        }
+        String truncated = truncateJson(output, budget);
+        if (truncated == null) {
+            truncated = truncateText(output, budget);
+        }
+        return truncated + "\n" + note;
+    }
+
+    private int maxOutputChars(ToolDefinition definition) {
+        if (definition == null || definition.getMaxOutputChars() == null || definition.getMaxOutputChars() <= 0) {
+            return DEFAULT_MAX_OUTPUT_CHARS;
+        }
+        return Math.min(definition.getMaxOutputChars(), MAX_OUTPUT_CHARS);
+    }
+
+    /** 转存完整结果，失败时返回null，只影响结果中是否附带地址 */
+    private String spill(String toolName, String output, String userId) {
+        try {
+            byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+            String objectKey = storageService.generateObjectKey(toolName + ".txt",
+                    "tool-outputs/" + (userId != null ? userId : "anonymous"));
+            UploadResult result = storageService.uploadStream(new ByteArrayInputStream(bytes), objectKey,
+                    bytes.length);
+            return result.getAccessUrl();
+        } catch (Exception e) {
+            logger.warn("转存工具 {} 的完整结果失败: {}", toolName, e.getMessage());
+            return null;
+        }
+    }
+
+    /** 按JSON结构截断，不是JSON或收紧到最小仍超出上限时返回null */
+    private String truncateJson(String output, int budget) {
+        String trimmed = output.trim();
+        if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+            return null;
+        }
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(trimmed);
+        } catch (Exception e) {
+            return null;
+        }
+        int maxItems = INITIAL_MAX_ITEMS;
+        int maxString = INITIAL_MAX_STRING;
+        while (true) {
+            String candidate;
+            try {
+                candidate = MAPPER.writeValueAsString(shrink(root, maxItems, maxString));
+            } catch (Exception e) {
+                return null;
+            }
+            if (candidate.length() <= budget) {
+                return candidate;
+            }
+            if (maxItems == 1 && maxString == MIN_STRING) {
+                return null;
+            }
+            maxItems = Math.max(1, maxItems / 2);
+            maxString = Math.max(MIN_STRING, maxString / 2);
+        }
+    }
+
+    /** 复制JSON节点，数组和对象只保留前若干项，过长的字符串截断，省略的部分用说明代替 */
+    private JsonNode shrink(JsonNode node, int maxItems, int maxString) {
+        if (node.isArray()) {
+            ArrayNode copy = MAPPER.createArrayNode();
+            int kept = Math.min(node.size(), maxItems);
+            for (int i = 0; i < kept; i++) {
+                copy.add(shrink(node.get(i), maxItems, maxString));
+            }
+            if (node.size() > kept) {
+                copy.add("…省略 " + (node.size() - kept) + " 项");
+            }
+            return copy;
+        }
+        if (node.isObject()) {
+            ObjectNode copy = MAPPER.createObjectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            int kept = 0;
+            while (fields.hasNext() && kept < maxItems) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                copy.set(field.getKey(), shrink(field.getValue(), maxItems, maxString));
+                kept++;
+            }
+            if (node.size() > kept) {
+                copy.put("…", "省略 " + (node.size() - kept) + " 个字段");
+            }
+            return copy;
+        }
+        if (node.isTextual() && node.textValue().length() > maxString) {
+            String text = node.textValue();
+            return TextNode.valueOf(text.substring(0, maxString) + "…(省略 " + (text.length() - maxString) + " 字符)");
+        }
+        return node;
+    }
+
+    /** 按文本截断，保留开头和结尾的摘录，中间附上抽取的摘要；省略说明的长度预先扣除，结果不超过预算 */
+    private String truncateText(String output, int budget) {
+        String digestMarker = "\n…(省略部分摘录)…\n";
+        // 按原始长度的位数预留省略说明，实际省略的字符数不会更多
+        int omittedReserve = ("\n…(省略 " + output.length() + " 字符)…\n").length();
+        if (budget <= omittedReserve) {
+            return output.substring(0, budget);
+        }
+        int available = budget - omittedReserve;
+        int head = (int) (available * HEAD_RATIO);
+        int digestBudget = (int) (available * DIGEST_RATIO);
+        int tail = available - head - digestBudget;
+
+        String middle = output.substring(head, output.length() - tail);
+        String digest = digestBudget > digestMarker.length()
+                ? digest(middle, digestBudget - digestMarker.length())
+                : "";
+        if (digest.isEmpty()) {
+            // 没有可用的摘要时，摘要的预算留给结尾
+            tail += digestBudget;
+            middle = output.substring(head, output.length() - tail);
+        }
+        String omitted = "\n…(省略 " + (middle.length() - digest.length()) + " 字符)…\n";
+        return output.substring(0, head) + (digest.isEmpty() ? "" : digestMarker + digest) + omitted
+                + output.substring(output.length() - tail);
+    }
+
+    /** 抽取式摘要 按行计算与全文词频的接近程度，取得分最高的若干行，按原顺序拼接且不超过预算 */
+    private String digest(String text, int budget) {
+        String[] lines = text.split("\n");
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<Set<String>> lineTerms = new ArrayList<>(lines.length);
+        for (String line : lines) {
+            Set<String> terms = new HashSet<>();
+            Matcher matcher = TERM.matcher(line);
+            while (matcher.find()) {
+                String term = matcher.group().toLowerCase();
+                terms.add(term);
+                frequencies.merge(term, 1, Integer::sum);
+            }
+            lineTerms.add(terms);
+        }
+        List<Integer> candidates = new ArrayList<>();
+        double[] scores = new double[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Set<String> terms = lineTerms.get(i);
+            if (terms.isEmpty()) {
+                continue;
+            }
+            double sum = 0;
+            for (String term : terms) {
+                sum += frequencies.get(term);
+            }
+            scores[i] = sum / terms.size();
+            candidates.add(i);
+        }
+        candidates.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        boolean[] selected = new boolean[lines.length];
+        int used = 0;
+        for (int i : candidates) {
+            int length = Math.min(lines[i].trim().length(), MAX_DIGEST_LINE) + 1;
+            if (used + length > budget) {
+                continue;
+            }
+            selected[i] = true;
+            used += length;
+        }
+        StringBuilder digest = new StringBuilder(used);
+        for (int i = 0; i < lines.length; i++) {
+            if (selected[i]) {
+                String line = lines[i].trim();
+                digest.append(line.length() > MAX_DIGEST_LINE ? line.substring(0, MAX_DIGEST_LINE) : line)
+                        .append('\n');
+            }
+        }
+        return digest.length() > 0 ? digest.substring(0, digest.length() - 1) : "";
+    }
+}
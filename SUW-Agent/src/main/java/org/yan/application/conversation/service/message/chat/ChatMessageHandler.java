@@ -1,15 +1,18 @@
 package org.yan.application.conversation.service.message.chat;
 
 import org.springframework.stereotype.Component;
+import org.yan.application.conversation.service.handler.context.TokenBudgetPlanner;
 import org.yan.application.conversation.service.message.AbstractMessageHandler;
 import org.yan.domain.conversation.service.MessageDomainService;
+import org.yan.domain.usage.service.TokenUsageLedger;
 import org.yan.infrastructure.llm.LLMServiceFactory;
 
 /** 标准消息处理器 */
 @Component(value = "chatMessageHandler")
 public class ChatMessageHandler extends AbstractMessageHandler {
 
-    public ChatMessageHandler(LLMServiceFactory llmServiceFactory, MessageDomainService messageDomainService) {
-        super(llmServiceFactory, messageDomainService);
+    public ChatMessageHandler(LLMServiceFactory llmServiceFactory, MessageDomainService messageDomainService,
+            TokenBudgetPlanner tokenBudgetPlanner, TokenUsageLedger tokenUsageLedger) {
+        super(llmServiceFactory, messageDomainService, tokenBudgetPlanner, tokenUsageLedger);
     }
 }
\ No newline at end of file
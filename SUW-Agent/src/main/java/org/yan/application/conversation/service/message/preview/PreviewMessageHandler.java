@@ -1,16 +1,19 @@
 package org.yan.application.conversation.service.message.preview;
 
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolProvider;
 import org.springframework.stereotype.Component;
 import org.yan.application.conversation.dto.AgentChatResponse;
 import org.yan.application.conversation.service.handler.context.ChatContext;
+import org.yan.application.conversation.service.handler.context.TokenBudgetPlanner;
 import org.yan.application.conversation.service.message.AbstractMessageHandler;
 import org.yan.application.conversation.service.message.Agent;
 import org.yan.application.conversation.service.message.agent.AgentToolManager;
 import org.yan.domain.conversation.constant.MessageType;
 import org.yan.domain.conversation.model.MessageEntity;
 import org.yan.domain.conversation.service.MessageDomainService;
+import org.yan.domain.usage.service.TokenUsageLedger;
 import org.yan.infrastructure.llm.LLMServiceFactory;
 import org.yan.infrastructure.transport.MessageTransport;
 
@@ -23,15 +26,20 @@ public class PreviewMessageHandler extends AbstractMessageHandler {
     private final AgentToolManager agentToolManager;
 
     public PreviewMessageHandler(LLMServiceFactory llmServiceFactory, MessageDomainService messageDomainService,
-            AgentToolManager agentToolManager) {
-        super(llmServiceFactory, messageDomainService);
+            AgentToolManager agentToolManager, TokenBudgetPlanner tokenBudgetPlanner,
+            TokenUsageLedger tokenUsageLedger) {
+        super(llmServiceFactory, messageDomainService, tokenBudgetPlanner, tokenUsageLedger);
         this.agentToolManager = agentToolManager;
     }
 
     @Override
-    protected ToolProvider provideTools(ChatContext chatContext) {
-        return agentToolManager.createToolProvider(agentToolManager.getAvailableTools(chatContext),
-                chatContext.getAgent().getToolPresetParams());
+    protected int estimateToolTokens(ChatContext chatContext) {
+        return agentToolManager.estimateToolTokens(chatContext);
+    }
+
+    @Override
+    protected ToolProvider provideTools(ChatContext chatContext, ChatMemory memory) {
+        return agentToolManager.createToolProvider(chatContext, () -> lastToolCalls(memory));
     }
 
     /** 预览专用的聊天处理逻辑 与正常流程的区别是不保存消息到数据库 */
@@ -51,11 +59,17 @@ public class PreviewMessageHandler extends AbstractMessageHandler {
         // 部分响应处理
         tokenStream.onPartialResponse(reply -> {
             messageBuilder.get().append(reply);
+            chargeStreamedTokens(chatContext, reply);
             transport.sendMessage(connection, AgentChatResponse.build(reply, MessageType.TEXT));
         });
 
         // 完整响应处理
         tokenStream.onCompleteResponse(chatResponse -> {
+            if (chatResponse.tokenUsage() != null) {
+                tokenBudgetPlanner.report(chatContext, chatResponse.tokenUsage().inputTokenCount());
+            }
+            recordUsage(chatContext, chatResponse.tokenUsage());
+
             // 发送结束消息
             transport.sendEndMessage(connection, AgentChatResponse.buildEndMessage(MessageType.TEXT));
         });
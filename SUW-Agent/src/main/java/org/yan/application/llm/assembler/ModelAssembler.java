@@ -31,6 +31,7 @@ public class ModelAssembler {
         dto.setCreatedAt(model.getCreatedAt());
         dto.setUpdatedAt(model.getUpdatedAt());
         dto.setIsOfficial(model.getOfficial());
+        dto.setContextWindow(model.getContextWindow());
         return dto;
     }
 
@@ -51,6 +52,7 @@ public class ModelAssembler {
         model.setName(request.getName());
         model.setDescription(request.getDescription());
         model.setType(request.getType());
+        model.setContextWindow(request.getContextWindow());
         model.setCreatedAt(LocalDateTime.now());
         model.setUpdatedAt(LocalDateTime.now());
 
@@ -63,6 +65,7 @@ public class ModelAssembler {
         model.setName(request.getName());
         model.setDescription(request.getDescription());
         model.setModelId(request.getModelId());
+        model.setContextWindow(request.getContextWindow());
         model.setCreatedAt(LocalDateTime.now());
         model.setUpdatedAt(LocalDateTime.now());
         model.setId(request.getId());
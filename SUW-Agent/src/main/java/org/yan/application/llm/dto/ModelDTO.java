@@ -27,6 +27,9 @@ public class ModelDTO {
     private Boolean isOfficial;
     /** 模型状态 */
     private Boolean status;
+
+    /** 上下文窗口（Token数） */
+    private Integer contextWindow;
     /** 创建时间 */
     private LocalDateTime createdAt;
     /** 更新时间 */
@@ -127,4 +130,12 @@ public class ModelDTO {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+
+    public Integer getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(Integer contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+}
@@ -88,7 +88,8 @@ public class ToolAppService {
     public ToolDTO updateTool(String toolId, UpdateToolRequest request, String userId) {
         ToolEntity toolEntity = ToolAssembler.toEntity(request, userId);
         toolEntity.setId(toolId);
-        ToolEntity updatedTool = toolDomainService.updateTool(toolEntity);
+        ToolEntity updatedTool = toolDomainService.updateTool(toolEntity, request.getResultCaches(),
+                request.getToolTimeouts(), request.getOutputLimits());
         return ToolAssembler.toDTO(updatedTool);
     }
 
@@ -0,0 +1,48 @@
+package org.yan.application.usage.assembler;
+
+import org.yan.application.usage.dto.TokenUsageDTO;
+import org.yan.domain.usage.model.TokenUsageRollupEntity;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Token用量对象转换器 */
+public class TokenUsageAssembler {
+
+    /** 将小时汇总按时间桶合并，输入需按小时升序
+     *
+     * @param rollups 小时汇总
+     * @param unit 时间桶单位，HOURS 或 DAYS
+     * @return 按时间桶升序的用量列表 */
+    public static List<TokenUsageDTO> toDTOs(List<TokenUsageRollupEntity> rollups, ChronoUnit unit) {
+        Map<LocalDateTime, TokenUsageDTO> buckets = new LinkedHashMap<>();
+        for (TokenUsageRollupEntity rollup : rollups) {
+            LocalDateTime bucket = rollup.getBucketHour().truncatedTo(unit);
+            accumulate(buckets.computeIfAbsent(bucket, TokenUsageAssembler::emptyDTO), rollup);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    /** 合计用量 */
+    public static TokenUsageDTO toTotalDTO(List<TokenUsageRollupEntity> rollups, LocalDateTime from) {
+        TokenUsageDTO total = emptyDTO(from);
+        rollups.forEach(rollup -> accumulate(total, rollup));
+        return total;
+    }
+
+    private static TokenUsageDTO emptyDTO(LocalDateTime bucket) {
+        TokenUsageDTO dto = new TokenUsageDTO();
+        dto.setBucket(bucket);
+        return dto;
+    }
+
+    private static void accumulate(TokenUsageDTO dto, TokenUsageRollupEntity rollup) {
+        dto.setInputTokens(dto.getInputTokens() + rollup.getInputTokens());
+        dto.setOutputTokens(dto.getOutputTokens() + rollup.getOutputTokens());
+        dto.setRequestCount(dto.getRequestCount() + rollup.getRequestCount());
+    }
+}
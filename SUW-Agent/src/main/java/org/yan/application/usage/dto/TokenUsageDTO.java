@@ -0,0 +1,55 @@
+package org.yan.application.usage.dto;
+
+import java.time.LocalDateTime;
+
+/** Token用量数据点 */
+public class TokenUsageDTO {
+
+    /** 时间桶开始时间 */
+    private LocalDateTime bucket;
+
+    /** 输入Token数 */
+    private long inputTokens;
+
+    /** 输出Token数 */
+    private long outputTokens;
+
+    /** 请求次数 */
+    private long requestCount;
+
+    public LocalDateTime getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(LocalDateTime bucket) {
+        this.bucket = bucket;
+    }
+
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(long inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(long outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public long getTotalTokens() {
+        return inputTokens + outputTokens;
+    }
+}
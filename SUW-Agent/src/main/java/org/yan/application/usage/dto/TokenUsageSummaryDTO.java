@@ -0,0 +1,63 @@
+package org.yan.application.usage.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Token用量统计结果 */
+public class TokenUsageSummaryDTO {
+
+    /** 开始时间 */
+    private LocalDateTime from;
+
+    /** 结束时间 */
+    private LocalDateTime to;
+
+    /** 统计粒度 */
+    private String granularity;
+
+    /** 合计 */
+    private TokenUsageDTO total;
+
+    /** 按时间桶的用量，升序 */
+    private List<TokenUsageDTO> points;
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public TokenUsageDTO getTotal() {
+        return total;
+    }
+
+    public void setTotal(TokenUsageDTO total) {
+        this.total = total;
+    }
+
+    public List<TokenUsageDTO> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<TokenUsageDTO> points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,61 @@
+package org.yan.application.usage.service;
+
+import org.springframework.stereotype.Service;
+import org.yan.application.usage.assembler.TokenUsageAssembler;
+import org.yan.application.usage.dto.TokenUsageSummaryDTO;
+import org.yan.domain.usage.model.TokenUsageRollupEntity;
+import org.yan.domain.usage.service.TokenUsageDomainService;
+import org.yan.infrastructure.exception.BusinessException;
+import org.yan.interfaces.dto.usage.request.QueryUsageRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/** 用量应用服务 */
+@Service
+public class UsageAppService {
+
+    /** 默认统计最近的天数 */
+    private static final int DEFAULT_DAYS = 7;
+
+    /** 单次查询允许的最大时间跨度（天） */
+    private static final int MAX_DAYS = 366;
+
+    private final TokenUsageDomainService tokenUsageDomainService;
+
+    public UsageAppService(TokenUsageDomainService tokenUsageDomainService) {
+        this.tokenUsageDomainService = tokenUsageDomainService;
+    }
+
+    /** 统计用户的Token用量 最近几秒的用量可能仍在内存账本中，尚未写入汇总表
+     *
+     * @param userId 用户ID
+     * @param request 查询条件
+     * @return 用量统计 */
+    public TokenUsageSummaryDTO getTokenUsage(String userId, QueryUsageRequest request) {
+        LocalDateTime to = request.getTo() != null ? request.getTo() : LocalDateTime.now();
+        LocalDateTime from = request.getFrom() != null ? request.getFrom() : to.minusDays(DEFAULT_DAYS);
+        if (!from.isBefore(to)) {
+            throw new BusinessException("开始时间必须早于结束时间");
+        }
+        if (Duration.between(from, to).toDays() > MAX_DAYS) {
+            throw new BusinessException("查询时间跨度不能超过 " + MAX_DAYS + " 天");
+        }
+        String granularity = "hour".equals(request.getGranularity()) ? "hour" : "day";
+        ChronoUnit unit = "hour".equals(granularity) ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+
+        // 按小时桶查询，开始时间向下取整到整点
+        List<TokenUsageRollupEntity> rollups = tokenUsageDomainService.listHourlyUsage(userId,
+                request.getAgentId(), request.getModelId(), from.truncatedTo(ChronoUnit.HOURS), to);
+
+        TokenUsageSummaryDTO summary = new TokenUsageSummaryDTO();
+        summary.setFrom(from);
+        summary.setTo(to);
+        summary.setGranularity(granularity);
+        summary.setTotal(TokenUsageAssembler.toTotalDTO(rollups, from));
+        summary.setPoints(TokenUsageAssembler.toDTOs(rollups, unit));
+        return summary;
+    }
+}
@@ -95,6 +95,10 @@ public class AgentVersionEntity extends BaseEntity {
     @TableField("multi_modal")
     private Boolean multiModal;
 
+    /** 是否为该Agent当前生效的已发布版本，由发布状态变更时维护，市场列表和对话直接按此过滤 */
+    @TableField("latest_published")
+    private Boolean latestPublished;
+
     /** 无参构造函数 */
     public AgentVersionEntity() {
         this.toolIds = new ArrayList<>();
@@ -299,4 +303,12 @@ public class AgentVersionEntity extends BaseEntity {
     public void setMultiModal(Boolean multiModal) {
         this.multiModal = multiModal;
     }
-}
\ No newline at end of file
+
+    public Boolean getLatestPublished() {
+        return latestPublished;
+    }
+
+    public void setLatestPublished(Boolean latestPublished) {
+        this.latestPublished = latestPublished;
+    }
+}
@@ -1,7 +1,10 @@
 package org.yan.domain.agent.repository;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.yan.domain.agent.model.AgentVersionEntity;
 import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
 
@@ -11,37 +14,44 @@ import java.util.List;
 @Mapper
 public interface AgentVersionRepository extends MyBatisPlusExtRepository<AgentVersionEntity> {
 
-    /** 查询每个agentId的最新版本（按publishStatus过滤）
+    /** 重新标记Agent当前生效的已发布版本，只有发布时间最新的一条已发布版本 latest_published 为 true
+     *
+     * @param agentId Agent ID
+     * @param publishedStatus 已发布状态的编码
+     * @return 更新的行数 */
+    @Update("UPDATE agent_versions t SET latest_published = (t.id IS NOT DISTINCT FROM latest.id) "
+            + "FROM (SELECT (SELECT v.id FROM agent_versions v WHERE v.agent_id = #{agentId} "
+            + "AND v.publish_status = #{publishedStatus} AND v.deleted_at IS NULL "
+            + "ORDER BY v.published_at DESC, v.id DESC LIMIT 1) AS id) latest "
+            + "WHERE t.agent_id = #{agentId} AND t.deleted_at IS NULL "
+            + "AND t.latest_published IS DISTINCT FROM (t.id IS NOT DISTINCT FROM latest.id)")
+    int refreshLatestPublished(@Param("agentId") String agentId, @Param("publishedStatus") Integer publishedStatus);
+
+    /** 查询每个agentId的最新版本（按publishStatus过滤），已发布状态请直接查询当前生效的已发布版本
      * 
      * @param publishStatus 发布状态，为null时查询所有状态
      * @return 每个agentId的最新版本列表 */
-    @Select("<script>" + "SELECT a.* FROM agent_versions a "
-            + "INNER JOIN (SELECT agent_id, MAX(published_at) as max_published_at " + "FROM agent_versions "
-            + "<if test='publishStatus != null'> WHERE publish_status = #{publishStatus} </if>"
-            + "GROUP BY agent_id) b " + "ON a.agent_id = b.agent_id AND a.published_at = b.max_published_at "
-            + "<if test='publishStatus != null'> WHERE a.publish_status = #{publishStatus} </if>" + "</script>")
-    List<AgentVersionEntity> selectLatestVersionsByStatus(Integer publishStatus);
-
-    /** 按名称搜索每个agentId的最新版本
-     * 
-     * @param name 搜索的名称，模糊匹配
-     * @return 符合条件的每个agentId的最新版本列表 */
-    @Select("<script>" + "SELECT a.* FROM agent_versions a "
-            + "INNER JOIN (SELECT agent_id, MAX(published_at) as max_published_at " + "FROM agent_versions "
-            + "<if test='name != null and name != \"\"'> WHERE name LIKE CONCAT('%', #{name}, '%') </if>"
-            + "GROUP BY agent_id) b " + "ON a.agent_id = b.agent_id AND a.published_at = b.max_published_at "
-            + "<if test='name != null and name != \"\"'> WHERE a.name LIKE CONCAT('%', #{name}, '%') </if>"
-            + "</script>")
-    List<AgentVersionEntity> selectLatestVersionsByName(String name);
+    @Select("<script>" + "SELECT DISTINCT ON (agent_id) * FROM agent_versions WHERE deleted_at IS NULL "
+            + "<if test='publishStatus != null'> AND publish_status = #{publishStatus} </if>"
+            + "ORDER BY agent_id, published_at DESC, id DESC" + "</script>")
+    @ResultMap("mybatis-plus_AgentVersionEntity")
+    List<AgentVersionEntity> selectLatestVersionsByStatus(@Param("publishStatus") Integer publishStatus);
 
-    /** 根据名称和发布状态查询所有助理的最新版本 同时支持只按状态查询（当name为空时） */
-    @Select({"<script>", "SELECT v.* FROM agent_versions v ", "INNER JOIN (",
-            "    SELECT agent_id, MAX(published_at) as latest_date ", "    FROM agent_versions ",
-            "    WHERE deleted_at IS NULL ", "    <if test='status != null'>",
-            "        AND publish_status = #{status} ", "    </if>", "    GROUP BY agent_id",
-            ") latest ON v.agent_id = latest.agent_id AND v.published_at = latest.latest_date ",
-            "WHERE v.deleted_at IS NULL ", "<if test='name != null and name != \"\"'>",
-            "    AND v.name LIKE CONCAT('%', #{name}, '%') ", "</if>", "<if test='status != null'>",
-            "    AND v.publish_status = #{status} ", "</if>", "</script>"})
-    List<AgentVersionEntity> selectLatestVersionsByNameAndStatus(String name, Integer status);
-}
\ No newline at end of file
+    /** 查询所有助理当前生效的已发布版本 直接按 latest_published 过滤，不再按发布时间自连接；
+     * 有名称时名称和描述走全文索引按前缀匹配，名称同时走三元组索引，支持子串和拼写相近的匹配，按相关度排序
+     *
+     * @param name 关键词，为空时返回全部
+     * @param tsQuery 前缀匹配的tsquery，为空时只按名称匹配 */
+    @Select({"<script>", "SELECT v.* FROM agent_versions v ",
+            "WHERE v.latest_published = TRUE AND v.deleted_at IS NULL ",
+            "<if test='name != null and name != \"\"'>", "    AND (",
+            "    <if test='tsQuery != null'>v.search_vector @@ to_tsquery('simple', #{tsQuery}) OR </if>",
+            "    v.name ILIKE CONCAT('%', #{name}, '%') OR #{name} &lt;% v.name) ", "</if>", "ORDER BY ",
+            "<if test='name != null and name != \"\"'>", "    (",
+            "    <if test='tsQuery != null'>ts_rank(v.search_vector, to_tsquery('simple', #{tsQuery})) + </if>",
+            "    word_similarity(#{name}, v.name)) DESC, ", "</if>", "v.published_at DESC, v.id DESC",
+            "</script>"})
+    @ResultMap("mybatis-plus_AgentVersionEntity")
+    List<AgentVersionEntity> selectPublishedVersionsByName(@Param("name") String name,
+            @Param("tsQuery") String tsQuery);
+}
@@ -13,9 +13,9 @@ import org.yan.domain.agent.repository.AgentRepository;
 import org.yan.domain.agent.repository.AgentVersionRepository;
 import org.yan.domain.agent.repository.AgentWorkspaceRepository;
 import org.yan.infrastructure.exception.BusinessException;
+import org.yan.infrastructure.utils.SearchQueryUtils;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /** Agent服务实现类 */
@@ -68,9 +68,10 @@ public class AgentDomainService {
 
     /** 获取已上架的Agent列表，支持名称搜索 当name为空时返回所有已上架Agent */
     public List<AgentVersionEntity> getPublishedAgentsByName(AgentEntity agent) {
-        // 使用带名称和状态条件的查询
-        List<AgentVersionEntity> latestVersions = agentVersionRepository
-                .selectLatestVersionsByNameAndStatus(agent.getName(), PublishStatus.PUBLISHED.getCode());
+        // 直接查询当前生效的已发布版本，有名称时按相关度排序
+        String keyword = SearchQueryUtils.normalizeKeyword(agent.getName());
+        List<AgentVersionEntity> latestVersions = agentVersionRepository.selectPublishedVersionsByName(keyword,
+                SearchQueryUtils.toPrefixTsQuery(keyword));
 
         // 组合助理和版本信息
         return combineAgentsWithVersions(latestVersions);
@@ -174,8 +175,10 @@ public class AgentDomainService {
         version.setRejectReason("");
 
         // 更新版本状态
+        lockAgent(version.getAgentId());
         version.updatePublishStatus(status);
         agentVersionRepository.updateById(version);
+        agentVersionRepository.refreshLatestPublished(version.getAgentId(), PublishStatus.PUBLISHED.getCode());
 
         // 如果状态更新为已发布，则绑定为Agent的publishedVersion
         if (status == PublishStatus.PUBLISHED) {
@@ -198,12 +201,20 @@ public class AgentDomainService {
         }
 
         // 拒绝版本发布
+        lockAgent(version.getAgentId());
         version.reject(reason);
         agentVersionRepository.checkedUpdateById(version);
+        agentVersionRepository.refreshLatestPublished(version.getAgentId(), PublishStatus.PUBLISHED.getCode());
 
         return version;
     }
 
+    /** 锁定Agent行，同一Agent的版本状态变更串行执行，避免并发刷新时各自看不到对方的改动，留下多个或零个当前生效的版本 */
+    private void lockAgent(String agentId) {
+        agentRepository
+                .selectOne(Wrappers.<AgentEntity>lambdaQuery().eq(AgentEntity::getId, agentId).last("FOR UPDATE"));
+    }
+
     /** 获取Agent的所有版本 */
     public List<AgentVersionEntity> getAgentVersions(String agentId, String userId) {
         // 查询Agent
@@ -243,8 +254,22 @@ public class AgentDomainService {
         return version;
     }
 
+    /** 获取Agent当前生效的已发布版本 按 latest_published 标记走索引查询，对话等热路径使用
+     *
+     * @param agentId Agent ID
+     * @return 已发布版本，没有已发布版本时返回null */
+    public AgentVersionEntity getPublishedAgentVersion(String agentId) {
+        return agentVersionRepository.selectOne(Wrappers.<AgentVersionEntity>lambdaQuery()
+                .eq(AgentVersionEntity::getAgentId, agentId).eq(AgentVersionEntity::getLatestPublished, true)
+                .last("LIMIT 1"));
+    }
+
     /** 获取指定状态的所有版本 注：只返回每个助理的最新版本，避免同一助理多个版本同时出现 */
     public List<AgentVersionEntity> getVersionsByStatus(PublishStatus status) {
+        // 已发布状态直接读取维护好的当前发布版本
+        if (status == PublishStatus.PUBLISHED) {
+            return agentVersionRepository.selectPublishedVersionsByName(null, null);
+        }
 
         // 直接通过SQL查询每个agentId的最新版本
         return agentVersionRepository.selectLatestVersionsByStatus(status == null ? null : status.getCode());
@@ -309,11 +334,10 @@ public class AgentDomainService {
                         versionEntities.stream().map(AgentVersionEntity::getAgentId).collect(Collectors.toList()))
                 .eq(AgentEntity::getEnabled, true));
 
-        // 将版本转为 map，key：agent_id，value：本身
-        Map<String, AgentVersionEntity> agentVersionMap = versionEntities.stream()
-                .collect(Collectors.toMap(AgentVersionEntity::getAgentId, Function.identity()));
+        // 按版本列表的顺序返回，保留查询的排序
+        Set<String> enabledAgentIds = agents.stream().map(AgentEntity::getId).collect(Collectors.toSet());
 
-        return agents.stream().map(agent -> agentVersionMap.get(agent.getId())).filter(Objects::nonNull)
+        return versionEntities.stream().filter(version -> enabledAgentIds.contains(version.getAgentId()))
                 .collect(Collectors.toList());
     }
 
@@ -0,0 +1,136 @@
+package org.yan.domain.conversation.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import org.yan.infrastructure.entity.BaseEntity;
+
+/** 分层摘要实体类 第0层为固定大小消息块的摘要，更高层由相邻的低层摘要合并而成，每条摘要记录其覆盖的范围 */
+@TableName("context_summaries")
+public class ContextSummaryEntity extends BaseEntity {
+
+    /** 摘要唯一ID */
+    @TableId(value = "id", type = IdType.ASSIGN_UUID)
+    private String id;
+
+    /** 所属会话ID */
+    @TableField("session_id")
+    private String sessionId;
+
+    /** 摘要层级，0为消息块摘要 */
+    @TableField("level")
+    private Integer level;
+
+    /** 覆盖的起始消息块序号（含） */
+    @TableField("start_seq")
+    private Integer startSeq;
+
+    /** 覆盖的结束消息块序号（含） */
+    @TableField("end_seq")
+    private Integer endSeq;
+
+    /** 覆盖的第一条消息ID */
+    @TableField("start_message_id")
+    private String startMessageId;
+
+    /** 覆盖的最后一条消息ID */
+    @TableField("end_message_id")
+    private String endMessageId;
+
+    /** 覆盖的消息数量 */
+    @TableField("message_count")
+    private Integer messageCount;
+
+    /** 摘要内容 */
+    @TableField("content")
+    private String content;
+
+    /** 摘要Token数（估算） */
+    @TableField("token_count")
+    private Integer tokenCount;
+
+    /** 无参构造函数 */
+    public ContextSummaryEntity() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    public void setLevel(Integer level) {
+        this.level = level;
+    }
+
+    public Integer getStartSeq() {
+        return startSeq;
+    }
+
+    public void setStartSeq(Integer startSeq) {
+        this.startSeq = startSeq;
+    }
+
+    public Integer getEndSeq() {
+        return endSeq;
+    }
+
+    public void setEndSeq(Integer endSeq) {
+        this.endSeq = endSeq;
+    }
+
+    public String getStartMessageId() {
+        return startMessageId;
+    }
+
+    public void setStartMessageId(String startMessageId) {
+        this.startMessageId = startMessageId;
+    }
+
+    public String getEndMessageId() {
+        return endMessageId;
+    }
+
+    public void setEndMessageId(String endMessageId) {
+        this.endMessageId = endMessageId;
+    }
+
+    public Integer getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(Integer messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Integer getTokenCount() {
+        return tokenCount;
+    }
+
+    public void setTokenCount(Integer tokenCount) {
+        this.tokenCount = tokenCount;
+    }
+}
@@ -0,0 +1,10 @@
+package org.yan.domain.conversation.repository;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.yan.domain.conversation.model.ContextSummaryEntity;
+import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
+
+/** 分层摘要仓库接口 */
+@Mapper
+public interface ContextSummaryRepository extends MyBatisPlusExtRepository<ContextSummaryEntity> {
+}
@@ -3,17 +3,27 @@ package org.yan.domain.conversation.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.yan.domain.conversation.model.ContextEntity;
+import org.yan.domain.conversation.model.ContextSummaryEntity;
 import org.yan.domain.conversation.repository.ContextRepository;
+import org.yan.domain.conversation.repository.ContextSummaryRepository;
 import org.yan.infrastructure.exception.BusinessException;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
 @Service
 public class ContextDomainService {
 
     private final ContextRepository contextRepository;
+    private final ContextSummaryRepository contextSummaryRepository;
 
-    public ContextDomainService(ContextRepository contextRepository) {
+    public ContextDomainService(ContextRepository contextRepository,
+            ContextSummaryRepository contextSummaryRepository) {
         this.contextRepository = contextRepository;
+        this.contextSummaryRepository = contextSummaryRepository;
     }
 
     // 获取历史消息id
@@ -33,6 +43,40 @@ public class ContextDomainService {
         return contextRepository.selectOne(wrapper);
     }
 
+    /** 提交后台生成的摘要 锁定上下文行后写入新摘要、删除被合并的摘要、将已摘要的消息移出活跃窗口并替换摘要摘录，
+     * 全部在同一事务中生效；窗口已变化时什么都不写入
+     *
+     * @param sessionId 会话ID
+     * @param summarizedMessageIds 已被摘要的消息ID
+     * @param digest 由分层摘要拼接出的有界摘录
+     * @param createdSummaries 本次新生成的摘要
+     * @param mergedSummaryIds 本次被合并掉的摘要ID
+     * @return 是否提交成功，窗口已被其他操作改动时返回false */
+    @Transactional
+    public boolean commitSummary(String sessionId, List<String> summarizedMessageIds, String digest,
+            List<ContextSummaryEntity> createdSummaries, List<String> mergedSummaryIds) {
+        ContextEntity contextEntity = contextRepository.selectOne(Wrappers.<ContextEntity>lambdaQuery()
+                .eq(ContextEntity::getSessionId, sessionId).last("FOR UPDATE"));
+        if (contextEntity == null) {
+            return false;
+        }
+        List<String> activeMessages = new ArrayList<>(contextEntity.getActiveMessages());
+        if (!new HashSet<>(activeMessages).containsAll(summarizedMessageIds)) {
+            return false;
+        }
+        if (!createdSummaries.isEmpty()) {
+            contextSummaryRepository.insert(createdSummaries);
+        }
+        if (!mergedSummaryIds.isEmpty()) {
+            contextSummaryRepository.deleteByIds(mergedSummaryIds);
+        }
+        activeMessages.removeAll(new HashSet<>(summarizedMessageIds));
+        contextEntity.setActiveMessages(activeMessages);
+        contextEntity.setSummary(digest);
+        contextRepository.updateById(contextEntity);
+        return true;
+    }
+
     public ContextEntity insertOrUpdate(ContextEntity contextEntity) {
         try {
             contextRepository.insertOrUpdate(contextEntity);
@@ -0,0 +1,300 @@
+package org.yan.domain.conversation.service;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.yan.domain.conversation.model.ContextSummaryEntity;
+import org.yan.domain.conversation.model.MessageEntity;
+import org.yan.domain.conversation.repository.ContextSummaryRepository;
+import org.yan.domain.token.model.TokenMessage;
+import org.yan.domain.token.model.config.TokenOverflowConfig;
+import org.yan.domain.token.service.impl.SummarizeTokenOverflowStrategy;
+import org.yan.infrastructure.llm.ProviderRateLimiter;
+import org.yan.infrastructure.utils.TokenCountUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** 上下文摘要服务 在会话接近摘要阈值时于后台提前生成分层摘要，对话链路只读取已提交的有界摘录，不再同步等待大模型 */
+@Service
+public class ContextSummaryDomainService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextSummaryDomainService.class);
+
+    /** 活跃消息数达到阈值的该比例时提前触发摘要 */
+    private static final double PREFETCH_RATIO = 0.8;
+
+    /** 每个服务商密钥每分钟发起的摘要请求数上限 */
+    private static final int SUMMARY_REQUESTS_PER_MINUTE = 20;
+
+    /** 每个服务商密钥允许的突发摘要请求数 */
+    private static final int SUMMARY_REQUEST_BURST = 2;
+
+    /** 等待服务商配额的最长时间（秒） */
+    private static final long PROVIDER_PERMIT_TIMEOUT_SECONDS = 30;
+
+    /** 每个消息块包含的消息数，消息块只摘要一次 */
+    private static final int CHUNK_SIZE = 10;
+
+    /** 摘录的Token预算，超出时合并最早的摘要 */
+    private static final int DIGEST_TOKEN_BUDGET = 1500;
+
+    /** 单条合并摘要的Token上限，超出时截断 */
+    private static final int MERGED_SUMMARY_TOKEN_LIMIT = DIGEST_TOKEN_BUDGET / 2;
+
+    /** 每次合并的摘要数量上限 */
+    private static final int MERGE_FANOUT = 4;
+
+    private final ContextDomainService contextDomainService;
+    private final MessageDomainService messageDomainService;
+    private final ContextSummaryRepository contextSummaryRepository;
+    private final SummarizeTokenOverflowStrategy summarizer;
+
+    private final ExecutorService executorService;
+
+    /** 正在摘要的会话，用于对同一会话的任务去重 */
+    private final Set<String> runningSessions = ConcurrentHashMap.newKeySet();
+
+    /** 按服务商限制摘要请求速率，每次调用大模型前获取令牌 */
+    private final ProviderRateLimiter rateLimiter = new ProviderRateLimiter(SUMMARY_REQUESTS_PER_MINUTE,
+            SUMMARY_REQUEST_BURST);
+
+    public ContextSummaryDomainService(ContextDomainService contextDomainService,
+            MessageDomainService messageDomainService, ContextSummaryRepository contextSummaryRepository,
+            SummarizeTokenOverflowStrategy summarizer) {
+        this.contextDomainService = contextDomainService;
+        this.messageDomainService = messageDomainService;
+        this.contextSummaryRepository = contextSummaryRepository;
+        this.summarizer = summarizer;
+
+        // 有界队列的专用线程池，队列满时直接放弃，下一轮对话会重新触发
+        this.executorService = new ThreadPoolExecutor(2, // 核心线程数
+                4, // 最大线程数
+                60L, // 空闲线程存活时间
+                TimeUnit.SECONDS, // 时间单位
+                new ArrayBlockingQueue<>(100), // 有界队列
+                r -> {
+                    Thread t = new Thread(r, "context-summary-thread");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** 关闭线程池 */
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 会话接近摘要阈值时提交后台摘要任务 保留最近一半阈值数量的消息，其余较早的消息按固定大小分块摘要，不足一块的留在窗口中
+     *
+     * @param sessionId 会话ID
+     * @param activeMessageIds 当前活跃消息ID（按插入顺序）
+     * @param config Token配置，需包含摘要阈值和服务商配置
+     * @return 是否提交了新任务 */
+    public boolean scheduleIfNeeded(String sessionId, List<String> activeMessageIds, TokenOverflowConfig config) {
+        Integer threshold = config.getSummaryThreshold();
+        if (threshold == null || threshold <= 0 || activeMessageIds == null) {
+            return false;
+        }
+        if (activeMessageIds.size() < Math.ceil(threshold * PREFETCH_RATIO)) {
+            return false;
+        }
+        int keepCount = Math.max(1, threshold / 2);
+        int chunkedCount = (activeMessageIds.size() - keepCount) / CHUNK_SIZE * CHUNK_SIZE;
+        if (chunkedCount <= 0) {
+            return false;
+        }
+        if (!runningSessions.add(sessionId)) {
+            logger.debug("会话 {} 已有摘要任务在执行，跳过", sessionId);
+            return false;
+        }
+
+        List<String> messageIdsToSummarize = List.copyOf(activeMessageIds.subList(0, chunkedCount));
+        try {
+            executorService.execute(() -> summarize(sessionId, messageIdsToSummarize, config));
+            logger.info("会话 {} 提交后台摘要任务，待摘要消息数: {}", sessionId, messageIdsToSummarize.size());
+            return true;
+        } catch (RejectedExecutionException e) {
+            runningSessions.remove(sessionId);
+            logger.warn("摘要任务队列已满，会话 {} 的摘要推迟到下一轮", sessionId);
+            return false;
+        }
+    }
+
+    /** 执行摘要并提交 调用大模型的部分只在内存中生成摘要，新增和合并掉的摘要与上下文窗口在同一事务中提交，
+     * 提交失败时不会留下覆盖仍在活跃窗口中消息的摘要 */
+    private void summarize(String sessionId, List<String> messageIds, TokenOverflowConfig config) {
+        try {
+            long start = System.currentTimeMillis();
+            List<ContextSummaryEntity> summaries = new ArrayList<>(listSummaries(sessionId));
+
+            // 1. 为每个新消息块生成第0层摘要，已摘要过的块直接跳过
+            int seq = nextSeq(summaries);
+            for (int from = 0; from < messageIds.size(); from += CHUNK_SIZE) {
+                ContextSummaryEntity chunkSummary = summarizeChunk(sessionId,
+                        messageIds.subList(from, from + CHUNK_SIZE), seq, config);
+                if (chunkSummary != null) {
+                    summaries.add(chunkSummary);
+                    seq++;
+                }
+            }
+
+            // 2. 摘要总量超出预算时合并最早的摘要
+            List<String> mergedIds = new ArrayList<>();
+            summaries = compact(sessionId, summaries, mergedIds, config);
+
+            // 3. 提交有界摘录并移动上下文窗口
+            String digest = summaries.stream().map(ContextSummaryEntity::getContent)
+                    .collect(Collectors.joining("\n"));
+            if (TokenCountUtils.estimate(digest) > DIGEST_TOKEN_BUDGET) {
+                digest = TokenCountUtils.keepTail(digest, DIGEST_TOKEN_BUDGET);
+            }
+            List<ContextSummaryEntity> created = summaries.stream().filter(summary -> summary.getId() == null)
+                    .toList();
+            boolean committed = contextDomainService.commitSummary(sessionId, messageIds, digest, created,
+                    mergedIds);
+            logger.info("会话 {} 后台摘要完成，耗时 {} ms，摘要数: {}，提交结果: {}", sessionId,
+                    System.currentTimeMillis() - start, summaries.size(), committed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ProviderRateLimitException e) {
+            logger.warn("会话 {} 等待服务商配额超时，摘要推迟到下一轮", sessionId);
+        } catch (Exception e) {
+            logger.error("会话 {} 后台摘要失败: {}", sessionId, e.getMessage(), e);
+        } finally {
+            runningSessions.remove(sessionId);
+        }
+    }
+
+    /** 为一个消息块生成第0层摘要，只在内存中创建，由提交时统一写入
+     *
+     * @return 新的摘要，消息块已摘要过或没有内容时返回null */
+    private ContextSummaryEntity summarizeChunk(String sessionId, List<String> chunk, int seq,
+            TokenOverflowConfig config) throws InterruptedException {
+        String startMessageId = chunk.get(0);
+        String endMessageId = chunk.get(chunk.size() - 1);
+        boolean exists = contextSummaryRepository.exists(Wrappers.<ContextSummaryEntity>lambdaQuery()
+                .eq(ContextSummaryEntity::getSessionId, sessionId)
+                .eq(ContextSummaryEntity::getStartMessageId, startMessageId)
+                .eq(ContextSummaryEntity::getEndMessageId, endMessageId));
+        if (exists) {
+            return null;
+        }
+
+        List<TokenMessage> tokenMessages = messageDomainService.listByIds(chunk).stream()
+                .filter(message -> StringUtils.isNotEmpty(message.getContent())).map(this::toTokenMessage).toList();
+        if (tokenMessages.isEmpty()) {
+            return null;
+        }
+
+        String content = generateSummary(tokenMessages, config);
+
+        ContextSummaryEntity chunkSummary = new ContextSummaryEntity();
+        chunkSummary.setSessionId(sessionId);
+        chunkSummary.setLevel(0);
+        chunkSummary.setStartSeq(seq);
+        chunkSummary.setEndSeq(seq);
+        chunkSummary.setStartMessageId(startMessageId);
+        chunkSummary.setEndMessageId(endMessageId);
+        chunkSummary.setMessageCount(chunk.size());
+        chunkSummary.setContent(content);
+        chunkSummary.setTokenCount(TokenCountUtils.estimate(content));
+        return chunkSummary;
+    }
+
+    /** 合并摘要直到总量不超过预算 每次把最早的若干条摘要合并为更高一层，已有摘要不会重新生成；
+     * 合并结果截断到单条上限，保证每次合并都能缩小总量
+     *
+     * @param mergedIds 收集被合并掉的已持久化摘要ID */
+    private List<ContextSummaryEntity> compact(String sessionId, List<ContextSummaryEntity> summaries,
+            List<String> mergedIds, TokenOverflowConfig config) throws InterruptedException {
+        List<ContextSummaryEntity> result = new ArrayList<>(summaries);
+        while (result.size() > 1 && totalTokens(result) > DIGEST_TOKEN_BUDGET) {
+            int groupSize = Math.min(MERGE_FANOUT, result.size());
+            List<ContextSummaryEntity> group = new ArrayList<>(result.subList(0, groupSize));
+            List<TokenMessage> contents = group.stream().map(summary -> new TokenMessage(summary.getId(),
+                    summary.getContent(), "summary", summary.getTokenCount())).toList();
+            String content = generateSummary(contents, config);
+            if (TokenCountUtils.estimate(content) > MERGED_SUMMARY_TOKEN_LIMIT) {
+                content = TokenCountUtils.keepTail(content, MERGED_SUMMARY_TOKEN_LIMIT);
+            }
+
+            ContextSummaryEntity first = group.get(0);
+            ContextSummaryEntity last = group.get(group.size() - 1);
+            ContextSummaryEntity merged = new ContextSummaryEntity();
+            merged.setSessionId(sessionId);
+            merged.setLevel(group.stream().mapToInt(ContextSummaryEntity::getLevel).max().orElse(0) + 1);
+            merged.setStartSeq(first.getStartSeq());
+            merged.setEndSeq(last.getEndSeq());
+            merged.setStartMessageId(first.getStartMessageId());
+            merged.setEndMessageId(last.getEndMessageId());
+            merged.setMessageCount(group.stream().mapToInt(ContextSummaryEntity::getMessageCount).sum());
+            merged.setContent(content);
+            merged.setTokenCount(TokenCountUtils.estimate(content));
+            group.stream().map(ContextSummaryEntity::getId).filter(Objects::nonNull).forEach(mergedIds::add);
+
+            result.subList(0, groupSize).clear();
+            result.add(0, merged);
+        }
+        return result;
+    }
+
+    /** 获取服务商配额后调用大模型生成摘要，等待超时时放弃本次任务 */
+    private String generateSummary(List<TokenMessage> messages, TokenOverflowConfig config)
+            throws InterruptedException {
+        if (!rateLimiter.acquire(config.getProviderConfig(), PROVIDER_PERMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new ProviderRateLimitException();
+        }
+        return summarizer.generateSummary(messages, config);
+    }
+
+    /** 查询会话当前有效的摘要，按覆盖范围排序 */
+    private List<ContextSummaryEntity> listSummaries(String sessionId) {
+        return contextSummaryRepository.selectList(Wrappers.<ContextSummaryEntity>lambdaQuery()
+                .eq(ContextSummaryEntity::getSessionId, sessionId).orderByAsc(ContextSummaryEntity::getStartSeq));
+    }
+
+    /** 下一个消息块序号 */
+    private int nextSeq(List<ContextSummaryEntity> summaries) {
+        return summaries.stream().mapToInt(ContextSummaryEntity::getEndSeq).max().orElse(-1) + 1;
+    }
+
+    private int totalTokens(List<ContextSummaryEntity> summaries) {
+        return summaries.stream().mapToInt(summary -> summary.getTokenCount() != null ? summary.getTokenCount() : 0)
+                .sum();
+    }
+
+    private TokenMessage toTokenMessage(MessageEntity message) {
+        return new TokenMessage(message.getId(), message.getContent(), message.getRole().name(),
+                message.getTokenCount(), message.getCreatedAt());
+    }
+
+    /** 等待服务商配额超时，结束本次摘要任务 */
+    private static final class ProviderRateLimitException extends RuntimeException {
+
+        ProviderRateLimitException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package org.yan.domain.conversation.service;
 
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.yan.domain.conversation.model.ContextEntity;
 import org.yan.domain.conversation.model.MessageEntity;
 import org.yan.domain.conversation.repository.ContextRepository;
 import org.yan.domain.conversation.repository.MessageRepository;
+import org.yan.domain.token.service.TokenDomainService;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class MessageDomainService {
@@ -15,16 +25,37 @@ public class MessageDomainService {
 
     private final ContextRepository contextRepository;
 
-    public MessageDomainService(MessageRepository messageRepository, ContextRepository contextRepository) {
+    private final TokenDomainService tokenDomainService;
+
+    public MessageDomainService(MessageRepository messageRepository, ContextRepository contextRepository,
+            TokenDomainService tokenDomainService) {
         this.messageRepository = messageRepository;
         this.contextRepository = contextRepository;
+        this.tokenDomainService = tokenDomainService;
     }
 
+    /** 根据ID列表查询消息，结果按传入ID的顺序排列（即上下文中的插入顺序） */
     public List<MessageEntity> listByIds(List<String> ids) {
-        return messageRepository.selectByIds(ids);
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<MessageEntity> messages = messageRepository.selectByIds(ids);
+        Map<String, MessageEntity> messageMap = new HashMap<>(messages.size() * 2);
+        for (MessageEntity message : messages) {
+            messageMap.put(message.getId(), message);
+        }
+        List<MessageEntity> ordered = new ArrayList<>(messages.size());
+        for (String id : ids) {
+            MessageEntity message = messageMap.get(id);
+            if (message != null) {
+                ordered.add(message);
+            }
+        }
+        return ordered;
     }
 
     /** 保存消息并且更新消息到上下文 */
+    @Transactional
     public void saveMessageAndUpdateContext(List<MessageEntity> messageEntities, ContextEntity contextEntity) {
         if (messageEntities == null || messageEntities.isEmpty()) {
             return;
@@ -33,8 +64,45 @@ public class MessageDomainService {
             messageEntity.setId(null);
         }
         messageRepository.insert(messageEntities);
-        contextEntity.getActiveMessages().addAll(messageEntities.stream().map(MessageEntity::getId).toList());
+        List<String> newMessageIds = messageEntities.stream().map(MessageEntity::getId).toList();
+        contextEntity.getActiveMessages().addAll(newMessageIds);
+        mergeCommittedContext(contextEntity, newMessageIds);
         contextRepository.insertOrUpdate(contextEntity);
+
+        // 事务提交后再增量更新相关性索引，回滚的消息不会进入索引
+        String sessionId = contextEntity.getSessionId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexMessages(sessionId, messageEntities);
+                }
+            });
+        } else {
+            indexMessages(sessionId, messageEntities);
+        }
+    }
+
+    private void indexMessages(String sessionId, List<MessageEntity> messageEntities) {
+        for (MessageEntity messageEntity : messageEntities) {
+            tokenDomainService.indexMessage(sessionId, messageEntity.getId(), messageEntity.getContent());
+        }
+    }
+
+    /** 与数据库中已提交的上下文合并 后台摘要任务可能已将部分消息移出窗口并更新摘要，这些改动不能被对话链路中的旧快照覆盖 */
+    private void mergeCommittedContext(ContextEntity contextEntity, List<String> newMessageIds) {
+        if (contextEntity.getId() == null) {
+            return;
+        }
+        ContextEntity committed = contextRepository.selectOne(Wrappers.<ContextEntity>lambdaQuery()
+                .eq(ContextEntity::getId, contextEntity.getId()).last("FOR UPDATE"));
+        if (committed == null) {
+            return;
+        }
+        Set<String> committedIds = new HashSet<>(committed.getActiveMessages());
+        Set<String> appendedIds = new HashSet<>(newMessageIds);
+        contextEntity.getActiveMessages().removeIf(id -> !committedIds.contains(id) && !appendedIds.contains(id));
+        contextEntity.setSummary(committed.getSummary());
     }
 
     /** 保存消息 */
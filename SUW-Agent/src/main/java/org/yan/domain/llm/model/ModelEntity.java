@@ -27,6 +27,9 @@ public class ModelEntity extends BaseEntity {
 
     private Boolean status;
 
+    /** 上下文窗口（Token数），为空时按模型ID匹配常见模型系列 */
+    private Integer contextWindow;
+
     public String getId() {
         return id;
     }
@@ -104,4 +107,12 @@ public class ModelEntity extends BaseEntity {
             throw new BusinessException("模型未激活");
         }
     }
-}
\ No newline at end of file
+
+    public Integer getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(Integer contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+}
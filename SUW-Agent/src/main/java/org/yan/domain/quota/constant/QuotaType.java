@@ -0,0 +1,44 @@
+package org.yan.domain.quota.constant;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/** 配额类型枚举 */
+public enum QuotaType {
+
+    /** 用户每天的Token数 */
+    USER_DAILY_TOKENS("user_daily_tokens", ChronoUnit.DAYS, "用户今日Token用量已达上限"),
+
+    /** Agent每分钟的请求数 */
+    AGENT_REQUESTS_PER_MINUTE("agent_rpm", ChronoUnit.MINUTES, "该助理请求过于频繁，请稍后再试"),
+
+    /** 服务商（API Key）每天的Token数 */
+    PROVIDER_DAILY_TOKENS("provider_daily_tokens", ChronoUnit.DAYS, "该服务商今日Token用量已达上限");
+
+    private final String code;
+    private final ChronoUnit window;
+    private final String exceededMessage;
+
+    QuotaType(String code, ChronoUnit window, String exceededMessage) {
+        this.code = code;
+        this.window = window;
+        this.exceededMessage = exceededMessage;
+    }
+
+    /** 获取当前时间所在窗口的开始时间 */
+    public LocalDateTime currentWindowStart() {
+        return LocalDateTime.now().truncatedTo(window);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public ChronoUnit getWindow() {
+        return window;
+    }
+
+    public String getExceededMessage() {
+        return exceededMessage;
+    }
+}
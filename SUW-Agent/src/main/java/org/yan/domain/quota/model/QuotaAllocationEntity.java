@@ -0,0 +1,74 @@
+package org.yan.domain.quota.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import org.yan.infrastructure.entity.BaseEntity;
+
+import java.time.LocalDateTime;
+
+/** 配额分配实体类 记录每个配额在一个时间窗口内的上限和已分配给各节点的额度，节点按块申请额度后在本地扣减 */
+@TableName("quota_allocations")
+public class QuotaAllocationEntity extends BaseEntity {
+
+    /** 分配记录唯一ID */
+    @TableId(value = "id", type = IdType.ASSIGN_UUID)
+    private String id;
+
+    /** 配额键，格式为 类型:主体ID */
+    @TableField("quota_key")
+    private String quotaKey;
+
+    /** 窗口开始时间 */
+    @TableField("window_start")
+    private LocalDateTime windowStart;
+
+    /** 窗口内的配额上限 */
+    @TableField("limit_value")
+    private Long limitValue;
+
+    /** 已分配的额度 */
+    @TableField("allocated")
+    private Long allocated;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getQuotaKey() {
+        return quotaKey;
+    }
+
+    public void setQuotaKey(String quotaKey) {
+        this.quotaKey = quotaKey;
+    }
+
+    public LocalDateTime getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(LocalDateTime windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public Long getLimitValue() {
+        return limitValue;
+    }
+
+    public void setLimitValue(Long limitValue) {
+        this.limitValue = limitValue;
+    }
+
+    public Long getAllocated() {
+        return allocated;
+    }
+
+    public void setAllocated(Long allocated) {
+        this.allocated = allocated;
+    }
+}
@@ -0,0 +1,168 @@
+package org.yan.domain.quota.model;
+
+import org.yan.domain.quota.constant.QuotaType;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/** 配额桶 本节点在一个时间窗口内持有的额度，检查和扣减都是原子变量操作，不加锁；
+ * 剩余额度低于半块时通过回调异步向数据库申请下一块 */
+public class QuotaBucket {
+
+    private final QuotaType type;
+
+    private final String subjectId;
+
+    private final String quotaKey;
+
+    private final LocalDateTime windowStart;
+
+    private final long limit;
+
+    /** 每次向数据库申请的额度 */
+    private final long chunk;
+
+    /** 本节点剩余的额度，Token在流式输出时先扣减，可能短暂为负，由下一块额度补齐 */
+    private final AtomicLong remaining = new AtomicLong();
+
+    /** 是否正在申请额度 */
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    /** 窗口额度已全部分配或实际用量已达上限 */
+    private volatile boolean exhausted;
+
+    /** 数据库中是否已有该窗口的分配记录 */
+    private volatile boolean registered;
+
+    /** 本窗口是否已在配额存储不可用时放行过本地额度 */
+    private boolean degradedGranted;
+
+    private final Consumer<QuotaBucket> refillTrigger;
+
+    public QuotaBucket(QuotaType type, String subjectId, LocalDateTime windowStart, long limit, long chunk,
+            Consumer<QuotaBucket> refillTrigger) {
+        this.type = type;
+        this.subjectId = subjectId;
+        this.quotaKey = type.getCode() + ":" + subjectId;
+        this.windowStart = windowStart;
+        this.limit = limit;
+        this.chunk = chunk;
+        this.refillTrigger = refillTrigger;
+    }
+
+    /** 是否还有可用额度 */
+    public boolean hasRemaining() {
+        return remaining.get() > 0;
+    }
+
+    /** 尝试扣减指定额度，剩余不足时不扣减
+     *
+     * @return 是否扣减成功 */
+    public boolean tryTake(long amount) {
+        while (true) {
+            long current = remaining.get();
+            if (current < amount) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, current - amount)) {
+                triggerRefillIfLow(current - amount);
+                return true;
+            }
+        }
+    }
+
+    /** 扣减额度，允许扣成负数，传入负数表示退还
+     *
+     * @param amount 扣减的额度 */
+    public void consume(long amount) {
+        if (amount == 0) {
+            return;
+        }
+        triggerRefillIfLow(remaining.addAndGet(-amount));
+    }
+
+    /** 增加从数据库申请到的额度 */
+    public void grant(long amount) {
+        remaining.addAndGet(amount);
+    }
+
+    /** 配额存储不可用时在本地放行额度 每个窗口最多放行一块，数据库故障期间的超额有上限；调用方需持有桶的锁
+     *
+     * @return 是否放行，本窗口的本地额度已用完时返回false */
+    public boolean grantDegraded() {
+        if (degradedGranted) {
+            return false;
+        }
+        degradedGranted = true;
+        grant(chunk);
+        return true;
+    }
+
+    /** 标记窗口额度已用尽，丢弃本地剩余的额度 */
+    public void markExhausted() {
+        this.exhausted = true;
+        remaining.updateAndGet(current -> Math.min(current, 0));
+    }
+
+    /** 尝试占用申请额度的标记，保证同一时间只有一个异步申请 */
+    public boolean beginRefill() {
+        return refilling.compareAndSet(false, true);
+    }
+
+    public void endRefill() {
+        refilling.set(false);
+    }
+
+    /** 是否属于当前时间窗口 */
+    public boolean isCurrentWindow() {
+        return windowStart.equals(type.currentWindowStart());
+    }
+
+    private void triggerRefillIfLow(long current) {
+        if (!exhausted && current < chunk / 2 + 1 && !refilling.get()) {
+            refillTrigger.accept(this);
+        }
+    }
+
+    public QuotaType getType() {
+        return type;
+    }
+
+    public String getSubjectId() {
+        return subjectId;
+    }
+
+    public String getQuotaKey() {
+        return quotaKey;
+    }
+
+    public LocalDateTime getWindowStart() {
+        return windowStart;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getChunk() {
+        return chunk;
+    }
+
+    public long getRemaining() {
+        return remaining.get();
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(boolean registered) {
+        this.registered = registered;
+    }
+}
@@ -0,0 +1,49 @@
+package org.yan.domain.quota.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 配额凭证 对话准入时签发，流式输出时按估算的Token数实时扣减，对话完成后按模型返回的实际用量结算差额 */
+public class QuotaTicket {
+
+    /** 按Token计量的配额桶 */
+    private final List<QuotaBucket> tokenBuckets;
+
+    /** 流式输出期间已扣减的Token数 */
+    private final AtomicLong streamedTokens = new AtomicLong();
+
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    public QuotaTicket(List<QuotaBucket> tokenBuckets) {
+        this.tokenBuckets = tokenBuckets;
+    }
+
+    /** 扣减流式输出的估算Token数
+     *
+     * @param tokens 估算的Token数 */
+    public void stream(long tokens) {
+        if (tokens <= 0 || settled.get()) {
+            return;
+        }
+        streamedTokens.addAndGet(tokens);
+        for (QuotaBucket bucket : tokenBuckets) {
+            bucket.consume(tokens);
+        }
+    }
+
+    /** 按实际用量结算，多退少补，只生效一次；没有实际用量时保留已扣减的估算值
+     *
+     * @param inputTokens 实际输入Token数
+     * @param outputTokens 实际输出Token数 */
+    public void settle(Integer inputTokens, Integer outputTokens) {
+        if (!settled.compareAndSet(false, true) || (inputTokens == null && outputTokens == null)) {
+            return;
+        }
+        long actual = (inputTokens != null ? inputTokens : 0) + (outputTokens != null ? outputTokens : 0);
+        long delta = actual - streamedTokens.get();
+        for (QuotaBucket bucket : tokenBuckets) {
+            bucket.consume(delta);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.yan.domain.quota.repository;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.yan.domain.quota.model.QuotaAllocationEntity;
+import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
+
+import java.time.LocalDateTime;
+
+/** 配额分配仓库接口 */
+@Mapper
+public interface QuotaAllocationRepository extends MyBatisPlusExtRepository<QuotaAllocationEntity> {
+
+    /** 创建窗口的分配记录，已存在时只更新上限
+     *
+     * @return 影响行数 */
+    @Insert({"INSERT INTO quota_allocations (id, quota_key, window_start, limit_value, allocated, created_at, ",
+            "updated_at) VALUES (#{id}, #{quotaKey}, #{windowStart}, #{limitValue}, 0, NOW(), NOW()) ",
+            "ON CONFLICT (quota_key, window_start) DO UPDATE SET limit_value = EXCLUDED.limit_value"})
+    int ensureWindow(@Param("id") String id, @Param("quotaKey") String quotaKey,
+            @Param("windowStart") LocalDateTime windowStart, @Param("limitValue") long limitValue);
+
+    /** 从窗口剩余额度中申请一块，行锁保证多节点并发申请时分配总量不超过上限
+     *
+     * @param chunk 申请的额度
+     * @return 实际分配的额度，窗口已分配完时返回null */
+    @Select({"WITH cur AS (SELECT id, allocated, limit_value FROM quota_allocations ",
+            "WHERE quota_key = #{quotaKey} AND window_start = #{windowStart} FOR UPDATE) ",
+            "UPDATE quota_allocations q SET allocated = LEAST(cur.limit_value, cur.allocated + #{chunk}), ",
+            "updated_at = NOW() FROM cur WHERE q.id = cur.id AND cur.allocated < cur.limit_value ",
+            "RETURNING LEAST(cur.limit_value, cur.allocated + #{chunk}) - cur.allocated"})
+    Long allocate(@Param("quotaKey") String quotaKey, @Param("windowStart") LocalDateTime windowStart,
+            @Param("chunk") long chunk);
+
+    /** 用持久化的实际用量校准已分配额度，实际用量超出分配时把分配量提高到实际用量
+     *
+     * @param used 窗口内的实际用量
+     * @return 影响行数 */
+    @Update({"UPDATE quota_allocations SET allocated = GREATEST(allocated, #{used}), updated_at = NOW() ",
+            "WHERE quota_key = #{quotaKey} AND window_start = #{windowStart}"})
+    int reconcile(@Param("quotaKey") String quotaKey, @Param("windowStart") LocalDateTime windowStart,
+            @Param("used") long used);
+
+    /** 删除过期窗口的分配记录
+     *
+     * @param before 早于该时间开始的窗口
+     * @return 删除行数 */
+    @Delete("DELETE FROM quota_allocations WHERE window_start < #{before}")
+    int deleteExpired(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,243 @@
+package org.yan.domain.quota.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.yan.domain.quota.constant.QuotaType;
+import org.yan.domain.quota.model.QuotaBucket;
+import org.yan.domain.quota.model.QuotaTicket;
+import org.yan.domain.quota.repository.QuotaAllocationRepository;
+import org.yan.domain.usage.service.TokenUsageDomainService;
+import org.yan.infrastructure.config.QuotaProperties;
+import org.yan.infrastructure.exception.BusinessException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** 配额领域服务 每个配额在数据库中按时间窗口记录上限和已分配额度，节点按块申请额度（租约）后在内存中扣减，
+ * 准入检查只读原子变量，不访问数据库；多节点的分配总量由数据库行锁保证不超过上限。
+ * 用户和服务商的Token配额定期与持久化的用量汇总校准，修正估算偏差和节点异常退出造成的漏记；
+ * 配额存储不可用时每个窗口最多在本地放行一块额度，之后拒绝请求 */
+@Service
+public class QuotaDomainService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotaDomainService.class);
+
+    /** 过期分配记录的保留天数 */
+    private static final int ALLOCATION_RETENTION_DAYS = 2;
+
+    private final QuotaProperties properties;
+    private final QuotaAllocationRepository quotaAllocationRepository;
+    private final TokenUsageDomainService tokenUsageDomainService;
+
+    /** 配额键 -> 当前窗口的配额桶 */
+    private final Map<String, QuotaBucket> buckets = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    public QuotaDomainService(QuotaProperties properties, QuotaAllocationRepository quotaAllocationRepository,
+            TokenUsageDomainService tokenUsageDomainService) {
+        this.properties = properties;
+        this.quotaAllocationRepository = quotaAllocationRepository;
+        this.tokenUsageDomainService = tokenUsageDomainService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "quota-lease-thread");
+            t.setDaemon(true);
+            return t;
+        });
+        int interval = properties.getReconcileIntervalSeconds();
+        executor.scheduleWithFixedDelay(this::reconcileSafely, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** 对话准入检查 用户和服务商的Token配额只检查是否还有剩余，实际用量在流式输出时扣减；Agent请求数在准入时扣减
+     *
+     * @param userId 用户ID
+     * @param agentId Agent ID，为空时不检查Agent配额
+     * @param providerId 服务商ID
+     * @return 配额凭证，用于后续扣减Token
+     * @throws BusinessException 任一配额已用尽 */
+    public QuotaTicket admit(String userId, String agentId, String providerId) {
+        QuotaBucket userBucket = bucket(QuotaType.USER_DAILY_TOKENS, userId);
+        QuotaBucket providerBucket = bucket(QuotaType.PROVIDER_DAILY_TOKENS, providerId);
+        QuotaBucket agentBucket = bucket(QuotaType.AGENT_REQUESTS_PER_MINUTE, agentId);
+
+        checkRemaining(userBucket);
+        checkRemaining(providerBucket);
+        if (agentBucket != null && !agentBucket.tryTake(1)) {
+            if (!refillNow(agentBucket) || !agentBucket.tryTake(1)) {
+                throw new BusinessException(agentBucket.getType().getExceededMessage());
+            }
+        }
+
+        List<QuotaBucket> tokenBuckets = new ArrayList<>(2);
+        if (userBucket != null) {
+            tokenBuckets.add(userBucket);
+        }
+        if (providerBucket != null) {
+            tokenBuckets.add(providerBucket);
+        }
+        return new QuotaTicket(tokenBuckets);
+    }
+
+    /** 与持久化用量校准 用户和服务商的Token配额以用量汇总为准，同时清理过期窗口 */
+    public void reconcile() {
+        for (QuotaBucket bucket : buckets.values()) {
+            if (!bucket.isCurrentWindow()) {
+                buckets.remove(bucket.getQuotaKey(), bucket);
+                continue;
+            }
+            if (!bucket.isRegistered()) {
+                continue;
+            }
+            long used;
+            if (bucket.getType() == QuotaType.USER_DAILY_TOKENS) {
+                used = tokenUsageDomainService.sumUserTokens(bucket.getSubjectId(), bucket.getWindowStart());
+            } else if (bucket.getType() == QuotaType.PROVIDER_DAILY_TOKENS) {
+                used = tokenUsageDomainService.sumProviderTokens(bucket.getSubjectId(), bucket.getWindowStart());
+            } else {
+                continue;
+            }
+            quotaAllocationRepository.reconcile(bucket.getQuotaKey(), bucket.getWindowStart(), used);
+            if (used >= bucket.getLimit()) {
+                bucket.markExhausted();
+            }
+        }
+        quotaAllocationRepository.deleteExpired(LocalDateTime.now().minusDays(ALLOCATION_RETENTION_DAYS));
+    }
+
+    /** 获取当前窗口的配额桶，未配置上限时返回null */
+    private QuotaBucket bucket(QuotaType type, String subjectId) {
+        long limit = limitOf(type);
+        if (limit <= 0 || subjectId == null) {
+            return null;
+        }
+        String key = type.getCode() + ":" + subjectId;
+        QuotaBucket bucket = buckets.get(key);
+        if (bucket != null && bucket.isCurrentWindow()) {
+            return bucket;
+        }
+        LocalDateTime windowStart = type.currentWindowStart();
+        return buckets.compute(key, (k, old) -> old != null && old.getWindowStart().equals(windowStart)
+                ? old
+                : new QuotaBucket(type, subjectId, windowStart, limit,
+                        Math.max(1, limit / Math.max(1, properties.getLeaseParts())), this::refillAsync));
+    }
+
+    private void checkRemaining(QuotaBucket bucket) {
+        if (bucket == null || bucket.hasRemaining()) {
+            return;
+        }
+        if (!refillNow(bucket) || !bucket.hasRemaining()) {
+            throw new BusinessException(bucket.getType().getExceededMessage());
+        }
+    }
+
+    /** 同步申请额度，只在本地额度用完时发生，同一个桶的并发申请串行执行
+     *
+     * @return 是否还有额度可用
+     * @throws BusinessException 配额存储不可用且本窗口的本地额度已用完 */
+    private boolean refillNow(QuotaBucket bucket) {
+        if (bucket.isExhausted()) {
+            return false;
+        }
+        synchronized (bucket) {
+            if (bucket.hasRemaining()) {
+                return true;
+            }
+            try {
+                return allocate(bucket);
+            } catch (Exception e) {
+                // 配额存储不可用时只在本地放行一块额度，用完后拒绝，避免故障期间无限消耗
+                if (bucket.grantDegraded()) {
+                    logger.warn("配额 {} 申请额度失败，本地放行 {}: {}", bucket.getQuotaKey(), bucket.getChunk(),
+                            e.getMessage());
+                    return true;
+                }
+                logger.error("配额 {} 申请额度失败且本地额度已用完，拒绝请求: {}", bucket.getQuotaKey(), e.getMessage());
+                throw new BusinessException("配额服务暂不可用，请稍后再试");
+            }
+        }
+    }
+
+    /** 剩余额度偏低时异步申请下一块，不阻塞准入和流式输出 */
+    private void refillAsync(QuotaBucket bucket) {
+        if (!bucket.beginRefill()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    synchronized (bucket) {
+                        if (bucket.getRemaining() < bucket.getChunk() / 2 + 1) {
+                            allocate(bucket);
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("配额 {} 异步申请额度失败: {}", bucket.getQuotaKey(), e.getMessage());
+                } finally {
+                    bucket.endRefill();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bucket.endRefill();
+        }
+    }
+
+    /** 从数据库申请一块额度，窗口已分配完时标记桶为已用尽 */
+    private boolean allocate(QuotaBucket bucket) {
+        if (bucket.isExhausted()) {
+            return false;
+        }
+        if (!bucket.isRegistered()) {
+            quotaAllocationRepository.ensureWindow(UUID.randomUUID().toString().replace("-", ""),
+                    bucket.getQuotaKey(), bucket.getWindowStart(), bucket.getLimit());
+            bucket.setRegistered(true);
+        }
+        Long granted = quotaAllocationRepository.allocate(bucket.getQuotaKey(), bucket.getWindowStart(),
+                bucket.getChunk());
+        if (granted == null || granted <= 0) {
+            logger.info("配额 {} 在窗口 {} 内已分配完", bucket.getQuotaKey(), bucket.getWindowStart());
+            bucket.markExhausted();
+            return false;
+        }
+        bucket.grant(granted);
+        return true;
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("配额校准异常: {}", e.getMessage(), e);
+        }
+    }
+
+    private long limitOf(QuotaType type) {
+        return switch (type) {
+            case USER_DAILY_TOKENS -> properties.getUserDailyTokens();
+            case AGENT_REQUESTS_PER_MINUTE -> properties.getAgentRequestsPerMinute();
+            case PROVIDER_DAILY_TOKENS -> properties.getProviderDailyTokens();
+        };
+    }
+}
@@ -9,7 +9,10 @@ public enum TokenOverflowStrategyEnum {
     SLIDING_WINDOW,
 
     /** 摘要策略 - 将旧消息转换为摘要，保留关键信息 */
-    SUMMARIZE;
+    SUMMARIZE,
+
+    /** 相关性保留 - 保留最近若干轮对话及与当前问题最相关的早期消息 */
+    RELEVANCE;
 
     /** 判断给定字符串是否为有效的枚举值
      *
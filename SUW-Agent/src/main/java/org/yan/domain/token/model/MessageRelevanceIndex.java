@@ -0,0 +1,337 @@
+package org.yan.domain.token.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** 消息相关性索引 按会话维护的BM25倒排索引，消息保存时增量追加，用于在历史消息中检索与当前问题最相关的消息。
+ * 文档编号按插入顺序递增，与上下文中的消息顺序一致，因此可以通过二分查找定位文档在消息列表中的位置。 该类非线程安全，调用方需自行同步 */
+public class MessageRelevanceIndex {
+
+    /** BM25 词频饱和参数 */
+    private static final float K1 = 1.2f;
+
+    /** BM25 文档长度归一化参数 */
+    private static final float B = 0.75f;
+
+    /** 默认初始容量 */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** 消息ID -> 文档编号 */
+    private final Map<String, Integer> docNos = new HashMap<>();
+
+    /** 词项 -> 倒排列表 */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /** 文档编号 -> 文档长度（词项数） */
+    private int[] docLengths = new int[DEFAULT_CAPACITY];
+
+    /** 已索引的文档数 */
+    private int docCount;
+
+    /** 所有文档的长度之和 */
+    private long totalLength;
+
+    /** 检索时累加得分的缓冲区，按文档编号索引，每次检索后只清零命中的位置，避免每次查询重新分配 */
+    private float[] scores = new float[DEFAULT_CAPACITY];
+
+    /** 根据消息列表构建索引
+     *
+     * @param messages 按插入顺序排列的消息列表
+     * @return 索引实例 */
+    public static MessageRelevanceIndex of(List<TokenMessage> messages) {
+        MessageRelevanceIndex index = new MessageRelevanceIndex();
+        index.sync(messages);
+        return index;
+    }
+
+    /** 将索引与消息列表同步 只追加列表末尾尚未索引的消息；列表首条未索引或顺序与索引不一致时重建索引
+     *
+     * @param messages 按插入顺序排列的消息列表 */
+    public void sync(List<TokenMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        int indexed = messages.size();
+        while (indexed > 0 && docNo(messages.get(indexed - 1).getId()) < 0) {
+            indexed--;
+        }
+        if (indexed > 0) {
+            int firstDocNo = docNo(messages.get(0).getId());
+            if (firstDocNo < 0 || firstDocNo > docNo(messages.get(indexed - 1).getId())) {
+                indexed = 0;
+            }
+        }
+        if (indexed == 0 && docCount > 0) {
+            rebuild(messages);
+            return;
+        }
+        for (int i = indexed; i < messages.size(); i++) {
+            TokenMessage message = messages.get(i);
+            add(message.getId(), message.getContent());
+        }
+    }
+
+    /** 重建索引
+     *
+     * @param messages 按插入顺序排列的消息列表 */
+    public void rebuild(List<TokenMessage> messages) {
+        clear();
+        for (TokenMessage message : messages) {
+            add(message.getId(), message.getContent());
+        }
+    }
+
+    /** 追加一条消息，已索引的消息会被忽略
+     *
+     * @param messageId 消息ID
+     * @param content 消息内容 */
+    public void add(String messageId, String content) {
+        if (messageId == null || docNos.containsKey(messageId)) {
+            return;
+        }
+        int docNo = docCount;
+        Map<String, Integer> termFreqs = new HashMap<>();
+        int length = tokenize(content, termFreqs);
+        for (Map.Entry<String, Integer> entry : termFreqs.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(docNo, entry.getValue());
+        }
+        if (docNo == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+        }
+        docLengths[docNo] = length;
+        docNos.put(messageId, docNo);
+        totalLength += length;
+        docCount++;
+    }
+
+    /** 获取消息的文档编号
+     *
+     * @param messageId 消息ID
+     * @return 文档编号，未索引时返回 -1 */
+    public int docNo(String messageId) {
+        Integer docNo = messageId != null ? docNos.get(messageId) : null;
+        return docNo != null ? docNo : -1;
+    }
+
+    /** 按BM25得分检索与查询相关的文档 只遍历查询词项的倒排列表；命中的文档建堆后按需弹出，调用方取够即停，无需全量排序
+     *
+     * @param query 查询文本
+     * @return 按得分从高到低迭代的检索结果 */
+    public Ranking rank(String query) {
+        if (docCount == 0 || query == null || query.isBlank()) {
+            return new Ranking(new long[0], 0);
+        }
+        Map<String, Integer> queryTerms = new HashMap<>();
+        tokenize(query, queryTerms);
+
+        // 出现在半数以上文档中的词项区分度很低，查询中有更少见的词项时跳过，避免遍历过长的倒排列表
+        List<Postings> lists = new ArrayList<>(queryTerms.size());
+        boolean hasSelectiveTerm = false;
+        for (String term : queryTerms.keySet()) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                lists.add(list);
+                hasSelectiveTerm |= list.size <= docCount / 2;
+            }
+        }
+
+        float avgLength = Math.max(1f, (float) totalLength / docCount);
+        if (scores.length < docCount) {
+            scores = new float[docLengths.length];
+        }
+        int[] hits = new int[Math.min(docCount, DEFAULT_CAPACITY)];
+        int hitCount = 0;
+        for (Postings list : lists) {
+            if (hasSelectiveTerm && list.size > docCount / 2) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (docCount - list.size + 0.5) / (list.size + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int doc = list.docs[i];
+                int freq = list.freqs[i];
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                if (scores[doc] == 0f) {
+                    if (hitCount == hits.length) {
+                        hits = Arrays.copyOf(hits, Math.min(docCount, hits.length * 2));
+                    }
+                    hits[hitCount++] = doc;
+                }
+                scores[doc] += idf * freq * (K1 + 1) / (freq + norm);
+            }
+        }
+
+        // 得分为正数，其浮点位模式的大小顺序与数值一致，与文档编号打包后直接比较
+        long[] keyed = new long[hitCount];
+        for (int i = 0; i < hitCount; i++) {
+            keyed[i] = ((long) Float.floatToIntBits(scores[hits[i]]) << 32) | hits[i];
+            scores[hits[i]] = 0f;
+        }
+        return new Ranking(keyed, hitCount);
+    }
+
+    /** 在消息列表中定位文档 消息列表需按插入顺序排列，时间复杂度 O(log n)
+     *
+     * @param messages 按插入顺序排列的消息列表
+     * @param docNo 文档编号
+     * @return 消息在列表中的位置，不存在时返回 -1
+     * @throws IllegalStateException 列表中存在未索引的消息 */
+    public int positionOf(List<TokenMessage> messages, int docNo) {
+        int low = 0;
+        int high = messages.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDocNo = docNo(messages.get(mid).getId());
+            if (midDocNo < 0) {
+                throw new IllegalStateException("消息未索引: " + messages.get(mid).getId());
+            }
+            if (midDocNo < docNo) {
+                low = mid + 1;
+            } else if (midDocNo > docNo) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** 获取已索引的文档数
+     *
+     * @return 文档数 */
+    public int size() {
+        return docCount;
+    }
+
+    /** 清空索引 */
+    public void clear() {
+        docNos.clear();
+        postings.clear();
+        docLengths = new int[DEFAULT_CAPACITY];
+        scores = new float[DEFAULT_CAPACITY];
+        docCount = 0;
+        totalLength = 0;
+    }
+
+    /** 分词 英文和数字按连续字符切分并转为小写，中日韩字符按相邻二元组切分（单字成词时保留单字）
+     *
+     * @param text 文本
+     * @param termFreqs 输出的词项 -> 词频
+     * @return 词项总数 */
+    static int tokenize(String text, Map<String, Integer> termFreqs) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int length = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && c < 0x80) {
+                int start = i;
+                while (i < n && text.charAt(i) < 0x80 && Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                termFreqs.merge(text.substring(start, i).toLowerCase(), 1, Integer::sum);
+                length++;
+            } else if (isCjk(c)) {
+                int start = i;
+                while (i < n && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    termFreqs.merge(text.substring(start, i), 1, Integer::sum);
+                    length++;
+                }
+                for (int j = start; j + 1 < i; j++) {
+                    termFreqs.merge(text.substring(j, j + 2), 1, Integer::sum);
+                    length++;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /** 检索结果 以大顶堆保存命中的文档，建堆 O(n)，每次弹出 O(log n) */
+    public static class Ranking {
+
+        private final long[] heap;
+
+        private int size;
+
+        Ranking(long[] heap, int size) {
+            this.heap = heap;
+            this.size = size;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        /** 弹出得分最高的文档
+         *
+         * @return 文档编号，没有更多结果时返回 -1 */
+        public int next() {
+            if (size == 0) {
+                return -1;
+            }
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return (int) top;
+        }
+
+        /** 剩余的结果数
+         *
+         * @return 结果数 */
+        public int remaining() {
+            return size;
+        }
+
+        private void siftDown(int i) {
+            long value = heap[i];
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+    }
+
+    /** 倒排列表 按文档编号递增存储文档编号和词频 */
+    private static class Postings {
+
+        private int[] docs = new int[4];
+
+        private int[] freqs = new int[4];
+
+        private int size;
+
+        void add(int docNo, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = docNo;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.yan.domain.token.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/** Token前缀和索引 按消息插入顺序维护Token数的累加数组（只追加），滑动窗口的截断位置通过二分查找定位，无需排序和复制消息列表。
+ * 窗口左移时只移动起点，该类非线程安全，调用方需自行同步 */
+public class TokenPrefixSumIndex {
+
+    /** 默认初始容量 */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** 累加数组，prefixSums[i] 表示绝对位置 i 之前所有消息的Token总数 */
+    private long[] prefixSums;
+
+    /** 与累加数组对应的消息ID，用于校验索引与消息列表是否一致 */
+    private String[] messageIds;
+
+    /** 当前窗口起点（绝对位置） */
+    private int start;
+
+    /** 已索引的消息数（绝对位置，不含） */
+    private int end;
+
+    public TokenPrefixSumIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TokenPrefixSumIndex(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.prefixSums = new long[capacity + 1];
+        this.messageIds = new String[capacity];
+    }
+
+    /** 根据消息列表构建索引
+     *
+     * @param messages 按插入顺序排列的消息列表
+     * @return 索引实例 */
+    public static TokenPrefixSumIndex of(List<TokenMessage> messages) {
+        TokenPrefixSumIndex index = new TokenPrefixSumIndex(messages == null ? DEFAULT_CAPACITY : messages.size());
+        index.sync(messages);
+        return index;
+    }
+
+    /** 将索引与消息列表同步 列表头尾与索引一致时只追加新增消息，否则重建索引
+     *
+     * @param messages 按插入顺序排列的消息列表 */
+    public void sync(List<TokenMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            clear();
+            return;
+        }
+        int indexed = size();
+        if (!isPrefixOf(messages, indexed)) {
+            clear();
+            indexed = 0;
+        }
+        for (int i = indexed; i < messages.size(); i++) {
+            TokenMessage message = messages.get(i);
+            append(message.getId(), message.getTokenCount() != null ? message.getTokenCount() : 0);
+        }
+    }
+
+    /** 追加一条消息
+     *
+     * @param messageId 消息ID
+     * @param tokenCount 消息Token数 */
+    public void append(String messageId, int tokenCount) {
+        ensureCapacity(end + 1);
+        messageIds[end] = messageId;
+        prefixSums[end + 1] = prefixSums[end] + tokenCount;
+        end++;
+    }
+
+    /** 窗口左移，丢弃最早的若干条消息
+     *
+     * @param count 丢弃的消息数 */
+    public void dropFirst(int count) {
+        if (count <= 0) {
+            return;
+        }
+        start = Math.min(end, start + count);
+    }
+
+    /** 查找窗口起点 返回满足「从该位置到末尾的Token总数不超过预算」的最小相对位置，时间复杂度 O(log n)
+     *
+     * @param tokenBudget 可用Token数
+     * @return 相对位置，范围 [0, size()]，等于 size() 表示一条消息都放不下 */
+    public int findWindowStart(long tokenBudget) {
+        long total = prefixSums[end];
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (total - prefixSums[mid] <= tokenBudget) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low - start;
+    }
+
+    /** 计算从相对位置到末尾的Token总数
+     *
+     * @param fromIndex 相对位置
+     * @return Token总数 */
+    public long tokensFrom(int fromIndex) {
+        return prefixSums[end] - prefixSums[start + fromIndex];
+    }
+
+    /** 获取窗口内的Token总数
+     *
+     * @return Token总数 */
+    public long totalTokens() {
+        return prefixSums[end] - prefixSums[start];
+    }
+
+    /** 获取窗口内的消息数
+     *
+     * @return 消息数 */
+    public int size() {
+        return end - start;
+    }
+
+    /** 清空索引 */
+    public void clear() {
+        start = 0;
+        end = 0;
+        prefixSums[0] = 0;
+    }
+
+    /** 判断索引中的消息是否为列表的前缀，只校验首尾ID */
+    private boolean isPrefixOf(List<TokenMessage> messages, int indexed) {
+        if (indexed == 0) {
+            return true;
+        }
+        if (indexed > messages.size()) {
+            return false;
+        }
+        return Objects.equals(messageIds[start], messages.get(0).getId())
+                && Objects.equals(messageIds[end - 1], messages.get(indexed - 1).getId());
+    }
+
+    /** 保证容量 起点之前的空间超过一半时先压缩，否则扩容 */
+    private void ensureCapacity(int required) {
+        if (required <= messageIds.length) {
+            return;
+        }
+        if (start > messageIds.length / 2) {
+            int size = size();
+            long base = prefixSums[start];
+            for (int i = 0; i <= size; i++) {
+                prefixSums[i] = prefixSums[start + i] - base;
+            }
+            System.arraycopy(messageIds, start, messageIds, 0, size);
+            Arrays.fill(messageIds, size, end, null);
+            start = 0;
+            end = size;
+            if (end + 1 <= messageIds.length) {
+                return;
+            }
+        }
+        int newCapacity = Math.max(messageIds.length * 2, required);
+        prefixSums = Arrays.copyOf(prefixSums, newCapacity + 1);
+        messageIds = Arrays.copyOf(messageIds, newCapacity);
+    }
+}
@@ -1,62 +1,86 @@
 package org.yan.domain.token.model;
 
+import java.util.Collections;
 import java.util.List;
 
-/** Token处理结果 */
-public class TokenProcessResult {
+/** Token处理结果 不可变对象，保留的消息列表为只读视图，不复制原列表 */
+public final class TokenProcessResult {
     /** 处理后保留的消息列表 */
-    private List<TokenMessage> retainedMessages;
+    private final List<TokenMessage> retainedMessages;
 
     /** 被移除消息的摘要（如果有的话） */
-    private String summary;
+    private final String summary;
 
     /** 处理后的总token数 */
-    private int totalTokens;
+    private final int totalTokens;
 
     /** 使用的策略名称 */
-    private String strategyName;
+    private final String strategyName;
 
     /** 是否进行了处理 true: 消息被处理过（如被截断、摘要等） false: 消息未经处理（原样返回） */
-    private boolean processed;
+    private final boolean processed;
 
-    // Getters and Setters
-    public List<TokenMessage> getRetainedMessages() {
-        return retainedMessages;
+    private TokenProcessResult(List<TokenMessage> retainedMessages, String summary, int totalTokens,
+            String strategyName, boolean processed) {
+        this.retainedMessages = retainedMessages != null
+                ? Collections.unmodifiableList(retainedMessages)
+                : Collections.emptyList();
+        this.summary = summary;
+        this.totalTokens = totalTokens;
+        this.strategyName = strategyName;
+        this.processed = processed;
     }
 
-    public void setRetainedMessages(List<TokenMessage> retainedMessages) {
-        this.retainedMessages = retainedMessages;
+    /** 创建未处理的结果
+     *
+     * @param strategyName 策略名称
+     * @param messages 原消息列表
+     * @param totalTokens 总token数
+     * @return 处理结果 */
+    public static TokenProcessResult unprocessed(String strategyName, List<TokenMessage> messages, int totalTokens) {
+        return new TokenProcessResult(messages, null, totalTokens, strategyName, false);
     }
 
-    public String getSummary() {
-        return summary;
+    /** 创建已处理的结果
+     *
+     * @param strategyName 策略名称
+     * @param retainedMessages 保留的消息列表
+     * @param totalTokens 保留消息的总token数
+     * @return 处理结果 */
+    public static TokenProcessResult processed(String strategyName, List<TokenMessage> retainedMessages,
+            int totalTokens) {
+        return new TokenProcessResult(retainedMessages, null, totalTokens, strategyName, true);
     }
 
-    public void setSummary(String summary) {
-        this.summary = summary;
+    /** 创建带摘要的已处理结果
+     *
+     * @param strategyName 策略名称
+     * @param retainedMessages 保留的消息列表
+     * @param summary 被移除消息的摘要
+     * @param totalTokens 保留消息的总token数
+     * @return 处理结果 */
+    public static TokenProcessResult summarized(String strategyName, List<TokenMessage> retainedMessages,
+            String summary, int totalTokens) {
+        return new TokenProcessResult(retainedMessages, summary, totalTokens, strategyName, true);
     }
 
-    public int getTotalTokens() {
-        return totalTokens;
+    public List<TokenMessage> getRetainedMessages() {
+        return retainedMessages;
     }
 
-    public void setTotalTokens(int totalTokens) {
-        this.totalTokens = totalTokens;
+    public String getSummary() {
+        return summary;
     }
 
-    public String getStrategyName() {
-        return strategyName;
+    public int getTotalTokens() {
+        return totalTokens;
     }
 
-    public void setStrategyName(String strategyName) {
-        this.strategyName = strategyName;
+    public String getStrategyName() {
+        return strategyName;
     }
 
     public boolean isProcessed() {
         return processed;
     }
-
-    public void setProcessed(boolean processed) {
-        this.processed = processed;
-    }
-}
\ No newline at end of file
+}
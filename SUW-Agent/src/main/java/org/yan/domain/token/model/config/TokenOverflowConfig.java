@@ -1,11 +1,11 @@
 package org.yan.domain.token.model.config;
 
-import org.springframework.stereotype.Service;
 import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
+import org.yan.domain.token.model.MessageRelevanceIndex;
+import org.yan.domain.token.model.TokenPrefixSumIndex;
 import org.yan.infrastructure.llm.config.ProviderConfig;
 
-/** Token超限处理配置基础类 */
-@Service
+/** Token超限处理配置基础类 每次处理时创建，随调用传给无状态的策略单例 */
 public class TokenOverflowConfig {
 
     /** 策略类型 */
@@ -22,6 +22,18 @@ public class TokenOverflowConfig {
 
     private ProviderConfig providerConfig;
 
+    /** 会话维护的Token前缀和索引，适用于滑动窗口策略，为空时由策略临时构建 */
+    private TokenPrefixSumIndex prefixSumIndex;
+
+    /** 当前用户消息，适用于相关性保留策略，作为检索相关历史消息的查询 */
+    private String query;
+
+    /** 必须保留的最近轮数，适用于相关性保留策略 */
+    private Integer recentTurns;
+
+    /** 会话维护的消息相关性索引，适用于相关性保留策略，为空时由策略临时构建 */
+    private MessageRelevanceIndex relevanceIndex;
+
     /** 默认构造函数 */
     public TokenOverflowConfig() {
         this.strategyType = TokenOverflowStrategyEnum.NONE;
@@ -110,4 +122,36 @@ public class TokenOverflowConfig {
     public void setProviderConfig(ProviderConfig providerConfig) {
         this.providerConfig = providerConfig;
     }
+
+    public TokenPrefixSumIndex getPrefixSumIndex() {
+        return prefixSumIndex;
+    }
+
+    public void setPrefixSumIndex(TokenPrefixSumIndex prefixSumIndex) {
+        this.prefixSumIndex = prefixSumIndex;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public Integer getRecentTurns() {
+        return recentTurns;
+    }
+
+    public void setRecentTurns(Integer recentTurns) {
+        this.recentTurns = recentTurns;
+    }
+
+    public MessageRelevanceIndex getRelevanceIndex() {
+        return relevanceIndex;
+    }
+
+    public void setRelevanceIndex(MessageRelevanceIndex relevanceIndex) {
+        this.relevanceIndex = relevanceIndex;
+    }
 }
\ No newline at end of file
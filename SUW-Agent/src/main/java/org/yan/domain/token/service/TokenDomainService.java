@@ -1,20 +1,50 @@
 package org.yan.domain.token.service;
 
 import org.springframework.stereotype.Service;
+import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
+import org.yan.domain.token.model.MessageRelevanceIndex;
 import org.yan.domain.token.model.TokenMessage;
+import org.yan.domain.token.model.TokenPrefixSumIndex;
 import org.yan.domain.token.model.TokenProcessResult;
 import org.yan.domain.token.model.config.TokenOverflowConfig;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /** Token领域服务 封装Token超限处理的核心逻辑 */
 @Service
 public class TokenDomainService {
 
-    private final TokenOverflowStrategyFactory strategyFactory;
+    /** 缓存前缀和索引的最大会话数 */
+    private static final int MAX_CACHED_INDEXES = 4096;
 
-    public TokenDomainService(TokenOverflowStrategyFactory strategyFactory) {
-        this.strategyFactory = strategyFactory;
+    /** 缓存相关性索引的最大会话数，倒排索引占用内存较多，上限更小 */
+    private static final int MAX_CACHED_RELEVANCE_INDEXES = 512;
+
+    private final TokenOverflowStrategyRegistry strategyRegistry;
+
+    /** 会话ID -> Token前缀和索引，按访问顺序淘汰 */
+    private final Map<String, TokenPrefixSumIndex> prefixSumIndexes = Collections
+            .synchronizedMap(new LinkedHashMap<String, TokenPrefixSumIndex>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenPrefixSumIndex> eldest) {
+                    return size() > MAX_CACHED_INDEXES;
+                }
+            });
+
+    /** 会话ID -> 消息相关性索引，按访问顺序淘汰，淘汰后下次处理时重建 */
+    private final Map<String, MessageRelevanceIndex> relevanceIndexes = Collections
+            .synchronizedMap(new LinkedHashMap<String, MessageRelevanceIndex>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MessageRelevanceIndex> eldest) {
+                    return size() > MAX_CACHED_RELEVANCE_INDEXES;
+                }
+            });
+
+    public TokenDomainService(TokenOverflowStrategyRegistry strategyRegistry) {
+        this.strategyRegistry = strategyRegistry;
     }
 
     /** 处理消息列表
@@ -23,13 +53,46 @@ public class TokenDomainService {
      * @param config 处理配置
      * @return 处理结果 */
     public TokenProcessResult processMessages(List<TokenMessage> messages, TokenOverflowConfig config) {
-        // 创建策略
-        TokenOverflowStrategy strategy = strategyFactory.createStrategy(config);
+        // 获取策略单例
+        TokenOverflowStrategy strategy = strategyRegistry.getStrategy(config);
 
         // 执行处理
         return strategy.process(messages, config);
     }
 
+    /** 处理会话的消息列表 复用该会话维护的Token前缀和索引，每轮只需追加新消息
+     *
+     * @param sessionId 会话ID
+     * @param messages 按插入顺序排列的待处理消息列表
+     * @param config 处理配置
+     * @return 处理结果 */
+    public TokenProcessResult processMessages(String sessionId, List<TokenMessage> messages,
+            TokenOverflowConfig config) {
+        if (sessionId != null && config != null
+                && config.getStrategyType() == TokenOverflowStrategyEnum.SLIDING_WINDOW) {
+            config.setPrefixSumIndex(prefixSumIndexes.computeIfAbsent(sessionId, k -> new TokenPrefixSumIndex()));
+        }
+        if (sessionId != null && config != null && config.getStrategyType() == TokenOverflowStrategyEnum.RELEVANCE) {
+            config.setRelevanceIndex(relevanceIndexes.computeIfAbsent(sessionId, k -> new MessageRelevanceIndex()));
+        }
+        return processMessages(messages, config);
+    }
+
+    /** 将新保存的消息追加到会话的相关性索引 只更新已建立索引的会话，未使用相关性策略的会话不占用内存
+     *
+     * @param sessionId 会话ID
+     * @param messageId 消息ID
+     * @param content 消息内容 */
+    public void indexMessage(String sessionId, String messageId, String content) {
+        MessageRelevanceIndex index = sessionId != null ? relevanceIndexes.get(sessionId) : null;
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            index.add(messageId, content);
+        }
+    }
+
     /** 计算消息列表的总Token数
      *
      * @param messages 消息列表
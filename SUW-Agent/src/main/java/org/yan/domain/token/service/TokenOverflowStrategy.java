@@ -6,15 +6,17 @@ import org.yan.domain.token.model.config.TokenOverflowConfig;
 
 import java.util.List;
 
-/** Token溢出处理策略接口 */
+/** Token溢出处理策略接口 实现类为无状态的单例，所有参数通过 {@link TokenOverflowConfig} 传入，可被多个会话并发调用。
+ * 注册为Spring Bean的实现会被 {@link TokenOverflowStrategyRegistry} 自动收集，按 {@link #getName()} 查找 */
 public interface TokenOverflowStrategy {
     /** 处理消息列表
      *
-     * @param messages 待处理的消息列表
+     * @param messages 待处理的消息列表，按插入顺序排列，实现类不得修改
+     * @param tokenOverflowConfig 策略配置
      * @return 处理结果，包含处理后的消息列表、摘要等信息 */
     TokenProcessResult process(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig);
 
-    /** 获取策略名称
+    /** 获取策略名称，在注册表中唯一
      *
      * @return 策略名称 */
     String getName();
@@ -22,6 +24,7 @@ public interface TokenOverflowStrategy {
     /** 检查是否需要处理
      *
      * @param messages 待检查的消息列表
+     * @param tokenOverflowConfig 策略配置
      * @return 是否需要处理 */
-    boolean needsProcessing(List<TokenMessage> messages);
-}
\ No newline at end of file
+    boolean needsProcessing(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig);
+}
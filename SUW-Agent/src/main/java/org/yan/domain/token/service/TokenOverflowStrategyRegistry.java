@@ -0,0 +1,68 @@
+package org.yan.domain.token.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
+import org.yan.domain.token.model.config.TokenOverflowConfig;
+import org.yan.domain.token.service.impl.NoTokenOverflowStrategy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Token超限处理策略注册表 启动时收集容器中所有 {@link TokenOverflowStrategy} 单例并按名称索引，
+ * 自定义策略只需实现接口并注册为Spring Bean，名称不能与已有策略重复 */
+@Service
+public class TokenOverflowStrategyRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenOverflowStrategyRegistry.class);
+
+    /** 策略名称 -> 策略单例，构造后只读 */
+    private final Map<String, TokenOverflowStrategy> strategies;
+
+    /** 未配置或找不到策略时使用的默认策略 */
+    private final TokenOverflowStrategy defaultStrategy;
+
+    public TokenOverflowStrategyRegistry(List<TokenOverflowStrategy> strategies) {
+        Map<String, TokenOverflowStrategy> registered = new HashMap<>();
+        for (TokenOverflowStrategy strategy : strategies) {
+            TokenOverflowStrategy existing = registered.putIfAbsent(strategy.getName(), strategy);
+            if (existing != null) {
+                throw new IllegalStateException("Token超限处理策略名称重复: " + strategy.getName() + " ("
+                        + existing.getClass().getName() + ", " + strategy.getClass().getName() + ")");
+            }
+        }
+        TokenOverflowStrategy none = registered.get(TokenOverflowStrategyEnum.NONE.name());
+        this.defaultStrategy = none != null ? none : new NoTokenOverflowStrategy();
+        this.strategies = Map.copyOf(registered);
+        logger.info("已注册Token超限处理策略: {}", this.strategies.keySet());
+    }
+
+    /** 根据策略名称获取策略
+     *
+     * @param strategyName 策略名称
+     * @return 策略单例，找不到时返回无策略实现 */
+    public TokenOverflowStrategy getStrategy(String strategyName) {
+        if (strategyName == null) {
+            return defaultStrategy;
+        }
+        return strategies.getOrDefault(strategyName, defaultStrategy);
+    }
+
+    /** 根据策略类型获取策略
+     *
+     * @param strategyType 策略类型
+     * @return 策略单例，找不到时返回无策略实现 */
+    public TokenOverflowStrategy getStrategy(TokenOverflowStrategyEnum strategyType) {
+        return strategyType != null ? getStrategy(strategyType.name()) : defaultStrategy;
+    }
+
+    /** 根据配置获取策略
+     *
+     * @param config 策略配置
+     * @return 策略单例，找不到时返回无策略实现 */
+    public TokenOverflowStrategy getStrategy(TokenOverflowConfig config) {
+        return config != null ? getStrategy(config.getStrategyType()) : defaultStrategy;
+    }
+}
@@ -13,33 +13,13 @@ import java.util.List;
 @Service
 public class NoTokenOverflowStrategy implements TokenOverflowStrategy {
 
-    /** 策略配置，无策略实现不使用配置参数，但保留字段以统一接口 */
-    private final TokenOverflowConfig config;
-
-    /** 构造函数 */
-    public NoTokenOverflowStrategy() {
-        this.config = TokenOverflowConfig.createDefault();
-    }
-
-    /** 带配置的构造函数
-     * 
-     * @param config 策略配置 */
-    public NoTokenOverflowStrategy(TokenOverflowConfig config) {
-        this.config = config != null ? config : TokenOverflowConfig.createDefault();
-    }
-
     /** 处理消息列表，无策略实现不做任何处理，返回原消息列表
      *
      * @param messages 待处理的消息列表
      * @return 原消息列表，不做修改 */
     @Override
     public TokenProcessResult process(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
-        TokenProcessResult result = new TokenProcessResult();
-        result.setRetainedMessages(messages);
-        result.setStrategyName(getName());
-        result.setProcessed(false);
-        result.setTotalTokens(calculateTotalTokens(messages));
-        return result;
+        return TokenProcessResult.unprocessed(getName(), messages, calculateTotalTokens(messages));
     }
 
     /** 获取策略名称
@@ -55,13 +35,20 @@ public class NoTokenOverflowStrategy implements TokenOverflowStrategy {
      * @param messages 待处理的消息列表
      * @return 始终返回false，表示不处理 */
     @Override
-    public boolean needsProcessing(List<TokenMessage> messages) {
+    public boolean needsProcessing(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
         // 无策略实现，始终返回false，表示不需要处理
         return false;
     }
 
     /** 计算消息列表的总token数 */
     private int calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream().mapToInt(m -> m.getTokenCount() != null ? m.getTokenCount() : 0).sum();
+        if (messages == null) {
+            return 0;
+        }
+        int total = 0;
+        for (TokenMessage message : messages) {
+            total += message.getTokenCount() != null ? message.getTokenCount() : 0;
+        }
+        return total;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package org.yan.domain.token.service.impl;
+
+import org.springframework.stereotype.Service;
+import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
+import org.yan.domain.token.model.MessageRelevanceIndex;
+import org.yan.domain.token.model.TokenMessage;
+import org.yan.domain.token.model.TokenProcessResult;
+import org.yan.domain.token.model.config.TokenOverflowConfig;
+import org.yan.domain.token.service.TokenOverflowStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** 相关性保留Token超限处理策略实现 始终保留最近若干轮对话，剩余预算按BM25得分从高到低贪心填充与当前问题相关的早期消息，
+ * 保留的消息仍按插入顺序排列。早期消息只是不发送给模型，不会从上下文中移除 */
+@Service
+public class RelevanceTokenOverflowStrategy implements TokenOverflowStrategy {
+
+    /** 默认最大Token数 */
+    private static final int DEFAULT_MAX_TOKENS = 4096;
+
+    /** 默认预留缓冲比例 */
+    private static final double DEFAULT_RESERVE_RATIO = 0.1;
+
+    /** 默认保留的最近轮数 */
+    private static final int DEFAULT_RECENT_TURNS = 3;
+
+    /** 用户消息角色，每条用户消息开启新的一轮对话 */
+    private static final String USER_ROLE = "USER";
+
+    /** 处理消息列表，应用相关性保留策略
+     *
+     * @param messages 按插入顺序排列的待处理消息列表
+     * @return 处理后保留的消息列表 */
+    @Override
+    public TokenProcessResult process(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
+        long totalTokens = calculateTotalTokens(messages);
+        int maxTokens = getMaxTokens(tokenOverflowConfig);
+        if (messages == null || messages.isEmpty() || totalTokens <= maxTokens) {
+            return TokenProcessResult.unprocessed(getName(), messages, (int) totalTokens);
+        }
+
+        long availableTokens = maxTokens - (long) (maxTokens * getReserveRatio(tokenOverflowConfig));
+
+        // 最近若干轮对话必须保留，放不下时退化为只保留能放下的最新消息
+        int recentStart = findRecentStart(messages, getRecentTurns(tokenOverflowConfig));
+        long recentTokens = 0;
+        for (int i = messages.size() - 1; i >= recentStart; i--) {
+            long tokens = tokenCount(messages.get(i));
+            if (recentTokens + tokens > availableTokens) {
+                return TokenProcessResult.processed(getName(), messages.subList(i + 1, messages.size()),
+                        (int) recentTokens);
+            }
+            recentTokens += tokens;
+        }
+
+        List<TokenMessage> earlier = messages.subList(0, recentStart);
+        int[] selected = selectRelevant(messages, recentStart, availableTokens - recentTokens, tokenOverflowConfig);
+
+        List<TokenMessage> retained = new ArrayList<>(selected.length + messages.size() - recentStart);
+        long retainedTokens = recentTokens;
+        for (int position : selected) {
+            TokenMessage message = earlier.get(position);
+            retained.add(message);
+            retainedTokens += tokenCount(message);
+        }
+        retained.addAll(messages.subList(recentStart, messages.size()));
+        return TokenProcessResult.processed(getName(), retained, (int) retainedTokens);
+    }
+
+    /** 按相关性贪心选择早期消息 放不下的消息跳过，继续尝试得分更低但更短的消息
+     *
+     * @return 选中消息在列表中的位置，按插入顺序排列 */
+    private int[] selectRelevant(List<TokenMessage> messages, int recentStart, long budget,
+            TokenOverflowConfig tokenOverflowConfig) {
+        String query = tokenOverflowConfig != null ? tokenOverflowConfig.getQuery() : null;
+        if (recentStart == 0 || budget <= 0 || query == null || query.isBlank()) {
+            return new int[0];
+        }
+
+        // 优先使用会话维护的索引，没有则临时构建；索引覆盖整个列表，保证文档编号与插入顺序一致
+        MessageRelevanceIndex index = tokenOverflowConfig.getRelevanceIndex();
+        if (index == null) {
+            index = MessageRelevanceIndex.of(messages);
+        }
+
+        List<TokenMessage> earlier = messages.subList(0, recentStart);
+        synchronized (index) {
+            index.sync(messages);
+            try {
+                return fill(index, earlier, query, budget);
+            } catch (IllegalStateException e) {
+                // 索引与消息列表不一致（如其他节点写入的消息），重建后重试
+                index.rebuild(messages);
+                return fill(index, earlier, query, budget);
+            }
+        }
+    }
+
+    private int[] fill(MessageRelevanceIndex index, List<TokenMessage> earlier, String query, long budget) {
+        MessageRelevanceIndex.Ranking ranking = index.rank(query);
+        int[] selected = new int[Math.min(ranking.remaining(), earlier.size())];
+        int count = 0;
+        long remaining = budget;
+        int doc;
+        while (remaining > 0 && (doc = ranking.next()) >= 0) {
+            int position = index.positionOf(earlier, doc);
+            if (position < 0) {
+                continue;
+            }
+            long tokens = tokenCount(earlier.get(position));
+            if (tokens <= remaining) {
+                selected[count++] = position;
+                remaining -= tokens;
+            }
+        }
+        int[] result = Arrays.copyOf(selected, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** 查找最近若干轮对话的起始位置 */
+    private int findRecentStart(List<TokenMessage> messages, int recentTurns) {
+        int turns = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (USER_ROLE.equals(messages.get(i).getRole()) && ++turns >= recentTurns) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /** 获取策略名称
+     *
+     * @return 策略名称 */
+    @Override
+    public String getName() {
+        return TokenOverflowStrategyEnum.RELEVANCE.name();
+    }
+
+    /** 判断是否需要进行Token超限处理
+     *
+     * @param messages 待处理的消息列表
+     * @return 是否需要处理 */
+    @Override
+    public boolean needsProcessing(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
+        return calculateTotalTokens(messages) > getMaxTokens(tokenOverflowConfig);
+    }
+
+    private long calculateTotalTokens(List<TokenMessage> messages) {
+        if (messages == null) {
+            return 0;
+        }
+        long total = 0;
+        for (TokenMessage message : messages) {
+            total += tokenCount(message);
+        }
+        return total;
+    }
+
+    private long tokenCount(TokenMessage message) {
+        return message.getTokenCount() != null ? message.getTokenCount() : 0;
+    }
+
+    private int getMaxTokens(TokenOverflowConfig config) {
+        if (config == null || config.getMaxTokens() == null) {
+            return DEFAULT_MAX_TOKENS;
+        }
+        return config.getMaxTokens();
+    }
+
+    private double getReserveRatio(TokenOverflowConfig config) {
+        if (config == null || config.getReserveRatio() == null) {
+            return DEFAULT_RESERVE_RATIO;
+        }
+        return config.getReserveRatio();
+    }
+
+    private int getRecentTurns(TokenOverflowConfig config) {
+        if (config == null || config.getRecentTurns() == null || config.getRecentTurns() <= 0) {
+            return DEFAULT_RECENT_TURNS;
+        }
+        return config.getRecentTurns();
+    }
+}
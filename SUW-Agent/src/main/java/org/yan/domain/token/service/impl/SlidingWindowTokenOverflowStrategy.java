@@ -2,14 +2,12 @@ package org.yan.domain.token.service.impl;
 
 import org.springframework.stereotype.Service;
 import org.yan.domain.token.model.TokenMessage;
+import org.yan.domain.token.model.TokenPrefixSumIndex;
 import org.yan.domain.token.model.TokenProcessResult;
 import org.yan.domain.token.model.config.TokenOverflowConfig;
 import org.yan.domain.shared.enums.TokenOverflowStrategyEnum;
 import org.yan.domain.token.service.TokenOverflowStrategy;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /** 滑动窗口Token超限处理策略实现 根据Token数量保留最新消息，超出窗口的旧消息将被丢弃 */
@@ -22,62 +20,45 @@ public class SlidingWindowTokenOverflowStrategy implements TokenOverflowStrategy
     /** 默认预留缓冲比例 */
     private static final double DEFAULT_RESERVE_RATIO = 0.1;
 
-    /** 策略配置 */
-    private final TokenOverflowConfig config;
-
-    /** 构造函数
-     * 
-     * @param config 策略配置 */
-    public SlidingWindowTokenOverflowStrategy(TokenOverflowConfig config) {
-        this.config = config;
-    }
-
-    /** 处理消息列表，应用滑动窗口策略
+    /** 处理消息列表，应用滑动窗口策略 消息已按插入顺序排列，通过前缀和索引二分查找窗口起点，保留的消息为原列表的视图，不排序也不复制
      * 
      * @param messages 待处理的消息列表
      * @return 处理后保留的消息列表 */
     @Override
     public TokenProcessResult process(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
-        if (!needsProcessing(messages)) {
-            TokenProcessResult result = new TokenProcessResult();
-            result.setRetainedMessages(messages);
-            result.setStrategyName(getName());
-            result.setProcessed(false);
-            result.setTotalTokens(calculateTotalTokens(messages));
-            return result;
+        if (messages == null || messages.isEmpty()) {
+            return TokenProcessResult.unprocessed(getName(), messages, 0);
         }
 
-        // 按时间排序，保留最新的消息
-        List<TokenMessage> sortedMessages = new ArrayList<>(messages);
-        Collections.sort(sortedMessages, Comparator.comparing(TokenMessage::getCreatedAt).reversed());
-
-        // 计算可用token数（考虑预留空间）
-        int maxTokens = config.getMaxTokens();
-        int reserveTokens = (int) (maxTokens * config.getReserveRatio());
-        int availableTokens = maxTokens - reserveTokens;
-
-        // 保留最新的消息，直到达到token限制
-        List<TokenMessage> retainedMessages = new ArrayList<>();
-        int totalTokens = 0;
-
-        for (TokenMessage message : sortedMessages) {
-            int messageTokens = message.getTokenCount() != null ? message.getTokenCount() : 0;
-            if (totalTokens + messageTokens <= availableTokens) {
-                retainedMessages.add(message);
-                totalTokens += messageTokens;
-            } else {
-                break;
-            }
+        // 优先使用会话维护的前缀和索引，没有则临时构建
+        TokenPrefixSumIndex index = tokenOverflowConfig != null ? tokenOverflowConfig.getPrefixSumIndex() : null;
+        if (index == null) {
+            index = TokenPrefixSumIndex.of(messages);
         }
 
-        // 创建结果对象
-        TokenProcessResult result = new TokenProcessResult();
-        result.setRetainedMessages(retainedMessages);
-        result.setStrategyName(getName());
-        result.setProcessed(true);
-        result.setTotalTokens(totalTokens);
+        synchronized (index) {
+            index.sync(messages);
 
-        return result;
+            long totalTokens = index.totalTokens();
+            int maxTokens = getMaxTokens(tokenOverflowConfig);
+            if (totalTokens <= maxTokens) {
+                return TokenProcessResult.unprocessed(getName(), messages, (int) totalTokens);
+            }
+
+            // 计算可用token数（考虑预留空间）
+            int reserveTokens = (int) (maxTokens * getReserveRatio(tokenOverflowConfig));
+            int availableTokens = maxTokens - reserveTokens;
+
+            // 二分查找窗口起点，保留最新的消息直到达到token限制
+            int windowStart = index.findWindowStart(availableTokens);
+            long retainedTokens = index.tokensFrom(windowStart);
+
+            // 窗口左移，下一轮只需追加新消息
+            index.dropFirst(windowStart);
+
+            return TokenProcessResult.processed(getName(), messages.subList(windowStart, messages.size()),
+                    (int) retainedTokens);
+        }
     }
 
     /** 获取策略名称
@@ -93,25 +74,27 @@ public class SlidingWindowTokenOverflowStrategy implements TokenOverflowStrategy
      * @param messages 待处理的消息列表
      * @return 是否需要处理 */
     @Override
-    public boolean needsProcessing(List<TokenMessage> messages) {
+    public boolean needsProcessing(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
         if (messages == null || messages.isEmpty()) {
             return false;
         }
 
-        int totalTokens = calculateTotalTokens(messages);
-        int maxTokens = config.getMaxTokens();
-        return totalTokens > maxTokens;
+        return calculateTotalTokens(messages) > getMaxTokens(tokenOverflowConfig);
     }
 
     /** 计算消息列表的总token数 */
-    private int calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream().mapToInt(m -> m.getTokenCount() != null ? m.getTokenCount() : 0).sum();
+    private long calculateTotalTokens(List<TokenMessage> messages) {
+        long total = 0;
+        for (TokenMessage message : messages) {
+            total += message.getTokenCount() != null ? message.getTokenCount() : 0;
+        }
+        return total;
     }
 
     /** 获取配置的最大Token数，如果未配置则使用默认值
      * 
      * @return 最大Token数 */
-    private int getMaxTokens() {
+    private int getMaxTokens(TokenOverflowConfig config) {
         if (config == null || config.getMaxTokens() == null) {
             return DEFAULT_MAX_TOKENS;
         }
@@ -121,7 +104,7 @@ public class SlidingWindowTokenOverflowStrategy implements TokenOverflowStrategy
     /** 获取配置的预留比例，如果未配置则使用默认值
      * 
      * @return 预留比例 */
-    private double getReserveRatio() {
+    private double getReserveRatio(TokenOverflowConfig config) {
         if (config == null || config.getReserveRatio() == null) {
             return DEFAULT_RESERVE_RATIO;
         }
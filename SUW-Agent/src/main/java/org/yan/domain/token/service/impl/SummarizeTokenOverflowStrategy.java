@@ -3,6 +3,7 @@ package org.yan.domain.token.service.impl;
 import dev.langchain4j.data.message.*;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import org.springframework.stereotype.Service;
 import org.yan.domain.token.model.TokenMessage;
 import org.yan.domain.token.model.TokenProcessResult;
 import org.yan.domain.token.model.config.TokenOverflowConfig;
@@ -11,91 +12,39 @@ import org.yan.domain.token.service.TokenOverflowStrategy;
 import org.yan.infrastructure.llm.LLMProviderService;
 import org.yan.infrastructure.llm.config.ProviderConfig;
 
-import java.time.LocalDateTime;
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
-/** 摘要策略Token超限处理实现 将超出阈值的早期消息生成摘要，保留摘要和最新消息 */
+/** 摘要策略Token超限处理实现 将超出阈值的早期消息生成摘要，保留摘要和最新消息 无状态单例，摘要通过结果对象返回 */
+@Service
 public class SummarizeTokenOverflowStrategy implements TokenOverflowStrategy {
 
-    /** 摘要消息的特殊角色标识 */
-    private static final String SUMMARY_ROLE = "summary";
+    /** 默认摘要触发阈值 */
+    private static final int DEFAULT_SUMMARY_THRESHOLD = 20;
 
-    /** 策略配置 */
-    private final TokenOverflowConfig config;
-
-    /** 需要进行摘要的消息 */
-    private List<TokenMessage> messagesToSummarize;
-
-    /** 生成的摘要消息对象 */
-    private TokenMessage summaryMessage;
-
-    /** 构造函数
-     * 
-     * @param config 策略配置 */
-    public SummarizeTokenOverflowStrategy(TokenOverflowConfig config) {
-        this.config = config;
-        this.messagesToSummarize = new ArrayList<>();
-        this.summaryMessage = null;
-    }
-
-    /** 处理消息列表，应用摘要策略 将超过阈值的早期消息替换为一个摘要消息
+    /** 处理消息列表，应用摘要策略 将超过阈值的早期消息生成摘要，保留的消息为原列表的视图
      * 
-     * @param messages 待处理的消息列表
-     * @return 处理后的消息列表（包含摘要消息+保留的消息） */
+     * @param messages 按插入顺序排列的待处理消息列表
+     * @return 处理结果，摘要内容通过 {@link TokenProcessResult#getSummary()} 获取 */
     @Override
     public TokenProcessResult process(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
-        if (!needsProcessing(messages)) {
-            TokenProcessResult result = new TokenProcessResult();
-            result.setRetainedMessages(messages);
-            result.setStrategyName(getName());
-            result.setProcessed(false);
-            result.setTotalTokens(calculateTotalTokens(messages));
-            return result;
+        if (!needsProcessing(messages, tokenOverflowConfig)) {
+            return TokenProcessResult.unprocessed(getName(), messages,
+                    messages != null ? calculateTotalTokens(messages) : 0);
         }
 
-        // 按时间排序
-        List<TokenMessage> sortedMessages = new ArrayList<>(messages);
-        Collections.sort(sortedMessages, Comparator.comparing(TokenMessage::getCreatedAt));
-
-        // 获取需要保留的消息数量
-        int threshold = config.getSummaryThreshold();
+        // 消息已按插入顺序排列，分割为需要摘要的消息和保留的消息
+        int threshold = getSummaryThreshold(tokenOverflowConfig);
+        int splitIndex = messages.size() - threshold;
+        List<TokenMessage> messagesToSummarize = messages.subList(0, splitIndex);
+        List<TokenMessage> retainedMessages = messages.subList(splitIndex, messages.size());
 
-        // 分割消息：需要摘要的消息和保留的消息
-        messagesToSummarize = sortedMessages.subList(0, sortedMessages.size() - threshold);
-        List<TokenMessage> retainedMessages = new ArrayList<>(
-                sortedMessages.subList(sortedMessages.size() - threshold, sortedMessages.size()));
-
-        // 生成摘要消息
+        // 生成摘要
         String summary = generateSummary(messagesToSummarize, tokenOverflowConfig);
-        summaryMessage = createSummaryMessage(summary);
-
-        // 将摘要消息添加到保留消息列表的开头
-        retainedMessages.add(0, summaryMessage);
 
-        // 创建结果对象
-        TokenProcessResult result = new TokenProcessResult();
-        result.setRetainedMessages(retainedMessages);
-        result.setSummary(summary);
-        result.setStrategyName(getName());
-        result.setProcessed(true);
-        result.setTotalTokens(calculateTotalTokens(retainedMessages));
-
-        return result;
-    }
-
-    /** 创建表示摘要的TokenMessage对象
-     * 
-     * @param summary 摘要内容
-     * @return 摘要消息对象 */
-    private TokenMessage createSummaryMessage(String summary) {
-        TokenMessage message = new TokenMessage();
-        message.setId(UUID.randomUUID().toString());
-        message.setRole(SUMMARY_ROLE);
-        message.setContent(summary);
-        message.setTokenCount(100); // TODO: 计算实际token数
-        message.setCreatedAt(LocalDateTime.now());
-        return message;
+        return TokenProcessResult.summarized(getName(), retainedMessages, summary,
+                calculateTotalTokens(retainedMessages));
     }
 
     /** 获取策略名称
@@ -111,23 +60,16 @@ public class SummarizeTokenOverflowStrategy implements TokenOverflowStrategy {
      * @param messages 待处理的消息列表
      * @return 是否需要处理 */
     @Override
-    public boolean needsProcessing(List<TokenMessage> messages) {
+    public boolean needsProcessing(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
         if (messages == null || messages.isEmpty()) {
             return false;
         }
 
-        return messages.size() > config.getSummaryThreshold();
-    }
-
-    /** 获取需要摘要的消息列表（按时间排序） 这是应用层应该使用的方法，用于获取需要进行摘要处理的消息对象
-     * 
-     * @return 需要摘要的消息列表（按时间从旧到新排序） */
-    public List<TokenMessage> getMessagesToSummarize() {
-        return messagesToSummarize;
+        return messages.size() > getSummaryThreshold(tokenOverflowConfig);
     }
 
-    /** 生成摘要内容 */
-    private String generateSummary(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
+    /** 生成摘要内容 后台摘要任务也通过该方法调用大模型 */
+    public String generateSummary(List<TokenMessage> messages, TokenOverflowConfig tokenOverflowConfig) {
 
         ProviderConfig providerConfig = tokenOverflowConfig.getProviderConfig();
 
@@ -145,13 +87,17 @@ public class SummarizeTokenOverflowStrategy implements TokenOverflowStrategy {
 
     /** 计算消息列表的总token数 */
     private int calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream().mapToInt(m -> m.getTokenCount() != null ? m.getTokenCount() : 0).sum();
+        int total = 0;
+        for (TokenMessage message : messages) {
+            total += message.getTokenCount() != null ? message.getTokenCount() : 0;
+        }
+        return total;
     }
 
-    /** 获取生成的摘要消息对象
-     * 
-     * @return 摘要消息对象 */
-    public TokenMessage getSummaryMessage() {
-        return summaryMessage;
+    private int getSummaryThreshold(TokenOverflowConfig config) {
+        if (config == null || config.getSummaryThreshold() == null || config.getSummaryThreshold() <= 0) {
+            return DEFAULT_SUMMARY_THRESHOLD;
+        }
+        return config.getSummaryThreshold();
     }
-}
\ No newline at end of file
+}
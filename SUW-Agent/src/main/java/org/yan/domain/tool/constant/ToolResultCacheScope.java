@@ -0,0 +1,11 @@
+package org.yan.domain.tool.constant;
+
+/** 工具结果缓存的共享范围 */
+public enum ToolResultCacheScope {
+
+    /** 只在同一用户内复用，适合结果与调用者有关的工具 */
+    USER,
+
+    /** 所有用户共用，只适合结果与调用者无关的工具 */
+    GLOBAL
+}
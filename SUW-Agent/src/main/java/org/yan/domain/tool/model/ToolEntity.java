@@ -89,6 +89,10 @@ public class ToolEntity extends BaseEntity {
     @TableField("mcp_server_name")
     private String mcpServerName;
 
+    /** 发布内容在源仓库中的Git对象SHA，目录为树对象，由内容逐层计算 */
+    @TableField("content_hash")
+    private String contentHash;
+
     public String getId() {
         return id;
     }
@@ -232,4 +236,12 @@ public class ToolEntity extends BaseEntity {
     public void setMcpServerName(String mcpServerName) {
         this.mcpServerName = mcpServerName;
     }
-}
\ No newline at end of file
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+}
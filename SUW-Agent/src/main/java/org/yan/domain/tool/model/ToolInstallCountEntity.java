@@ -0,0 +1,36 @@
+package org.yan.domain.tool.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import org.yan.infrastructure.entity.BaseEntity;
+
+/** 工具安装数实体类 安装和卸载时在同一事务中增减，读取时按工具ID直接查询，不再统计用户工具表 */
+@TableName("tool_install_counts")
+public class ToolInstallCountEntity extends BaseEntity {
+
+    /** 工具ID */
+    @TableId(value = "tool_id", type = IdType.INPUT)
+    private String toolId;
+
+    /** 安装数 */
+    @TableField("install_count")
+    private Long installCount;
+
+    public String getToolId() {
+        return toolId;
+    }
+
+    public void setToolId(String toolId) {
+        this.toolId = toolId;
+    }
+
+    public Long getInstallCount() {
+        return installCount;
+    }
+
+    public void setInstallCount(Long installCount) {
+        this.installCount = installCount;
+    }
+}
@@ -0,0 +1,110 @@
+package org.yan.domain.tool.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import org.yan.infrastructure.entity.BaseEntity;
+
+import java.time.LocalDateTime;
+
+/** 工具状态任务实体类 每个工具最多一条待处理任务，记录下一步要处理的状态；任务持久化在数据库中，重启后继续处理，多节点通过行锁分别领取 */
+@TableName("tool_state_jobs")
+public class ToolStateJobEntity extends BaseEntity {
+
+    /** 任务唯一ID */
+    @TableId(value = "id", type = IdType.ASSIGN_UUID)
+    private String id;
+
+    /** 工具ID */
+    @TableField("tool_id")
+    private String toolId;
+
+    /** 待处理的工具状态 */
+    @TableField("tool_status")
+    private String toolStatus;
+
+    /** 当前状态已尝试的次数 */
+    @TableField("attempts")
+    private Integer attempts;
+
+    /** 最早可执行时间，重试时按退避时间推后 */
+    @TableField("run_at")
+    private LocalDateTime runAt;
+
+    /** 领取任务的节点 */
+    @TableField("locked_by")
+    private String lockedBy;
+
+    /** 租约到期时间，节点宕机后任务在到期后被其他节点重新领取 */
+    @TableField("locked_until")
+    private LocalDateTime lockedUntil;
+
+    /** 最近一次失败原因 */
+    @TableField("last_error")
+    private String lastError;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getToolId() {
+        return toolId;
+    }
+
+    public void setToolId(String toolId) {
+        this.toolId = toolId;
+    }
+
+    public String getToolStatus() {
+        return toolStatus;
+    }
+
+    public void setToolStatus(String toolStatus) {
+        this.toolStatus = toolStatus;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getRunAt() {
+        return runAt;
+    }
+
+    public void setRunAt(LocalDateTime runAt) {
+        this.runAt = runAt;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -81,6 +81,14 @@ public class ToolVersionEntity extends BaseEntity {
     @TableField("mcp_server_name")
     private String mcpServerName;
 
+    /** 发布内容在源仓库中的Git对象SHA，目录为树对象，由内容逐层计算 */
+    @TableField("content_hash")
+    private String contentHash;
+
+    /** 是否为该工具最新的公开版本，由版本变更时维护，市场列表直接按此过滤 */
+    @TableField("latest_public")
+    private Boolean latestPublic;
+
     public String getId() {
         return id;
     }
@@ -208,4 +216,20 @@ public class ToolVersionEntity extends BaseEntity {
     public void setMcpServerName(String mcpServerName) {
         this.mcpServerName = mcpServerName;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Boolean getLatestPublic() {
+        return latestPublic;
+    }
+
+    public void setLatestPublic(Boolean latestPublic) {
+        this.latestPublic = latestPublic;
+    }
 }
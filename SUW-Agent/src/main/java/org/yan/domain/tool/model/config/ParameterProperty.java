@@ -1,15 +1,28 @@
 package org.yan.domain.tool.model.config;
 
 import java.io.Serializable;
+import java.util.List;
 
 /** 参数属性 */
 public class ParameterProperty implements Serializable {
     private String description;
 
+    /** 参数类型：string、integer、number、boolean、enum、array、object，旧数据为空 */
+    private String type;
+
+    /** 枚举类型的可选值 */
+    private List<String> enumValues;
+
     public ParameterProperty(String description) {
         this.description = description;
     }
 
+    public ParameterProperty(String description, String type, List<String> enumValues) {
+        this.description = description;
+        this.type = type;
+        this.enumValues = enumValues;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -17,4 +30,20 @@ public class ParameterProperty implements Serializable {
     public void setDescription(String description) {
         this.description = description;
     }
-}
\ No newline at end of file
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<String> getEnumValues() {
+        return enumValues;
+    }
+
+    public void setEnumValues(List<String> enumValues) {
+        this.enumValues = enumValues;
+    }
+}
@@ -16,6 +16,15 @@ public class ToolDefinition {
     /** 是否启用 */
     private Boolean enabled;
 
+    /** 结果缓存配置，为空时不缓存 */
+    private ToolResultCacheConfig resultCache;
+
+    /** 调用超时时间（秒），为空时使用默认值 */
+    private Integer timeoutSeconds;
+
+    /** 输出长度上限（字符），超出时截断，为空时使用默认值 */
+    private Integer maxOutputChars;
+
     public String getName() {
         return name;
     }
@@ -47,4 +56,28 @@ public class ToolDefinition {
     public void setEnabled(Boolean enabled) {
         this.enabled = enabled;
     }
+
+    public ToolResultCacheConfig getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(ToolResultCacheConfig resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public Integer getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(Integer timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public Integer getMaxOutputChars() {
+        return maxOutputChars;
+    }
+
+    public void setMaxOutputChars(Integer maxOutputChars) {
+        this.maxOutputChars = maxOutputChars;
+    }
 }
\ No newline at end of file
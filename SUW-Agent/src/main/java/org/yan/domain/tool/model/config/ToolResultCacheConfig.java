@@ -0,0 +1,31 @@
+package org.yan.domain.tool.model.config;
+
+import org.yan.domain.tool.constant.ToolResultCacheScope;
+
+import java.io.Serializable;
+
+/** 工具结果缓存配置 由工具作者为幂等的只读工具声明，未声明的工具不缓存 */
+public class ToolResultCacheConfig implements Serializable {
+
+    /** 缓存有效期（秒） */
+    private Integer ttlSeconds;
+
+    /** 共享范围，默认按用户隔离 */
+    private ToolResultCacheScope scope = ToolResultCacheScope.USER;
+
+    public Integer getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Integer ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public ToolResultCacheScope getScope() {
+        return scope;
+    }
+
+    public void setScope(ToolResultCacheScope scope) {
+        this.scope = scope;
+    }
+}
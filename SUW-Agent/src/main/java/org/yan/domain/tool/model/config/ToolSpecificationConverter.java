@@ -1,6 +1,7 @@
 package org.yan.domain.tool.model.config;
 
 import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.model.chat.request.json.JsonObjectSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +13,11 @@ import java.util.*;
 public class ToolSpecificationConverter {
     private static final Logger log = LoggerFactory.getLogger(ToolSpecificationConverter.class);
 
+    /** 参数Schema类名 -> 参数类型 */
+    private static final Map<String, String> SCHEMA_TYPES = Map.of("JsonStringSchema", "string",
+            "JsonIntegerSchema", "integer", "JsonNumberSchema", "number", "JsonBooleanSchema", "boolean",
+            "JsonEnumSchema", "enum", "JsonArraySchema", "array", "JsonObjectSchema", "object");
+
     /** 将ToolSpecification列表转换为ToolDefinition列表 */
     public static List<ToolDefinition> convert(List<ToolSpecification> specifications) {
         if (specifications == null) {
@@ -52,6 +58,96 @@ public class ToolSpecificationConverter {
         return dto;
     }
 
+    /** 将工具定义还原为ToolSpecification 只支持参数均为标量类型的定义，缺少类型信息（旧数据）或包含数组、对象参数时
+     * 返回null，由调用方改为从MCP服务获取；已禁用的工具同样还原，由调用方按定义过滤
+     *
+     * @param definitions 发布时记录的工具定义
+     * @return 工具规范列表，无法完整还原时返回null */
+    public static List<ToolSpecification> toSpecifications(List<ToolDefinition> definitions) {
+        if (definitions == null || definitions.isEmpty()) {
+            return null;
+        }
+        List<ToolSpecification> specifications = new ArrayList<>(definitions.size());
+        for (ToolDefinition definition : definitions) {
+            JsonObjectSchema parameters = toObjectSchema(definition.getParameters());
+            if (parameters == null) {
+                return null;
+            }
+            specifications.add(ToolSpecification.builder().name(definition.getName())
+                    .description(definition.getDescription()).parameters(parameters).build());
+        }
+        return specifications;
+    }
+
+    /** 还原参数Schema，无法还原时返回null */
+    private static JsonObjectSchema toObjectSchema(Map<String, Object> parameters) {
+        JsonObjectSchema.Builder builder = JsonObjectSchema.builder();
+        if (parameters == null) {
+            return builder.build();
+        }
+        Object propertiesObj = parameters.get("properties");
+        if (propertiesObj instanceof Map<?, ?> properties) {
+            for (Map.Entry<?, ?> entry : properties.entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                String description = readProperty(entry.getValue(), "description");
+                String type = readProperty(entry.getValue(), "type");
+                if (type == null) {
+                    return null;
+                }
+                switch (type) {
+                    case "string" -> builder.addStringProperty(name, description);
+                    case "integer" -> builder.addIntegerProperty(name, description);
+                    case "number" -> builder.addNumberProperty(name, description);
+                    case "boolean" -> builder.addBooleanProperty(name, description);
+                    case "enum" -> {
+                        List<String> enumValues = readEnumValues(entry.getValue());
+                        if (enumValues == null || enumValues.isEmpty()) {
+                            return null;
+                        }
+                        builder.addEnumProperty(name, enumValues, description);
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+        }
+        Object requiredObj = parameters.get("required");
+        List<String> required = new ArrayList<>();
+        if (requiredObj instanceof Collection<?> collection) {
+            collection.forEach(item -> required.add(String.valueOf(item)));
+        } else if (requiredObj instanceof Object[] array) {
+            for (Object item : array) {
+                required.add(String.valueOf(item));
+            }
+        }
+        return builder.required(required).build();
+    }
+
+    /** 读取参数属性，数据库中读出的是Map，刚转换的是ParameterProperty */
+    private static String readProperty(Object property, String name) {
+        Object value = null;
+        if (property instanceof ParameterProperty parameterProperty) {
+            value = "type".equals(name) ? parameterProperty.getType() : parameterProperty.getDescription();
+        } else if (property instanceof Map<?, ?> map) {
+            value = map.get(name);
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    private static List<String> readEnumValues(Object property) {
+        Object value = null;
+        if (property instanceof ParameterProperty parameterProperty) {
+            value = parameterProperty.getEnumValues();
+        } else if (property instanceof Map<?, ?> map) {
+            value = map.get("enumValues");
+        }
+        if (value instanceof Collection<?> values) {
+            return values.stream().map(String::valueOf).toList();
+        }
+        return null;
+    }
+
     /** 使用反射机制提取参数信息，更加健壮 */
     private static ToolParameter extractParametersReflectively(ToolSpecification spec) {
         ToolParameter toolParameter = new ToolParameter();
@@ -71,12 +167,20 @@ public class ToolSpecificationConverter {
 
                     // 获取属性的description
                     String description = null;
+                    String type = null;
+                    List<String> enumValues = null;
                     if (propertyValue != null) {
                         Object descObj = getFieldValueSafely(propertyValue, "description", Object.class);
                         description = descObj != null ? descObj.toString() : null;
+                        // 记录参数类型，用于发布后直接还原工具规范
+                        type = SCHEMA_TYPES.get(propertyValue.getClass().getSimpleName());
+                        Collection<?> values = getFieldValueSafely(propertyValue, "enumValues", Collection.class);
+                        if (values != null) {
+                            enumValues = values.stream().map(String::valueOf).toList();
+                        }
                     }
 
-                    properties.put(propertyName, new ParameterProperty(description));
+                    properties.put(propertyName, new ParameterProperty(description, type, enumValues));
                 }
             }
 
@@ -0,0 +1,38 @@
+package org.yan.domain.tool.repository;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+import org.yan.domain.tool.model.ToolInstallCountEntity;
+import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
+
+/** 工具安装数仓库接口 */
+@Mapper
+public interface ToolInstallCountRepository extends MyBatisPlusExtRepository<ToolInstallCountEntity> {
+
+    /** 增减工具的安装数，记录不存在时创建，结果不小于0
+     *
+     * @param delta 变化量，卸载时为负数
+     * @return 影响行数 */
+    @Insert({"INSERT INTO tool_install_counts (tool_id, install_count, created_at, updated_at) ",
+            "VALUES (#{toolId}, GREATEST(#{delta}, 0), NOW(), NOW()) ON CONFLICT (tool_id) DO UPDATE SET ",
+            "install_count = GREATEST(tool_install_counts.install_count + #{delta}, 0), updated_at = NOW()"})
+    int addInstalls(@Param("toolId") String toolId, @Param("delta") long delta);
+
+    /** 按用户工具表重新统计安装数，只更新不一致的记录
+     *
+     * @return 校正的记录数 */
+    @Insert({"INSERT INTO tool_install_counts (tool_id, install_count, created_at, updated_at) ",
+            "SELECT tool_id, COUNT(*), NOW(), NOW() FROM user_tools WHERE deleted_at IS NULL GROUP BY tool_id ",
+            "ON CONFLICT (tool_id) DO UPDATE SET install_count = EXCLUDED.install_count, updated_at = NOW() ",
+            "WHERE tool_install_counts.install_count <> EXCLUDED.install_count"})
+    int reconcile();
+
+    /** 已没有任何安装的工具，安装数归零
+     *
+     * @return 校正的记录数 */
+    @Update({"UPDATE tool_install_counts c SET install_count = 0, updated_at = NOW() WHERE c.install_count <> 0 ",
+            "AND NOT EXISTS (SELECT 1 FROM user_tools u WHERE u.tool_id = c.tool_id AND u.deleted_at IS NULL)"})
+    int resetUninstalled();
+}
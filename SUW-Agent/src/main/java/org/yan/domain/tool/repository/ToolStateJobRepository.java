@@ -0,0 +1,75 @@
+package org.yan.domain.tool.repository;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.yan.domain.tool.model.ToolStateJobEntity;
+import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** 工具状态任务仓库接口 */
+@Mapper
+public interface ToolStateJobRepository extends MyBatisPlusExtRepository<ToolStateJobEntity> {
+
+    /** 提交工具的状态任务，工具已有任务时替换为新任务，正在执行旧任务的节点完成后不会影响新任务
+     *
+     * @return 影响行数 */
+    @Insert({"INSERT INTO tool_state_jobs (id, tool_id, tool_status, attempts, run_at, created_at, updated_at) ",
+            "VALUES (#{id}, #{toolId}, #{toolStatus}, 0, NOW(), NOW(), NOW()) ",
+            "ON CONFLICT (tool_id) DO UPDATE SET id = EXCLUDED.id, tool_status = EXCLUDED.tool_status, attempts = 0, ",
+            "run_at = NOW(), locked_by = NULL, locked_until = NULL, last_error = NULL, updated_at = NOW()"})
+    int enqueue(@Param("id") String id, @Param("toolId") String toolId, @Param("toolStatus") String toolStatus);
+
+    /** 领取到期的任务，跳过其他节点已锁定的行，多节点并发领取互不阻塞
+     *
+     * @param workerId 当前节点
+     * @param leaseSeconds 租约时长（秒）
+     * @param limit 最多领取的任务数
+     * @return 领取到的任务，尝试次数已加一 */
+    @Select({"UPDATE tool_state_jobs j SET locked_by = #{workerId}, ",
+            "locked_until = NOW() + make_interval(secs => #{leaseSeconds}), attempts = j.attempts + 1, ",
+            "updated_at = NOW() FROM (SELECT id FROM tool_state_jobs WHERE run_at <= NOW() ",
+            "AND (locked_until IS NULL OR locked_until < NOW()) ORDER BY run_at LIMIT #{limit} ",
+            "FOR UPDATE SKIP LOCKED) c WHERE j.id = c.id RETURNING j.*"})
+    List<ToolStateJobEntity> claim(@Param("workerId") String workerId, @Param("leaseSeconds") int leaseSeconds,
+            @Param("limit") int limit);
+
+    /** 当前状态处理成功后推进到下一状态，由同一节点继续处理并续租
+     *
+     * @return 影响行数，任务已被替换时返回0 */
+    @Update({"UPDATE tool_state_jobs SET tool_status = #{toolStatus}, attempts = 1, last_error = NULL, ",
+            "locked_until = NOW() + make_interval(secs => #{leaseSeconds}), updated_at = NOW() ",
+            "WHERE id = #{id} AND locked_by = #{workerId}"})
+    int advance(@Param("id") String id, @Param("workerId") String workerId, @Param("toolStatus") String toolStatus,
+            @Param("leaseSeconds") int leaseSeconds);
+
+    /** 处理失败后释放任务，延迟到退避时间后重试
+     *
+     * @return 影响行数 */
+    @Update({"UPDATE tool_state_jobs SET run_at = NOW() + make_interval(secs => #{delaySeconds}), ",
+            "locked_by = NULL, locked_until = NULL, last_error = #{lastError}, updated_at = NOW() ",
+            "WHERE id = #{id} AND locked_by = #{workerId}"})
+    int retryLater(@Param("id") String id, @Param("workerId") String workerId,
+            @Param("delaySeconds") double delaySeconds, @Param("lastError") String lastError);
+
+    /** 删除已完成的任务
+     *
+     * @return 影响行数 */
+    @Delete("DELETE FROM tool_state_jobs WHERE id = #{id}")
+    int complete(@Param("id") String id);
+
+    /** 统计可领取的任务数 */
+    @Select({"SELECT COUNT(*) FROM tool_state_jobs WHERE run_at <= NOW() ",
+            "AND (locked_until IS NULL OR locked_until < NOW())"})
+    long countReady();
+
+    /** 最早一条可领取任务的可执行时间，没有时返回null */
+    @Select({"SELECT MIN(run_at) FROM tool_state_jobs WHERE run_at <= NOW() ",
+            "AND (locked_until IS NULL OR locked_until < NOW())"})
+    LocalDateTime oldestReadyAt();
+}
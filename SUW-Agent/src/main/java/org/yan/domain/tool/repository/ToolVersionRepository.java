@@ -1,7 +1,10 @@
 package org.yan.domain.tool.repository;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.yan.domain.tool.model.ToolVersionEntity;
 import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
 
@@ -10,7 +13,43 @@ import java.util.List;
 @Mapper
 public interface ToolVersionRepository extends MyBatisPlusExtRepository<ToolVersionEntity> {
 
-    @Select("SELECT * FROM tool_version t1 " + "WHERE t1.public_status = true "
-            + "AND t1.created_at = (SELECT MAX(t2.created_at) FROM tool_version t2 WHERE t2.tool_id = t1.tool_id AND t2.public_status = true)")
-    List<ToolVersionEntity> listLatestPublicToolVersions();
+    /** 重新标记工具的最新公开版本，只有创建时间最新的一条公开版本 latest_public 为 true
+     *
+     * @param toolId 工具ID
+     * @return 更新的行数 */
+    @Update("UPDATE tool_versions t SET latest_public = (t.id IS NOT DISTINCT FROM latest.id) "
+            + "FROM (SELECT (SELECT v.id FROM tool_versions v WHERE v.tool_id = #{toolId} AND v.public_status = true "
+            + "AND v.deleted_at IS NULL ORDER BY v.created_at DESC, v.id DESC LIMIT 1) AS id) latest "
+            + "WHERE t.tool_id = #{toolId} AND t.deleted_at IS NULL "
+            + "AND t.latest_public IS DISTINCT FROM (t.id IS NOT DISTINCT FROM latest.id)")
+    int refreshLatestPublic(@Param("toolId") String toolId);
+
+    /** 在每个工具的最新公开版本中搜索 名称、描述和标签走全文索引按前缀匹配，名称同时走三元组索引，
+     * 支持子串和拼写相近的匹配；按相关度排序。传入上一页最后一条记录的ID时，按该记录的（相关度、创建时间、ID）
+     * 作为游标取后续结果，不再扫描并丢弃前面的页
+     *
+     * @param keyword 关键词
+     * @param tsQuery 前缀匹配的tsquery，为空时只按名称匹配
+     * @param lastId 上一页最后一条记录的ID，为空时按偏移量分页
+     * @return 当前页的版本列表 */
+    @Select({"<script>", "SELECT * FROM (SELECT v.*, (",
+            "<if test='tsQuery != null'>ts_rank(v.search_vector, to_tsquery('simple', #{tsQuery})) + </if>",
+            "word_similarity(#{keyword}, v.name)) AS search_rank FROM tool_versions v ",
+            "WHERE v.latest_public = true AND v.deleted_at IS NULL AND (",
+            "<if test='tsQuery != null'>v.search_vector @@ to_tsquery('simple', #{tsQuery}) OR </if>",
+            "v.name ILIKE CONCAT('%', #{keyword}, '%') OR #{keyword} &lt;% v.name)) r ",
+            "<if test='lastId != null'>WHERE (r.search_rank, r.created_at, r.id) &lt; (SELECT (",
+            "<if test='tsQuery != null'>ts_rank(c.search_vector, to_tsquery('simple', #{tsQuery})) + </if>",
+            "word_similarity(#{keyword}, c.name)), c.created_at, c.id FROM tool_versions c WHERE c.id = #{lastId}) ",
+            "</if>", "ORDER BY r.search_rank DESC, r.created_at DESC, r.id DESC LIMIT #{limit} OFFSET #{offset}",
+            "</script>"})
+    @ResultMap("mybatis-plus_ToolVersionEntity")
+    List<ToolVersionEntity> searchLatestPublic(@Param("keyword") String keyword, @Param("tsQuery") String tsQuery,
+            @Param("lastId") String lastId, @Param("limit") long limit, @Param("offset") long offset);
+
+    /** 统计搜索结果总数，条件与 {@link #searchLatestPublic} 相同 */
+    @Select({"<script>", "SELECT COUNT(*) FROM tool_versions WHERE latest_public = true AND deleted_at IS NULL AND (",
+            "<if test='tsQuery != null'>search_vector @@ to_tsquery('simple', #{tsQuery}) OR </if>",
+            "name ILIKE CONCAT('%', #{keyword}, '%') OR #{keyword} &lt;% name)", "</script>"})
+    long countSearchLatestPublic(@Param("keyword") String keyword, @Param("tsQuery") String tsQuery);
 }
@@ -10,6 +10,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.yan.domain.tool.constant.ToolStatus;
 import org.yan.domain.tool.model.ToolEntity;
 import org.yan.domain.tool.model.UserToolEntity;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.domain.tool.model.config.ToolResultCacheConfig;
+import org.yan.domain.tool.repository.ToolInstallCountRepository;
 import org.yan.domain.tool.repository.ToolRepository;
 import org.yan.domain.tool.repository.ToolVersionRepository;
 import org.yan.domain.tool.repository.UserToolRepository;
@@ -18,6 +21,7 @@ import org.yan.infrastructure.exception.BusinessException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /** 工具领域服务 */
 @Service
@@ -27,13 +31,16 @@ public class ToolDomainService {
     private final ToolVersionRepository toolVersionRepository;
     private final ToolStateDomainService toolStateService;
     private final UserToolRepository userToolRepository;
+    private final ToolInstallCountRepository toolInstallCountRepository;
 
     public ToolDomainService(ToolRepository toolRepository, ToolVersionRepository toolVersionRepository,
-            ToolStateDomainService toolStateService, UserToolRepository userToolRepository) {
+            ToolStateDomainService toolStateService, UserToolRepository userToolRepository,
+            ToolInstallCountRepository toolInstallCountRepository) {
         this.toolRepository = toolRepository;
         this.toolVersionRepository = toolVersionRepository;
         this.toolStateService = toolStateService;
         this.userToolRepository = userToolRepository;
+        this.toolInstallCountRepository = toolInstallCountRepository;
     }
 
     /** 创建工具
@@ -81,7 +88,8 @@ public class ToolDomainService {
         return toolRepository.selectById(toolId);
     }
 
-    public ToolEntity updateTool(ToolEntity toolEntity) {
+    public ToolEntity updateTool(ToolEntity toolEntity, Map<String, ToolResultCacheConfig> resultCaches,
+            Map<String, Integer> toolTimeouts, Map<String, Integer> outputLimits) {
         /** 修改 name/description/icon/labels只触发人工审核状态 修改 upload_url/upload_command触发整个状态扭转 */
         // 获取原工具信息
         ToolEntity oldTool = toolRepository.selectById(toolEntity.getId());
@@ -89,6 +97,16 @@ public class ToolDomainService {
             throw new BusinessException("工具不存在: " + toolEntity.getId());
         }
 
+        // 工具列表沿用原值并合并工具作者声明的配置，重新获取工具列表时会保留这些配置
+        validateDeclaredConfigs(resultCaches, toolTimeouts, outputLimits);
+        if (oldTool.getToolList() != null) {
+            List<ToolDefinition> toolList = oldTool.getToolList();
+            mergeDeclared(toolList, resultCaches, ToolDefinition::setResultCache);
+            mergeDeclared(toolList, toolTimeouts, ToolDefinition::setTimeoutSeconds);
+            mergeDeclared(toolList, outputLimits, ToolDefinition::setMaxOutputChars);
+            toolEntity.setToolList(toolList);
+        }
+
         // 检查是否修改了URL或安装命令
         boolean needStateTransition = false;
         if ((toolEntity.getUploadUrl() != null && !toolEntity.getUploadUrl().equals(oldTool.getUploadUrl()))
@@ -117,6 +135,53 @@ public class ToolDomainService {
         return toolEntity;
     }
 
+    /** 校验工具作者声明的配置
+     *
+     * @param resultCaches 工具名 -> 结果缓存配置
+     * @param toolTimeouts 工具名 -> 超时时间（秒）
+     * @param outputLimits 工具名 -> 输出长度上限（字符） */
+    private void validateDeclaredConfigs(Map<String, ToolResultCacheConfig> resultCaches,
+            Map<String, Integer> toolTimeouts, Map<String, Integer> outputLimits) {
+        if (resultCaches != null) {
+            resultCaches.forEach((toolName, config) -> {
+                if (config != null && (config.getTtlSeconds() == null || config.getTtlSeconds() <= 0)) {
+                    throw new BusinessException("工具 " + toolName + " 的结果缓存有效期必须大于0");
+                }
+            });
+        }
+        if (toolTimeouts != null) {
+            toolTimeouts.forEach((toolName, timeoutSeconds) -> {
+                if (timeoutSeconds != null && timeoutSeconds <= 0) {
+                    throw new BusinessException("工具 " + toolName + " 的超时时间必须大于0");
+                }
+            });
+        }
+        if (outputLimits != null) {
+            outputLimits.forEach((toolName, maxOutputChars) -> {
+                if (maxOutputChars != null && maxOutputChars <= 0) {
+                    throw new BusinessException("工具 " + toolName + " 的输出长度上限必须大于0");
+                }
+            });
+        }
+    }
+
+    /** 把工具作者声明的配置合并到同名工具定义中，未出现在工具列表中的工具名忽略
+     *
+     * @param toolList 工具定义列表
+     * @param values 工具名 -> 配置值，值为空表示清除，整体为空时不修改
+     * @param setter 写入配置的方法 */
+    private <T> void mergeDeclared(List<ToolDefinition> toolList, Map<String, T> values,
+            BiConsumer<ToolDefinition, T> setter) {
+        if (values == null) {
+            return;
+        }
+        for (ToolDefinition toolDefinition : toolList) {
+            if (values.containsKey(toolDefinition.getName())) {
+                setter.accept(toolDefinition, values.get(toolDefinition.getName()));
+            }
+        }
+    }
+
     @Transactional
     public void deleteTool(String toolId, String userId) {
 
@@ -129,7 +194,10 @@ public class ToolDomainService {
                 .eq(UserToolEntity::getToolId, toolId).eq(UserToolEntity::getUserId, userId);
 
         toolRepository.checkedDelete(wrapper);
-        userToolRepository.delete(userToolWrapper);
+        int uninstalled = userToolRepository.delete(userToolWrapper);
+        if (uninstalled > 0) {
+            toolInstallCountRepository.addInstalls(toolId, -uninstalled);
+        }
         // 这里应该删除 mcp community github repo，但是删不干净，索性就不删
         // 用户可以自行修改工具名称，修改后之前的工具名称不记录，因此就算删除，之前的仓库无记录删不了
     }
@@ -1,13 +1,19 @@
 package org.yan.domain.tool.service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.yan.domain.tool.constant.ToolStatus;
 import org.yan.domain.tool.model.ToolEntity;
+import org.yan.domain.tool.model.ToolStateJobEntity;
 import org.yan.domain.tool.repository.ToolRepository;
+import org.yan.domain.tool.repository.ToolStateJobRepository;
+import org.yan.domain.tool.service.state.ToolStateJobMetrics;
 import org.yan.domain.tool.service.state.ToolStateProcessor;
 import org.yan.domain.tool.service.state.impl.DeployingProcessor;
 import org.yan.domain.tool.service.state.impl.FetchingToolsProcessor;
@@ -18,49 +24,103 @@ import org.yan.domain.tool.service.state.impl.WaitingReviewProcessor;
 import org.yan.infrastructure.exception.BusinessException;
 import org.yan.infrastructure.github.GitHubService;
 import org.yan.infrastructure.mcp_gateway.MCPGatewayService;
+import org.yan.infrastructure.mcp_gateway.McpClientPool;
+import org.yan.infrastructure.mcp_gateway.McpToolResultCache;
+import org.yan.infrastructure.mcp_gateway.McpToolSpecificationCache;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** 工具状态流转服务。 管理工具在不同状态间的转换，并执行各状态对应的处理逻辑。 */
+/** 工具状态流转服务。 管理工具在不同状态间的转换，并执行各状态对应的处理逻辑。
+ * 待处理的状态保存在数据库任务表中，各节点用 FOR UPDATE SKIP LOCKED 领取任务，重启不丢失；
+ * 处理失败时按处理器允许的次数指数退避重试，重试用尽才把工具标记为失败 */
 @Service
 public class ToolStateDomainService {
 
     private static final Logger logger = LoggerFactory.getLogger(ToolStateDomainService.class);
 
+    /** 处理任务的线程数 */
+    private static final int WORKER_THREADS = 5;
+
+    /** 领取任务的轮询间隔（秒） */
+    private static final long POLL_INTERVAL_SECONDS = 2;
+
+    /** 任务租约时长（秒），需覆盖单个状态的最长处理时间，节点宕机后任务在租约到期后被重新领取 */
+    private static final int LEASE_SECONDS = 15 * 60;
+
+    /** 首次重试的等待时间（秒） */
+    private static final double INITIAL_RETRY_SECONDS = 5;
+
+    /** 重试等待时间上限（秒） */
+    private static final double MAX_RETRY_SECONDS = 300;
+
+    /** 指标输出间隔（秒） */
+    private static final long METRICS_INTERVAL_SECONDS = 60;
+
     private final ToolRepository toolRepository;
+    private final ToolStateJobRepository toolStateJobRepository;
     private final GitHubService gitHubService;
     private final MCPGatewayService mcpGatewayService;
+    private final McpClientPool mcpClientPool;
+    private final McpToolSpecificationCache toolSpecificationCache;
+    private final McpToolResultCache toolResultCache;
 
     private final Map<ToolStatus, ToolStateProcessor> processorMap = new HashMap<>();
     private final ExecutorService executorService;
 
+    /** 领取任务和输出指标的调度线程 */
+    private ScheduledExecutorService scheduler;
+
+    /** 当前节点标识，记录在领取的任务上 */
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + ":"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    /** 正在处理的任务数 */
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final ToolStateJobMetrics metrics = new ToolStateJobMetrics();
+
     /** 构造函数。
      * 
      * @param toolRepository 工具仓库，用于数据持久化。
-     * @param gitHubService GitHub服务，用于与GitHub API交互。 */
-    public ToolStateDomainService(ToolRepository toolRepository, GitHubService gitHubService,
-            MCPGatewayService mcpGatewayService) {
+     * @param gitHubService GitHub服务，用于与GitHub API交互。
+     * @param toolStateJobRepository 工具状态任务仓库，持久化待处理的状态。 */
+    public ToolStateDomainService(ToolRepository toolRepository, ToolStateJobRepository toolStateJobRepository,
+            GitHubService gitHubService,
+            MCPGatewayService mcpGatewayService, McpClientPool mcpClientPool,
+            McpToolSpecificationCache toolSpecificationCache, McpToolResultCache toolResultCache) {
         this.toolRepository = toolRepository;
+        this.toolStateJobRepository = toolStateJobRepository;
         this.gitHubService = gitHubService;
         this.mcpGatewayService = mcpGatewayService;
+        this.mcpClientPool = mcpClientPool;
+        this.toolSpecificationCache = toolSpecificationCache;
+        this.toolResultCache = toolResultCache;
 
-        // 创建具有无限队列的固定大小线程池用于异步处理状态转换
-        this.executorService = new ThreadPoolExecutor(5, // 核心线程数
-                10, // 最大线程数
+        // 固定大小的线程池，每次只领取空闲线程数量的任务，队列中不会积压
+        this.executorService = new ThreadPoolExecutor(WORKER_THREADS, // 核心线程数
+                WORKER_THREADS, // 最大线程数
                 60L, // 空闲线程存活时间
                 TimeUnit.SECONDS, // 时间单位
-                new LinkedBlockingQueue<>(), // 无界队列
+                new LinkedBlockingQueue<>(), // 队列
                 r -> {
                     Thread t = new Thread(r, "tool-state-processor-thread");
                     t.setDaemon(true); // 设置为守护线程，以便JVM退出时它们不会阻止退出
                     return t;
-                }, new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略：由提交任务的线程直接执行
-        );
+                });
     }
 
     /** 初始化方法，在Bean属性设置完成后调用。 负责注册所有状态处理器。 */
@@ -71,7 +131,8 @@ public class ToolStateDomainService {
         registerProcessor(new GithubUrlValidateProcessor(gitHubService));
         // 移除或保留 DeployingProcessor 和 FetchingToolsProcessor 取决于它们是否还在流程中
         registerProcessor(new DeployingProcessor(mcpGatewayService));
-        registerProcessor(new FetchingToolsProcessor(mcpGatewayService));
+        registerProcessor(new FetchingToolsProcessor(mcpGatewayService, mcpClientPool, toolSpecificationCache,
+                toolResultCache));
 
         // 移除手动审核状态直接关联PublishingProcessor的注册
         // registerProcessor(ToolStatus.MANUAL_REVIEW,new
@@ -82,6 +143,24 @@ public class ToolStateDomainService {
         registerProcessor(new ManualReviewProcessor());
 
         logger.info("工具状态处理器初始化完成，已注册 {} 个处理器。", processorMap.size());
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tool-state-poller-thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_SECONDS, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::reportMetrics, METRICS_INTERVAL_SECONDS, METRICS_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /** 停止领取任务，处理中的任务在租约到期后由其他节点或重启后的节点重新领取 */
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        executorService.shutdownNow();
     }
 
     /** 注册一个状态处理器到映射中。
@@ -95,7 +174,7 @@ public class ToolStateDomainService {
         processorMap.put(processor.getStatus(), processor);
     }
 
-    /** 提交一个工具，根据其当前状态进行异步处理。
+    /** 提交一个工具，根据其当前状态进行异步处理。 任务写入数据库，在调用方事务提交后立即尝试领取。
      * 
      * @param toolEntity 要处理的工具的ID。 */
     public void submitToolForProcessing(ToolEntity toolEntity) {
@@ -104,7 +183,73 @@ public class ToolStateDomainService {
         }
 
         logger.info("提交工具ID: {} (当前状态: {}) 到状态处理队列。", toolEntity.getId(), toolEntity.getStatus());
-        executorService.submit(() -> processToolState(toolEntity));
+        toolStateJobRepository.enqueue(UUID.randomUUID().toString(), toolEntity.getId(),
+                toolEntity.getStatus().name());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /** 获取任务指标 */
+    public ToolStateJobMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** 立即领取一次任务，不等待下一个轮询周期 */
+    private void wakeUp() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.execute(this::poll);
+        }
+    }
+
+    /** 按空闲线程数领取到期的任务 */
+    private void poll() {
+        try {
+            int free = WORKER_THREADS - running.get();
+            if (free <= 0) {
+                return;
+            }
+            List<ToolStateJobEntity> jobs = toolStateJobRepository.claim(workerId, LEASE_SECONDS, free);
+            metrics.recordClaimed(jobs.size());
+            for (ToolStateJobEntity job : jobs) {
+                running.incrementAndGet();
+                executorService.execute(() -> {
+                    try {
+                        runJob(job);
+                    } catch (Exception e) {
+                        // 任务保留在表中，租约到期后重新领取
+                        logger.error("处理工具状态任务 {} 时发生错误: {}", job.getId(), e.getMessage(), e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.error("领取工具状态任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /** 输出吞吐量和队列等待时间 */
+    private void reportMetrics() {
+        try {
+            long ready = toolStateJobRepository.countReady();
+            LocalDateTime oldest = toolStateJobRepository.oldestReadyAt();
+            long ageSeconds = oldest != null
+                    ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).getSeconds())
+                    : 0;
+            logger.info("工具状态任务 待处理: {}，最长等待: {} 秒，处理中: {}，已领取: {}，成功步数: {}，重试: {}，失败: {}", ready,
+                    ageSeconds, running.get(), metrics.getClaimed(), metrics.getSucceeded(), metrics.getRetried(),
+                    metrics.getFailed());
+        } catch (Exception e) {
+            logger.warn("统计工具状态任务失败: {}", e.getMessage());
+        }
     }
 
     /** 处理人工审核完成的工具。 由外部调用（如后台管理系统）来驱动人工审核后的状态流转。
@@ -137,50 +282,103 @@ public class ToolStateDomainService {
         return toolId;
     }
 
-    /** 核心状态处理逻辑。 此方法在executorService的线程中异步执行。
+    /** 核心状态处理逻辑。 此方法在executorService的线程中异步执行，按工具的最新数据处理，
+     * 工具已删除或状态已被其他操作改变时任务作废，重复领取同一任务不会重复推进状态。
+     * 工具状态和任务状态分两步更新，上次在两步之间中断时工具已处于任务的下一状态，此时从工具的当前状态继续。
      * 
-     * @param toolEntity 要处理的工具实体。 */
-    public void processToolState(ToolEntity toolEntity) {
-        final ToolStatus initialStatus = toolEntity.getStatus(); // Capture status before any changes
-        ToolStateProcessor processor = processorMap.get(initialStatus);
-
-        if (processor == null) {
-            logger.warn("工具ID: {} 当前状态 {} 没有找到对应的状态处理器。流程终止。", toolEntity.getId(), initialStatus);
+     * @param job 领取到的任务。 */
+    private void runJob(ToolStateJobEntity job) {
+        ToolEntity toolEntity = toolRepository.selectById(job.getToolId());
+        ToolStatus status = ToolStatus.fromCode(job.getToolStatus());
+        int attempts = job.getAttempts() != null ? job.getAttempts() : 1;
+        ToolStateProcessor jobProcessor = status != null ? processorMap.get(status) : null;
+        if (toolEntity != null && jobProcessor != null && toolEntity.getStatus() != status
+                && toolEntity.getStatus() == jobProcessor.getNextStatus()) {
+            logger.info("工具ID: {} 已推进到 {}，任务 {} 仍停留在 {}，从工具的当前状态继续。", toolEntity.getId(),
+                    toolEntity.getStatus(), job.getId(), status);
+            status = toolEntity.getStatus();
+            attempts = 1;
+            if (status == ToolStatus.MANUAL_REVIEW) {
+                toolStateJobRepository.complete(job.getId());
+                return;
+            }
+            if (toolStateJobRepository.advance(job.getId(), workerId, status.name(), LEASE_SECONDS) == 0) {
+                logger.info("工具ID: {} 的任务 {} 已被新提交的任务替换，停止处理。", toolEntity.getId(), job.getId());
+                return;
+            }
+        }
+        if (toolEntity == null || status == null || toolEntity.getStatus() != status) {
+            logger.info("工具ID: {} 已删除或状态已变更，任务 {} 作废。", job.getToolId(), job.getId());
+            toolStateJobRepository.complete(job.getId());
             return;
         }
 
-        logger.info("开始处理工具ID: {} 的状态: {}", toolEntity.getId(), initialStatus);
+        while (true) {
+            ToolStateProcessor processor = processorMap.get(status);
+            if (processor == null) {
+                logger.warn("工具ID: {} 当前状态 {} 没有找到对应的状态处理器。流程终止。", toolEntity.getId(), status);
+                toolStateJobRepository.complete(job.getId());
+                return;
+            }
 
-        try {
-            processor.process(toolEntity);
+            logger.info("开始处理工具ID: {} 的状态: {}（第 {} 次）", toolEntity.getId(), status, attempts);
+            try {
+                processor.process(toolEntity);
+            } catch (Exception e) {
+                handleFailure(job, toolEntity, processor, attempts, e);
+                return;
+            }
+            metrics.recordSucceeded();
 
             ToolStatus nextStatusCandidate = processor.getNextStatus();
-
-            if (nextStatusCandidate != null && nextStatusCandidate != initialStatus) {
-                toolEntity.setStatus(nextStatusCandidate);
-                toolRepository.updateById(toolEntity); // 持久化状态变更和 processor 可能对 toolEntity 所做的其他修改
-                logger.info("工具ID: {} 状态从 {} 更新为 {}。", toolEntity.getId(), initialStatus, nextStatusCandidate);
-
-                if (nextStatusCandidate == ToolStatus.MANUAL_REVIEW) {
-                    logger.info("工具ID: {} 进入MANUAL_REVIEW状态，等待人工审核。", toolEntity.getId());
-                    return;
-                }
-                processToolState(toolEntity);
-
-            } else {
-                logger.info("工具ID: {} 在状态 {} 处理完成，没有自动的下一状态或状态未改变。", toolEntity.getId(), initialStatus);
+            if (nextStatusCandidate == null || nextStatusCandidate == status) {
+                logger.info("工具ID: {} 在状态 {} 处理完成，没有自动的下一状态或状态未改变。", toolEntity.getId(), status);
+                toolStateJobRepository.complete(job.getId());
+                return;
             }
-        } catch (Exception e) {
-            logger.error("处理工具ID: {} 的状态 {} 时发生错误: {}", toolEntity.getId(), initialStatus, e.getMessage(), e);
 
-            toolEntity.setStatus(ToolStatus.FAILED);
-            toolEntity.setFailedStepStatus(initialStatus);
-            toolEntity.setRejectReason("状态处理失败: " + e.getMessage());
+            toolEntity.setStatus(nextStatusCandidate);
+            toolRepository.updateById(toolEntity); // 持久化状态变更和 processor 可能对 toolEntity 所做的其他修改
+            logger.info("工具ID: {} 状态从 {} 更新为 {}。", toolEntity.getId(), status, nextStatusCandidate);
 
-            toolRepository.updateById(toolEntity);
-            logger.info("工具ID: {} 状态已更新为 {}，失败步骤: {}，原因: {}", toolEntity.getId(), toolEntity.getStatus(), initialStatus,
-                    e.getMessage());
+            if (nextStatusCandidate == ToolStatus.MANUAL_REVIEW) {
+                logger.info("工具ID: {} 进入MANUAL_REVIEW状态，等待人工审核。", toolEntity.getId());
+                toolStateJobRepository.complete(job.getId());
+                return;
+            }
+            if (toolStateJobRepository.advance(job.getId(), workerId, nextStatusCandidate.name(), LEASE_SECONDS) == 0) {
+                logger.info("工具ID: {} 的任务 {} 已被新提交的任务替换，停止处理。", toolEntity.getId(), job.getId());
+                return;
+            }
+            status = nextStatusCandidate;
+            attempts = 1;
         }
     }
 
-}
\ No newline at end of file
+    /** 处理失败 未达到处理器允许的次数时按指数退避加随机抖动安排重试，否则把工具标记为失败 */
+    private void handleFailure(ToolStateJobEntity job, ToolEntity toolEntity, ToolStateProcessor processor,
+            int attempts, Exception e) {
+        ToolStatus status = processor.getStatus();
+        if (attempts < processor.getMaxAttempts()) {
+            double backoff = Math.min(MAX_RETRY_SECONDS, INITIAL_RETRY_SECONDS * Math.pow(2, attempts - 1));
+            double delay = backoff / 2 + ThreadLocalRandom.current().nextDouble(backoff / 2);
+            toolStateJobRepository.retryLater(job.getId(), workerId, delay, e.getMessage());
+            metrics.recordRetried();
+            logger.warn("工具ID: {} 的状态 {} 处理失败（第 {} 次），{} 秒后重试: {}", toolEntity.getId(), status, attempts,
+                    String.format("%.1f", delay), e.getMessage());
+            return;
+        }
+
+        logger.error("处理工具ID: {} 的状态 {} 时发生错误: {}", toolEntity.getId(), status, e.getMessage(), e);
+
+        toolEntity.setStatus(ToolStatus.FAILED);
+        toolEntity.setFailedStepStatus(status);
+        toolEntity.setRejectReason("状态处理失败: " + e.getMessage());
+
+        toolRepository.updateById(toolEntity);
+        toolStateJobRepository.complete(job.getId());
+        metrics.recordFailed();
+        logger.info("工具ID: {} 状态已更新为 {}，失败步骤: {}，原因: {}", toolEntity.getId(), toolEntity.getStatus(), status,
+                e.getMessage());
+    }
+}
@@ -6,12 +6,15 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.yan.domain.tool.model.ToolEntity;
 import org.yan.domain.tool.model.ToolVersionEntity;
+import org.yan.domain.tool.repository.ToolRepository;
 import org.yan.domain.tool.repository.ToolVersionRepository;
 import org.yan.infrastructure.exception.BusinessException;
+import org.yan.infrastructure.utils.SearchQueryUtils;
 import org.yan.interfaces.dto.tool.request.QueryToolRequest;
 
 @Service
@@ -19,35 +22,46 @@ public class ToolVersionDomainService {
 
     private final ToolVersionRepository toolVersionRepository;
 
-    public ToolVersionDomainService(ToolVersionRepository toolVersionRepository) {
+    private final ToolRepository toolRepository;
+
+    public ToolVersionDomainService(ToolVersionRepository toolVersionRepository, ToolRepository toolRepository) {
         this.toolVersionRepository = toolVersionRepository;
+        this.toolRepository = toolRepository;
     }
 
+    /** 分页查询工具市场，每个工具只返回最新的公开版本
+     * 最新公开版本在版本变更时标记，查询走部分索引，按创建时间倒序；传入上一页最后一条记录的ID时按游标分页，
+     * 耗时不随版本总数增长。传入关键词时按相关度排序，走全文和三元组索引，同样支持按游标分页
+     *
+     * @param queryToolRequest 查询条件
+     * @return 分页结果 */
     public Page<ToolVersionEntity> listToolVersion(QueryToolRequest queryToolRequest) {
         long page = queryToolRequest.getPage();
         long pageSize = queryToolRequest.getPageSize();
-        String toolName = queryToolRequest.getToolName();
-        // 1. 查询所有公开版本，支持名称模糊
+        String keyword = SearchQueryUtils.normalizeKeyword(queryToolRequest.getToolName());
+        String lastId = queryToolRequest.getLastId();
+        boolean keyset = lastId != null && !lastId.isEmpty();
+        long offset = keyset ? 0 : (Math.max(page, 1) - 1) * pageSize;
+
+        if (keyword != null) {
+            String tsQuery = SearchQueryUtils.toPrefixTsQuery(keyword);
+            Page<ToolVersionEntity> resultPage = new Page<>(page, pageSize,
+                    toolVersionRepository.countSearchLatestPublic(keyword, tsQuery));
+            resultPage.setRecords(toolVersionRepository.searchLatestPublic(keyword, tsQuery, keyset ? lastId : null,
+                    pageSize, offset));
+            return resultPage;
+        }
+
         LambdaQueryWrapper<ToolVersionEntity> wrapper = Wrappers.<ToolVersionEntity>lambdaQuery()
-                .eq(ToolVersionEntity::getPublicStatus, true)
-                .like(toolName != null && !toolName.isEmpty(), ToolVersionEntity::getName, toolName)
-                .orderByDesc(ToolVersionEntity::getCreatedAt);
-        List<ToolVersionEntity> allPublicList = toolVersionRepository.selectList(wrapper);
-        // 2. 按tool_id分组，取每组created_at最大的一条
-        Map<String, ToolVersionEntity> latestMap = allPublicList.stream()
-                .collect(java.util.stream.Collectors.toMap(ToolVersionEntity::getToolId, v -> v,
-                        (v1, v2) -> v1.getCreatedAt().isAfter(v2.getCreatedAt()) ? v1 : v2));
-        List<ToolVersionEntity> latestList = new java.util.ArrayList<>(latestMap.values());
-        // 3. 按创建时间倒序排列
-        latestList.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
-        // 4. 手动分页
-        int fromIndex = (int) ((page - 1) * pageSize);
-        int toIndex = Math.min(fromIndex + (int) pageSize, latestList.size());
-        List<ToolVersionEntity> pageList = fromIndex >= latestList.size()
-                ? new java.util.ArrayList<>()
-                : latestList.subList(fromIndex, toIndex);
-        Page<ToolVersionEntity> resultPage = new Page<>(page, pageSize, latestList.size());
-        resultPage.setRecords(pageList);
+                .eq(ToolVersionEntity::getLatestPublic, true);
+        long total = toolVersionRepository.selectCount(wrapper);
+
+        wrapper.apply(keyset, "(created_at, id) < (SELECT c.created_at, c.id FROM tool_versions c WHERE c.id = {0})",
+                lastId).orderByDesc(ToolVersionEntity::getCreatedAt).orderByDesc(ToolVersionEntity::getId)
+                .last("LIMIT " + pageSize + " OFFSET " + offset);
+
+        Page<ToolVersionEntity> resultPage = new Page<>(page, pageSize, total);
+        resultPage.setRecords(toolVersionRepository.selectList(wrapper));
         return resultPage;
     }
 
@@ -61,8 +75,11 @@ public class ToolVersionDomainService {
         return toolVersionEntity;
     }
 
+    @Transactional
     public void addToolVersion(ToolVersionEntity toolVersionEntity) {
+        lockTool(toolVersionEntity.getToolId());
         toolVersionRepository.insert(toolVersionEntity);
+        toolVersionRepository.refreshLatestPublic(toolVersionEntity.getToolId());
     }
 
     public ToolVersionEntity findLatestToolVersion(String toolId, String userId) {
@@ -103,10 +120,18 @@ public class ToolVersionDomainService {
         return toolVersionRepository.selectList(queryWrapper);
     }
 
+    @Transactional
     public void updateToolVersionStatus(String toolId, String version, String userId, Boolean publishStatus) {
         Wrapper<ToolVersionEntity> wrapper = Wrappers.<ToolVersionEntity>lambdaUpdate()
                 .eq(ToolVersionEntity::getToolId, toolId).eq(ToolVersionEntity::getVersion, version)
                 .eq(ToolVersionEntity::getUserId, userId).set(ToolVersionEntity::getPublicStatus, publishStatus);
+        lockTool(toolId);
         toolVersionRepository.checkedUpdate(wrapper);
+        toolVersionRepository.refreshLatestPublic(toolId);
+    }
+
+    /** 锁定工具行，同一工具的版本变更串行执行，避免并发刷新时各自看不到对方的改动，留下多个或零个最新公开版本 */
+    private void lockTool(String toolId) {
+        toolRepository.selectOne(Wrappers.<ToolEntity>lambdaQuery().eq(ToolEntity::getId, toolId).last("FOR UPDATE"));
     }
 }
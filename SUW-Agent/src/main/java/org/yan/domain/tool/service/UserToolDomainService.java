@@ -4,13 +4,23 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.yan.domain.tool.model.ToolInstallCountEntity;
 import org.yan.domain.tool.model.UserToolEntity;
+import org.yan.domain.tool.repository.ToolInstallCountRepository;
 import org.yan.domain.tool.repository.UserToolRepository;
 import org.yan.infrastructure.exception.BusinessException;
 import org.yan.interfaces.dto.tool.request.QueryToolRequest;
 
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -18,14 +28,45 @@ import java.util.stream.Collectors;
 @Service
 public class UserToolDomainService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserToolDomainService.class);
+
+    /** 安装数校正间隔（小时） */
+    private static final long RECONCILE_INTERVAL_HOURS = 6;
+
     private final UserToolRepository userToolRepository;
 
-    public UserToolDomainService(UserToolRepository userToolRepository) {
+    private final ToolInstallCountRepository toolInstallCountRepository;
+
+    private ScheduledExecutorService scheduler;
+
+    public UserToolDomainService(UserToolRepository userToolRepository,
+            ToolInstallCountRepository toolInstallCountRepository) {
         this.userToolRepository = userToolRepository;
+        this.toolInstallCountRepository = toolInstallCountRepository;
     }
 
+    @PostConstruct
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tool-install-count-thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileInstallCounts, 5, RECONCILE_INTERVAL_HOURS * 60,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Transactional
     public void add(UserToolEntity userToolEntity) {
         userToolRepository.checkInsert(userToolEntity);
+        toolInstallCountRepository.addInstalls(userToolEntity.getToolId(), 1);
     }
 
     public Page<UserToolEntity> listByUserId(String userId, QueryToolRequest queryToolRequest) {
@@ -46,26 +87,45 @@ public class UserToolDomainService {
         userToolRepository.checkedUpdateById(userToolEntity);
     }
 
+    @Transactional
     public void delete(String toolId, String userId) {
         LambdaQueryWrapper<UserToolEntity> wrapper = Wrappers.<UserToolEntity>lambdaQuery()
                 .eq(UserToolEntity::getToolId, toolId).eq(UserToolEntity::getUserId, userId);
-        userToolRepository.checkedDelete(wrapper);
+        int deleted = userToolRepository.delete(wrapper);
+        if (deleted == 0) {
+            throw new BusinessException("数据更新失败");
+        }
+        toolInstallCountRepository.addInstalls(toolId, -deleted);
     }
 
-    // 获取工具的安装次数
+    /** 获取工具的安装次数，按工具ID直接读取安装数记录
+     *
+     * @param toolIds 工具ID列表
+     * @return 工具ID -> 安装次数，没有安装的工具不包含在内 */
     public Map<String, Long> getToolsInstall(List<String> toolIds) {
         if (toolIds == null || toolIds.isEmpty()) {
             return new HashMap<>();
         }
-        LambdaQueryWrapper<UserToolEntity> wrapper = Wrappers.<UserToolEntity>lambdaQuery()
-                .in(UserToolEntity::getToolId, toolIds);
-        List<UserToolEntity> userToolEntities = userToolRepository.selectList(wrapper);
-
-        // 根据 userToolEntities 进行 toolId 分组，key toolId，value 是分组数量
-        Map<String, Long> toolInstallMap = userToolEntities.stream()
-                .collect(Collectors.groupingBy(UserToolEntity::getToolId, Collectors.counting()));
+        List<ToolInstallCountEntity> counts = toolInstallCountRepository.selectList(Wrappers
+                .<ToolInstallCountEntity>lambdaQuery().in(ToolInstallCountEntity::getToolId, toolIds)
+                .gt(ToolInstallCountEntity::getInstallCount, 0));
+        return counts.stream()
+                .collect(Collectors.toMap(ToolInstallCountEntity::getToolId, ToolInstallCountEntity::getInstallCount));
+    }
 
-        return toolInstallMap;
+    /** 按用户工具表校正安装数，修复异常中断或并发导致的偏差 */
+    public void reconcileInstallCounts() {
+        try {
+            long start = System.currentTimeMillis();
+            int corrected = toolInstallCountRepository.reconcile() + toolInstallCountRepository.resetUninstalled();
+            if (corrected > 0) {
+                logger.warn("工具安装数校正完成，校正 {} 条记录，耗时 {} ms", corrected, System.currentTimeMillis() - start);
+            } else {
+                logger.debug("工具安装数校正完成，没有偏差，耗时 {} ms", System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            logger.error("工具安装数校正失败: {}", e.getMessage(), e);
+        }
     }
 
     /** 检查工具版本是否已安装
@@ -0,0 +1,51 @@
+package org.yan.domain.tool.service.state;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** 工具状态任务指标 */
+public class ToolStateJobMetrics {
+
+    /** 领取的任务数 */
+    private final LongAdder claimed = new LongAdder();
+
+    /** 处理成功的状态步数 */
+    private final LongAdder succeeded = new LongAdder();
+
+    /** 失败后安排重试的次数 */
+    private final LongAdder retried = new LongAdder();
+
+    /** 重试用尽后失败的任务数 */
+    private final LongAdder failed = new LongAdder();
+
+    public void recordClaimed(int count) {
+        claimed.add(count);
+    }
+
+    public void recordSucceeded() {
+        succeeded.increment();
+    }
+
+    public void recordRetried() {
+        retried.increment();
+    }
+
+    public void recordFailed() {
+        failed.increment();
+    }
+
+    public long getClaimed() {
+        return claimed.sum();
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+}
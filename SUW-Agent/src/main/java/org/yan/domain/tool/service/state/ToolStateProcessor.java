@@ -13,4 +13,9 @@ public interface ToolStateProcessor {
 
     /** 获取下一个状态 */
     ToolStatus getNextStatus();
+
+    /** 最多尝试次数，失败后按指数退避重试，处理逻辑需保证重复执行无副作用 */
+    default int getMaxAttempts() {
+        return 3;
+    }
 }
\ No newline at end of file
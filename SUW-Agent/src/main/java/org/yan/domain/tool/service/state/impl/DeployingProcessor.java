@@ -68,6 +68,12 @@ public class DeployingProcessor implements ToolStateProcessor {
         }
     }
 
+    /** 网关和刚部署的服务偶尔短暂不可用，多重试几次 */
+    @Override
+    public int getMaxAttempts() {
+        return 5;
+    }
+
     @Override
     public ToolStatus getNextStatus() {
         return ToolStatus.FETCHING_TOOLS;
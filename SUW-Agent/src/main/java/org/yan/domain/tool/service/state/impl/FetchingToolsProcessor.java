@@ -8,7 +8,11 @@ import org.yan.domain.tool.model.config.ToolDefinition;
 import org.yan.domain.tool.service.state.ToolStateProcessor;
 import org.yan.infrastructure.exception.BusinessException;
 import org.yan.infrastructure.mcp_gateway.MCPGatewayService;
+import org.yan.infrastructure.mcp_gateway.McpClientPool;
+import org.yan.infrastructure.mcp_gateway.McpToolResultCache;
+import org.yan.infrastructure.mcp_gateway.McpToolSpecificationCache;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,12 +22,22 @@ public class FetchingToolsProcessor implements ToolStateProcessor {
     private static final Logger logger = LoggerFactory.getLogger(FetchingToolsProcessor.class);
 
     private final MCPGatewayService mcpGatewayService;
+    private final McpClientPool mcpClientPool;
+    private final McpToolSpecificationCache toolSpecificationCache;
+    private final McpToolResultCache toolResultCache;
 
     /** 构造函数，注入MCPGatewayService
      * 
-     * @param mcpGatewayService MCP网关服务 */
-    public FetchingToolsProcessor(MCPGatewayService mcpGatewayService) {
+     * @param mcpGatewayService MCP网关服务
+     * @param mcpClientPool MCP客户端池，就绪探测通过池化客户端连接，探测成功的连接留给对话复用
+     * @param toolSpecificationCache 工具规范缓存，重新部署后使旧的工具规范失效
+     * @param toolResultCache 工具结果缓存，重新部署后使旧的结果失效 */
+    public FetchingToolsProcessor(MCPGatewayService mcpGatewayService, McpClientPool mcpClientPool,
+            McpToolSpecificationCache toolSpecificationCache, McpToolResultCache toolResultCache) {
         this.mcpGatewayService = mcpGatewayService;
+        this.mcpClientPool = mcpClientPool;
+        this.toolSpecificationCache = toolSpecificationCache;
+        this.toolResultCache = toolResultCache;
     }
 
     @Override
@@ -55,11 +69,19 @@ public class FetchingToolsProcessor implements ToolStateProcessor {
             }
 
             logger.info("从MCP Gateway获取工具 {} 的列表", toolName);
-            // 调用MCPGatewayService获取工具列表
-            List<ToolDefinition> toolDefinitions = mcpGatewayService.listTools(toolName);
+            // 服务已重新部署，断开池中连向旧部署的连接，再通过池化客户端探测并获取工具列表；
+            // 探测超过截止时间时断开探测使用的连接，不占用当前线程等到传输层超时
+            mcpClientPool.reset(toolName);
+            List<ToolDefinition> toolDefinitions = mcpGatewayService.listTools(toolName,
+                    () -> mcpClientPool.probeTools(toolName), () -> mcpClientPool.reset(toolName));
 
+            // 保留工具作者为同名工具声明的结果缓存、超时和输出长度配置
+            keepDeclaredConfigs(tool.getToolList(), toolDefinitions);
             // 将获取到的工具定义列表设置到ToolEntity中
             tool.setToolList(toolDefinitions);
+            // 服务已重新部署，缓存中的工具规范可能已变化
+            toolSpecificationCache.invalidate(toolName);
+            toolResultCache.invalidate(toolName);
 
             logger.info("成功获取到工具 {} 的列表，共 {} 个定义。", toolName, toolDefinitions != null ? toolDefinitions.size() : 0);
 
@@ -72,6 +94,30 @@ public class FetchingToolsProcessor implements ToolStateProcessor {
         }
     }
 
+    private void keepDeclaredConfigs(List<ToolDefinition> oldDefinitions, List<ToolDefinition> newDefinitions) {
+        if (oldDefinitions == null || newDefinitions == null) {
+            return;
+        }
+        Map<String, ToolDefinition> declared = new HashMap<>();
+        for (ToolDefinition oldDefinition : oldDefinitions) {
+            declared.put(oldDefinition.getName(), oldDefinition);
+        }
+        for (ToolDefinition newDefinition : newDefinitions) {
+            ToolDefinition oldDefinition = declared.get(newDefinition.getName());
+            if (oldDefinition != null) {
+                newDefinition.setResultCache(oldDefinition.getResultCache());
+                newDefinition.setTimeoutSeconds(oldDefinition.getTimeoutSeconds());
+                newDefinition.setMaxOutputChars(oldDefinition.getMaxOutputChars());
+            }
+        }
+    }
+
+    /** 网关和刚部署的服务偶尔短暂不可用，多重试几次 */
+    @Override
+    public int getMaxAttempts() {
+        return 5;
+    }
+
     @Override
     public ToolStatus getNextStatus() {
         return ToolStatus.MANUAL_REVIEW;
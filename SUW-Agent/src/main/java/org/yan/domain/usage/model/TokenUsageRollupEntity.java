@@ -0,0 +1,122 @@
+package org.yan.domain.usage.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import org.yan.infrastructure.entity.BaseEntity;
+
+import java.time.LocalDateTime;
+
+/** Token用量汇总实体类 按（用户、Agent、模型、服务商、小时）汇总的Token消耗，由用量账本定期批量累加写入 */
+@TableName("token_usage_rollups")
+public class TokenUsageRollupEntity extends BaseEntity {
+
+    /** 汇总记录唯一ID */
+    @TableId(value = "id", type = IdType.ASSIGN_UUID)
+    private String id;
+
+    /** 用户ID */
+    @TableField("user_id")
+    private String userId;
+
+    /** Agent ID，无Agent的对话为空字符串 */
+    @TableField("agent_id")
+    private String agentId;
+
+    /** 模型ID */
+    @TableField("model_id")
+    private String modelId;
+
+    /** 服务商ID，用于服务商配额校准 */
+    @TableField("provider_id")
+    private String providerId;
+
+    /** 小时桶，整点时间 */
+    @TableField("bucket_hour")
+    private LocalDateTime bucketHour;
+
+    /** 输入Token数 */
+    @TableField("input_tokens")
+    private Long inputTokens;
+
+    /** 输出Token数 */
+    @TableField("output_tokens")
+    private Long outputTokens;
+
+    /** 请求次数 */
+    @TableField("request_count")
+    private Long requestCount;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(String modelId) {
+        this.modelId = modelId;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public void setProviderId(String providerId) {
+        this.providerId = providerId;
+    }
+
+    public LocalDateTime getBucketHour() {
+        return bucketHour;
+    }
+
+    public void setBucketHour(LocalDateTime bucketHour) {
+        this.bucketHour = bucketHour;
+    }
+
+    public Long getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(Long inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public Long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(Long outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public Long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(Long requestCount) {
+        this.requestCount = requestCount;
+    }
+}
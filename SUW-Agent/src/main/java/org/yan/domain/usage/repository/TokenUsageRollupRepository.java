@@ -0,0 +1,51 @@
+package org.yan.domain.usage.repository;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.yan.domain.usage.model.TokenUsageRollupEntity;
+import org.yan.infrastructure.repository.MyBatisPlusExtRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Token用量汇总仓库接口 */
+@Mapper
+public interface TokenUsageRollupRepository extends MyBatisPlusExtRepository<TokenUsageRollupEntity> {
+
+    /** 批量累加用量 同一（用户、Agent、模型、服务商、小时）已存在时在原值上累加，批次内的键不能重复
+     *
+     * @param deltas 用量增量
+     * @return 影响行数 */
+    @Insert({"<script>",
+            "INSERT INTO token_usage_rollups (id, user_id, agent_id, model_id, provider_id, bucket_hour, ",
+            "input_tokens, output_tokens, request_count, created_at, updated_at) VALUES ",
+            "<foreach collection='deltas' item='d' separator=','>",
+            "(#{d.id}, #{d.userId}, #{d.agentId}, #{d.modelId}, #{d.providerId}, #{d.bucketHour}, ",
+            "#{d.inputTokens}, #{d.outputTokens}, #{d.requestCount}, NOW(), NOW())", "</foreach>",
+            " ON CONFLICT (user_id, agent_id, model_id, provider_id, bucket_hour) DO UPDATE SET ",
+            "input_tokens = token_usage_rollups.input_tokens + EXCLUDED.input_tokens, ",
+            "output_tokens = token_usage_rollups.output_tokens + EXCLUDED.output_tokens, ",
+            "request_count = token_usage_rollups.request_count + EXCLUDED.request_count, ",
+            "updated_at = NOW()", "</script>"})
+    int upsertBatch(@Param("deltas") List<TokenUsageRollupEntity> deltas);
+
+    /** 统计用户从指定时间起的Token总数
+     *
+     * @param userId 用户ID
+     * @param from 开始时间（包含）
+     * @return 输入与输出Token之和 */
+    @Select({"SELECT COALESCE(SUM(input_tokens + output_tokens), 0) FROM token_usage_rollups ",
+            "WHERE user_id = #{userId} AND bucket_hour >= #{from} AND deleted_at IS NULL"})
+    long sumUserTokens(@Param("userId") String userId, @Param("from") LocalDateTime from);
+
+    /** 统计服务商从指定时间起的Token总数
+     *
+     * @param providerId 服务商ID
+     * @param from 开始时间（包含）
+     * @return 输入与输出Token之和 */
+    @Select({"SELECT COALESCE(SUM(input_tokens + output_tokens), 0) FROM token_usage_rollups ",
+            "WHERE provider_id = #{providerId} AND bucket_hour >= #{from} AND deleted_at IS NULL"})
+    long sumProviderTokens(@Param("providerId") String providerId, @Param("from") LocalDateTime from);
+}
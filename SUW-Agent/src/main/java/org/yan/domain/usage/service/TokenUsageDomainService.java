@@ -0,0 +1,59 @@
+package org.yan.domain.usage.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import org.springframework.stereotype.Service;
+import org.yan.domain.usage.model.TokenUsageRollupEntity;
+import org.yan.domain.usage.repository.TokenUsageRollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Token用量领域服务 用量统计只读取小时汇总表，不扫描消息表 */
+@Service
+public class TokenUsageDomainService {
+
+    private final TokenUsageRollupRepository tokenUsageRollupRepository;
+
+    public TokenUsageDomainService(TokenUsageRollupRepository tokenUsageRollupRepository) {
+        this.tokenUsageRollupRepository = tokenUsageRollupRepository;
+    }
+
+    /** 查询用户在时间范围内的小时用量，按小时升序
+     *
+     * @param userId 用户ID
+     * @param agentId Agent ID，为空时不过滤
+     * @param modelId 模型ID，为空时不过滤
+     * @param from 开始时间（包含）
+     * @param to 结束时间（不包含）
+     * @return 小时用量列表 */
+    public List<TokenUsageRollupEntity> listHourlyUsage(String userId, String agentId, String modelId,
+            LocalDateTime from, LocalDateTime to) {
+        LambdaQueryWrapper<TokenUsageRollupEntity> wrapper = Wrappers.<TokenUsageRollupEntity>lambdaQuery()
+                .eq(TokenUsageRollupEntity::getUserId, userId)
+                .eq(StringUtils.isNotEmpty(agentId), TokenUsageRollupEntity::getAgentId, agentId)
+                .eq(StringUtils.isNotEmpty(modelId), TokenUsageRollupEntity::getModelId, modelId)
+                .ge(TokenUsageRollupEntity::getBucketHour, from).lt(TokenUsageRollupEntity::getBucketHour, to)
+                .orderByAsc(TokenUsageRollupEntity::getBucketHour);
+        return tokenUsageRollupRepository.selectList(wrapper);
+    }
+
+    /** 统计用户从指定时间起已持久化的Token总数，不含账本中尚未刷写的部分
+     *
+     * @param userId 用户ID
+     * @param from 开始时间（包含），应为整点
+     * @return Token总数 */
+    public long sumUserTokens(String userId, LocalDateTime from) {
+        return tokenUsageRollupRepository.sumUserTokens(userId, from);
+    }
+
+    /** 统计服务商从指定时间起已持久化的Token总数，不含账本中尚未刷写的部分
+     *
+     * @param providerId 服务商ID
+     * @param from 开始时间（包含），应为整点
+     * @return Token总数 */
+    public long sumProviderTokens(String providerId, LocalDateTime from) {
+        return tokenUsageRollupRepository.sumProviderTokens(providerId, from);
+    }
+}
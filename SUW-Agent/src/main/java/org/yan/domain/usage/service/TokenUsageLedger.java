@@ -0,0 +1,225 @@
+package org.yan.domain.usage.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.yan.domain.usage.model.TokenUsageRollupEntity;
+import org.yan.domain.usage.repository.TokenUsageRollupRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Token用量账本 对话完成时在内存中按（用户、Agent、模型、服务商、小时）累加，计数器基于 LongAdder 分段累加，
+ * 高并发下不产生锁竞争；后台线程每隔几秒把增量批量写入汇总表，应用关闭时再写一次 */
+@Service
+public class TokenUsageLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenUsageLedger.class);
+
+    /** 刷写间隔（秒） */
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+
+    /** 单次批量写入的最大行数 */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /** 超过该小时数的空桶从内存中移除 */
+    private static final long IDLE_BUCKET_HOURS = 2;
+
+    private final TokenUsageRollupRepository tokenUsageRollupRepository;
+
+    /** 用量键 -> 计数器 */
+    private final Map<UsageKey, UsageCounter> counters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public TokenUsageLedger(TokenUsageRollupRepository tokenUsageRollupRepository) {
+        this.tokenUsageRollupRepository = tokenUsageRollupRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-usage-flush-thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        logger.info("Token用量账本已启动，刷写间隔: {} 秒", FLUSH_INTERVAL_SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭前写入剩余的增量
+        flushSafely();
+    }
+
+    /** 记录一次模型调用的Token用量
+     *
+     * @param userId 用户ID
+     * @param agentId Agent ID，可为空
+     * @param modelId 模型ID
+     * @param providerId 服务商ID
+     * @param inputTokens 输入Token数
+     * @param outputTokens 输出Token数 */
+    public void record(String userId, String agentId, String modelId, String providerId, Integer inputTokens,
+            Integer outputTokens) {
+        if (userId == null) {
+            return;
+        }
+        UsageKey key = new UsageKey(userId, agentId != null ? agentId : "", modelId != null ? modelId : "",
+                providerId != null ? providerId : "", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS));
+        UsageCounter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new UsageCounter());
+        }
+        counter.inputTokens.add(inputTokens != null ? inputTokens : 0);
+        counter.outputTokens.add(outputTokens != null ? outputTokens : 0);
+        counter.requests.increment();
+    }
+
+    /** 把内存中的增量写入汇总表 */
+    public synchronized void flush() {
+        LocalDateTime idleBefore = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(IDLE_BUCKET_HOURS);
+        List<TokenUsageRollupEntity> deltas = new ArrayList<>();
+        Iterator<Map.Entry<UsageKey, UsageCounter>> iterator = counters.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UsageKey, UsageCounter> entry = iterator.next();
+            // 先移除很久没有更新的桶，移除后再读取，保证移除前的累加不会丢失
+            if (entry.getKey().bucketHour.isBefore(idleBefore)) {
+                iterator.remove();
+            }
+            TokenUsageRollupEntity delta = entry.getValue().drain(entry.getKey());
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        for (int from = 0; from < deltas.size(); from += FLUSH_BATCH_SIZE) {
+            List<TokenUsageRollupEntity> batch = deltas.subList(from, Math.min(from + FLUSH_BATCH_SIZE, deltas.size()));
+            try {
+                tokenUsageRollupRepository.upsertBatch(batch);
+            } catch (Exception e) {
+                // 写入失败时把增量加回计数器，下次刷写重试
+                logger.error("Token用量写入失败，{} 条增量将在下次刷写时重试: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(this::restore);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Token用量刷写异常: {}", e.getMessage(), e);
+        }
+    }
+
+    private void restore(TokenUsageRollupEntity delta) {
+        UsageKey key = new UsageKey(delta.getUserId(), delta.getAgentId(), delta.getModelId(), delta.getProviderId(),
+                delta.getBucketHour());
+        UsageCounter counter = counters.computeIfAbsent(key, k -> new UsageCounter());
+        counter.inputTokens.add(delta.getInputTokens());
+        counter.outputTokens.add(delta.getOutputTokens());
+        counter.requests.add(delta.getRequestCount());
+    }
+
+    /** 用量键 */
+    private static final class UsageKey {
+
+        private final String userId;
+
+        private final String agentId;
+
+        private final String modelId;
+
+        private final String providerId;
+
+        private final LocalDateTime bucketHour;
+
+        private final int hash;
+
+        UsageKey(String userId, String agentId, String modelId, String providerId, LocalDateTime bucketHour) {
+            this.userId = userId;
+            this.agentId = agentId;
+            this.modelId = modelId;
+            this.providerId = providerId;
+            this.bucketHour = bucketHour;
+            this.hash = Objects.hash(userId, agentId, modelId, providerId, bucketHour);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UsageKey other)) {
+                return false;
+            }
+            return userId.equals(other.userId) && agentId.equals(other.agentId) && modelId.equals(other.modelId)
+                    && providerId.equals(other.providerId) && bucketHour.equals(other.bucketHour);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** 用量计数器 */
+    private static final class UsageCounter {
+
+        private final LongAdder inputTokens = new LongAdder();
+
+        private final LongAdder outputTokens = new LongAdder();
+
+        private final LongAdder requests = new LongAdder();
+
+        /** 取出并清零当前增量，每个分段都是原子交换，并发的累加要么计入本次，要么留到下次
+         *
+         * @return 增量，没有新的用量时返回null */
+        TokenUsageRollupEntity drain(UsageKey key) {
+            long requestCount = requests.sumThenReset();
+            long input = inputTokens.sumThenReset();
+            long output = outputTokens.sumThenReset();
+            if (requestCount == 0 && input == 0 && output == 0) {
+                return null;
+            }
+            TokenUsageRollupEntity delta = new TokenUsageRollupEntity();
+            delta.setId(UUID.randomUUID().toString().replace("-", ""));
+            delta.setUserId(key.userId);
+            delta.setAgentId(key.agentId);
+            delta.setModelId(key.modelId);
+            delta.setProviderId(key.providerId);
+            delta.setBucketHour(key.bucketHour);
+            delta.setInputTokens(input);
+            delta.setOutputTokens(output);
+            delta.setRequestCount(requestCount);
+            return delta;
+        }
+    }
+}
@@ -10,6 +10,8 @@ public class GitHubProperties {
 
     private Target target = new Target();
 
+    private Api api = new Api();
+
     public static class Target {
         private String username; // 目标仓库的用户名/组织名
         private String repoName; // 目标仓库名称
@@ -40,6 +42,72 @@ public class GitHubProperties {
         }
     }
 
+    public static class Api {
+        private String baseUrl = "https://api.github.com"; // GitHub API地址，可指向本地模拟服务
+        private String token; // 读取源仓库信息使用的令牌，为空时匿名访问
+        private int connectTimeout = 10000; // 连接超时(毫秒)
+        private int readTimeout = 30000; // 读取超时(毫秒)
+        private int cacheSize = 1000; // 缓存的响应数上限
+        private int reservedRequests = 5; // 保留的请求额度，剩余额度低于该值时只使用缓存
+        private long maxThrottleMillis = 10000; // 额度紧张时单次请求最长等待时间(毫秒)
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public int getReservedRequests() {
+            return reservedRequests;
+        }
+
+        public void setReservedRequests(int reservedRequests) {
+            this.reservedRequests = reservedRequests;
+        }
+
+        public long getMaxThrottleMillis() {
+            return maxThrottleMillis;
+        }
+
+        public void setMaxThrottleMillis(long maxThrottleMillis) {
+            this.maxThrottleMillis = maxThrottleMillis;
+        }
+    }
+
     public Target getTarget() {
         return target;
     }
@@ -47,4 +115,12 @@ public class GitHubProperties {
     public void setTarget(Target target) {
         this.target = target;
     }
-}
\ No newline at end of file
+
+    public Api getApi() {
+        return api;
+    }
+
+    public void setApi(Api api) {
+        this.api = api;
+    }
+}
@@ -12,6 +12,12 @@ public class MCPGatewayProperties {
     private String apiKey; // API密钥
     private int connectTimeout = 30000; // 连接超时(毫秒)，默认30秒
     private int readTimeout = 60000; // 读取超时(毫秒)，默认60秒
+    private int maxConnections = 50; // 连接池最大连接数
+    private int maxConnectionsPerRoute = 20; // 单个路由的最大连接数
+    private int idleConnectionTimeout = 30; // 空闲连接回收时间(秒)
+    private long deployReadyTimeout = 120000; // 等待部署就绪的最长时间(毫秒)，默认120秒
+    private long deployReadyInitialBackoff = 500; // 就绪探测的首次重试间隔(毫秒)
+    private long deployReadyMaxBackoff = 8000; // 就绪探测的重试间隔上限(毫秒)
 
     public String getBaseUrl() {
         return baseUrl;
@@ -44,4 +50,52 @@ public class MCPGatewayProperties {
     public void setReadTimeout(int readTimeout) {
         this.readTimeout = readTimeout;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public long getDeployReadyTimeout() {
+        return deployReadyTimeout;
+    }
+
+    public void setDeployReadyTimeout(long deployReadyTimeout) {
+        this.deployReadyTimeout = deployReadyTimeout;
+    }
+
+    public long getDeployReadyInitialBackoff() {
+        return deployReadyInitialBackoff;
+    }
+
+    public void setDeployReadyInitialBackoff(long deployReadyInitialBackoff) {
+        this.deployReadyInitialBackoff = deployReadyInitialBackoff;
+    }
+
+    public long getDeployReadyMaxBackoff() {
+        return deployReadyMaxBackoff;
+    }
+
+    public void setDeployReadyMaxBackoff(long deployReadyMaxBackoff) {
+        this.deployReadyMaxBackoff = deployReadyMaxBackoff;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package org.yan.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/** MCP网关替身配置属性类 仅在mcp-mock环境启用，用于本地集成测试和压测 */
+@Configuration
+@Profile("mcp-mock")
+@ConfigurationProperties(prefix = "mcp.mock-gateway")
+public class MockMcpGatewayProperties {
+
+    private long latencyMillis = 50; // 工具调用的基础延迟(毫秒)
+    private long latencyJitterMillis = 50; // 工具调用延迟的随机抖动(毫秒)
+    private double failureRate = 0; // 工具调用失败的概率，0到1
+    private long deployLatencyMillis = 200; // 部署接口的延迟(毫秒)
+    private double deployFailureRate = 0; // 部署失败的概率，0到1
+    private int toolCount = 3; // 每个服务提供的假工具数量
+    private int resultPaddingChars = 0; // 工具结果额外填充的字符数，用于测试大结果
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    public void setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public long getDeployLatencyMillis() {
+        return deployLatencyMillis;
+    }
+
+    public void setDeployLatencyMillis(long deployLatencyMillis) {
+        this.deployLatencyMillis = deployLatencyMillis;
+    }
+
+    public double getDeployFailureRate() {
+        return deployFailureRate;
+    }
+
+    public void setDeployFailureRate(double deployFailureRate) {
+        this.deployFailureRate = deployFailureRate;
+    }
+
+    public int getToolCount() {
+        return toolCount;
+    }
+
+    public void setToolCount(int toolCount) {
+        this.toolCount = toolCount;
+    }
+
+    public int getResultPaddingChars() {
+        return resultPaddingChars;
+    }
+
+    public void setResultPaddingChars(int resultPaddingChars) {
+        this.resultPaddingChars = resultPaddingChars;
+    }
+}
@@ -0,0 +1,56 @@
+package org.yan.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** 配额配置属性类 上限为0表示不限制 */
+@Configuration
+@ConfigurationProperties(prefix = "quota")
+public class QuotaProperties {
+
+    private long userDailyTokens = 0; // 每个用户每天的Token上限
+    private long agentRequestsPerMinute = 0; // 每个Agent每分钟的请求上限
+    private long providerDailyTokens = 0; // 每个服务商（API Key）每天的Token上限
+    private int leaseParts = 20; // 上限被切分的块数，节点每次申请一块，默认每块为上限的5%
+    private int reconcileIntervalSeconds = 60; // 与持久化用量校准的间隔(秒)
+
+    public long getUserDailyTokens() {
+        return userDailyTokens;
+    }
+
+    public void setUserDailyTokens(long userDailyTokens) {
+        this.userDailyTokens = userDailyTokens;
+    }
+
+    public long getAgentRequestsPerMinute() {
+        return agentRequestsPerMinute;
+    }
+
+    public void setAgentRequestsPerMinute(long agentRequestsPerMinute) {
+        this.agentRequestsPerMinute = agentRequestsPerMinute;
+    }
+
+    public long getProviderDailyTokens() {
+        return providerDailyTokens;
+    }
+
+    public void setProviderDailyTokens(long providerDailyTokens) {
+        this.providerDailyTokens = providerDailyTokens;
+    }
+
+    public int getLeaseParts() {
+        return leaseParts;
+    }
+
+    public void setLeaseParts(int leaseParts) {
+        this.leaseParts = leaseParts;
+    }
+
+    public int getReconcileIntervalSeconds() {
+        return reconcileIntervalSeconds;
+    }
+
+    public void setReconcileIntervalSeconds(int reconcileIntervalSeconds) {
+        this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+    }
+}
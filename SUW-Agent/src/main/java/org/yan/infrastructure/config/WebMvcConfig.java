@@ -4,6 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -20,11 +23,14 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     private final UserAuthInterceptor userAuthInterceptor;
 
+    private final Environment environment;
+
     @Value("${local.storage.base-path:uploads}")
     private String uploadPath;
 
-    public WebMvcConfig(UserAuthInterceptor userAuthInterceptor) {
+    public WebMvcConfig(UserAuthInterceptor userAuthInterceptor, Environment environment) {
         this.userAuthInterceptor = userAuthInterceptor;
+        this.environment = environment;
     }
 
     @PostConstruct
@@ -43,7 +49,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(userAuthInterceptor)
+        InterceptorRegistration registration = registry.addInterceptor(userAuthInterceptor)
                 .addPathPatterns("/**") // 拦截所有请求
                 .excludePathPatterns( // 不拦截以下路径
                         "/login", // 登录接口
@@ -58,6 +64,10 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/upload/**", // 文件上传相关接口
                         "/files/**" // 静态文件访问
                 );
+        // MCP网关替身只在mcp-mock环境注册，其他环境不放行该路径
+        if (environment.acceptsProfiles(Profiles.of("mcp-mock"))) {
+            registration.excludePathPatterns("/mcp-mock/**");
+        }
     }
 
     @Override
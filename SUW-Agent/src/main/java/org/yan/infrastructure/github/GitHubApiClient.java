@@ -0,0 +1,312 @@
+package org.yan.infrastructure.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yan.infrastructure.config.GitHubProperties;
+import org.yan.infrastructure.exception.BusinessException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/** GitHub REST API客户端 按URL缓存响应和ETag，再次查询时发送条件请求，返回304时直接使用缓存，不消耗请求额度；
+ * 按提交SHA查询的内容不会变化，命中缓存时不再发请求。根据响应头记录剩余额度，额度紧张时把请求均匀分散到重置前，
+ * 额度耗尽时有缓存则返回缓存，没有缓存才失败 */
+@Component
+public class GitHubApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitHubApiClient.class);
+
+    /** 完整的提交SHA */
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-f]{40}");
+
+    /** 剩余额度低于总额度的这个比例时开始分散请求 */
+    private static final double THROTTLE_RATIO = 0.2;
+
+    private final GitHubProperties.Api properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final GitHubApiMetrics metrics = new GitHubApiMetrics();
+
+    /** 请求URL -> 缓存的响应，按访问顺序淘汰 */
+    private final Map<String, CachedResponse> cache;
+
+    private CloseableHttpClient httpClient;
+
+    /** 额度状态，未收到响应头前为-1 */
+    private int rateLimit = -1;
+
+    private int rateLimitRemaining = -1;
+
+    /** 额度重置时间（毫秒） */
+    private long rateLimitResetAt;
+
+    /** 额度紧张时下一个请求最早可以发出的时间 */
+    private long nextRequestAt;
+
+    public GitHubApiClient(GitHubProperties gitHubProperties) {
+        this.properties = gitHubProperties.getApi();
+        int cacheSize = properties.getCacheSize();
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout()).build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(20);
+        connectionManager.setDefaultMaxPerRoute(20);
+        this.httpClient = HttpClients.custom().setDefaultRequestConfig(config).setConnectionManager(connectionManager)
+                .evictExpiredConnections().evictIdleConnections(30, TimeUnit.SECONDS).build();
+        if (properties.getToken() == null || properties.getToken().trim().isEmpty()) {
+            logger.warn("GitHub API令牌未配置 (github.api.token)，将匿名访问，请求额度受限");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("关闭GitHub API客户端失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** 获取仓库信息
+     *
+     * @param owner 仓库所有者
+     * @param repoName 仓库名称
+     * @return 仓库信息，仓库不存在或不可访问时返回null */
+    public JsonNode getRepository(String owner, String repoName) throws IOException {
+        return get("/repos/" + encodePath(owner) + "/" + encodePath(repoName), false);
+    }
+
+    /** 获取引用
+     *
+     * @param owner 仓库所有者
+     * @param repoName 仓库名称
+     * @param ref 引用，如 heads/main、tags/v1.0.0
+     * @return 引用信息，引用不存在时返回null */
+    public JsonNode getRef(String owner, String repoName, String ref) throws IOException {
+        return get("/repos/" + encodePath(owner) + "/" + encodePath(repoName) + "/git/ref/" + encodePath(ref), false);
+    }
+
+    /** 获取提交
+     *
+     * @param owner 仓库所有者
+     * @param repoName 仓库名称
+     * @param ref 分支、Tag或提交SHA
+     * @return 提交信息，包含根目录的树对象SHA，引用不存在时返回null */
+    public JsonNode getCommit(String owner, String repoName, String ref) throws IOException {
+        return get("/repos/" + encodePath(owner) + "/" + encodePath(repoName) + "/commits/" + encodePath(ref),
+                COMMIT_SHA.matcher(ref).matches());
+    }
+
+    /** 获取仓库中路径的内容，目录返回文件列表，文件返回文件信息
+     *
+     * @param owner 仓库所有者
+     * @param repoName 仓库名称
+     * @param path 仓库内路径
+     * @param ref 分支、Tag或提交SHA
+     * @return 路径内容，路径不存在时返回null */
+    public JsonNode getContent(String owner, String repoName, String path, String ref) throws IOException {
+        String apiPath = "/repos/" + encodePath(owner) + "/" + encodePath(repoName) + "/contents/" + encodePath(path)
+                + "?ref=" + URLEncoder.encode(ref, StandardCharsets.UTF_8);
+        return get(apiPath, COMMIT_SHA.matcher(ref).matches());
+    }
+
+    public GitHubApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** 发送GET请求
+     *
+     * @param path API路径
+     * @param immutable 响应是否不会变化，不会变化的响应命中缓存时不再发请求
+     * @return 响应内容，资源不存在时返回null */
+    private JsonNode get(String path, boolean immutable) throws IOException {
+        String url = properties.getBaseUrl().replaceAll("/+$", "") + path;
+        CachedResponse cached = cache.get(url);
+        if (cached != null && immutable) {
+            metrics.recordCacheHit();
+            return cached.body;
+        }
+        if (!acquire()) {
+            if (cached != null) {
+                logger.warn("GitHub API额度不足，使用缓存的响应: {}", path);
+                metrics.recordCacheHit();
+                return cached.body;
+            }
+            throw new BusinessException("GitHub API请求额度不足，请在 " + secondsUntilReset() + " 秒后重试");
+        }
+
+        HttpGet request = new HttpGet(url);
+        request.setHeader("Accept", "application/vnd.github+json");
+        request.setHeader("X-GitHub-Api-Version", "2022-11-28");
+        if (properties.getToken() != null && !properties.getToken().trim().isEmpty()) {
+            request.setHeader("Authorization", "Bearer " + properties.getToken().trim());
+        }
+        if (cached != null) {
+            request.setHeader("If-None-Match", cached.etag);
+        }
+
+        metrics.recordRequest();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            recordRateLimit(response);
+            int statusCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+
+            if (statusCode == 304 && cached != null) {
+                metrics.recordNotModified();
+                return cached.body;
+            }
+            if (statusCode == 404) {
+                cache.remove(url);
+                return null;
+            }
+            if ((statusCode == 403 || statusCode == 429) && isRateLimited(response)) {
+                if (cached != null) {
+                    logger.warn("GitHub API请求被限流，使用缓存的响应: {}", path);
+                    metrics.recordCacheHit();
+                    return cached.body;
+                }
+                throw new BusinessException("GitHub API请求额度不足，请在 " + secondsUntilReset() + " 秒后重试");
+            }
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new IOException("GitHub API请求失败，状态码: " + statusCode + "，路径: " + path);
+            }
+
+            JsonNode node = objectMapper.readTree(body);
+            Header etag = response.getFirstHeader("ETag");
+            if (etag != null) {
+                cache.put(url, new CachedResponse(etag.getValue(), node));
+            }
+            return node;
+        }
+    }
+
+    /** 申请一次请求额度 额度充足时直接放行；剩余额度低于总额度的一定比例时，按 距重置时间/剩余额度 的间隔排队，
+     * 需要等待过久或只剩保留额度时返回false，由调用方改用缓存 */
+    private boolean acquire() throws InterruptedIOException {
+        long waitMillis;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (rateLimitRemaining < 0 || now >= rateLimitResetAt) {
+                return true;
+            }
+            if (rateLimitRemaining <= properties.getReservedRequests()) {
+                return false;
+            }
+            if (rateLimitRemaining > rateLimit * THROTTLE_RATIO) {
+                rateLimitRemaining--;
+                return true;
+            }
+            long interval = (rateLimitResetAt - now) / rateLimitRemaining;
+            long startAt = Math.max(now, nextRequestAt);
+            waitMillis = startAt - now;
+            if (waitMillis > properties.getMaxThrottleMillis()) {
+                return false;
+            }
+            nextRequestAt = startAt + interval;
+            rateLimitRemaining--;
+        }
+        if (waitMillis > 0) {
+            metrics.recordThrottle(waitMillis);
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待GitHub API额度时被中断");
+            }
+        }
+        return true;
+    }
+
+    /** 根据响应头记录额度 */
+    private void recordRateLimit(CloseableHttpResponse response) {
+        Header limit = response.getFirstHeader("X-RateLimit-Limit");
+        Header remaining = response.getFirstHeader("X-RateLimit-Remaining");
+        Header reset = response.getFirstHeader("X-RateLimit-Reset");
+        if (limit == null || remaining == null || reset == null) {
+            return;
+        }
+        try {
+            int limitValue = Integer.parseInt(limit.getValue().trim());
+            int remainingValue = Integer.parseInt(remaining.getValue().trim());
+            long resetAt = Long.parseLong(reset.getValue().trim()) * 1000;
+            synchronized (this) {
+                rateLimit = limitValue;
+                rateLimitRemaining = remainingValue;
+                rateLimitResetAt = resetAt;
+            }
+            if (remainingValue <= limitValue * THROTTLE_RATIO) {
+                logger.debug("GitHub API剩余额度 {}/{}，将在 {} 秒后重置", remainingValue, limitValue, secondsUntilReset());
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("无法解析GitHub API额度响应头: {}", e.getMessage());
+        }
+    }
+
+    private boolean isRateLimited(CloseableHttpResponse response) {
+        Header remaining = response.getFirstHeader("X-RateLimit-Remaining");
+        return response.getFirstHeader("Retry-After") != null
+                || (remaining != null && "0".equals(remaining.getValue().trim()));
+    }
+
+    private synchronized long secondsUntilReset() {
+        return Math.max(0, (rateLimitResetAt - System.currentTimeMillis()) / 1000);
+    }
+
+    /** 按路径段编码，保留分隔符 */
+    private String encodePath(String path) {
+        return Arrays.stream(path.replaceAll("^/+|/+$", "").split("/"))
+                .map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"))
+                .collect(Collectors.joining("/"));
+    }
+
+    /** 缓存的响应 */
+    private static final class CachedResponse {
+
+        private final String etag;
+
+        private final JsonNode body;
+
+        CachedResponse(String etag, JsonNode body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+}
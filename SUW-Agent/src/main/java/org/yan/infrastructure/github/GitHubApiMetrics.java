@@ -0,0 +1,51 @@
+package org.yan.infrastructure.github;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** GitHub API调用指标 */
+public class GitHubApiMetrics {
+
+    /** 实际发出的请求数 */
+    private final LongAdder requests = new LongAdder();
+
+    /** 返回304、直接使用缓存的请求数 */
+    private final LongAdder notModified = new LongAdder();
+
+    /** 不发请求直接返回缓存的次数，包括不可变的内容和额度不足时的旧数据 */
+    private final LongAdder cacheHits = new LongAdder();
+
+    /** 额度紧张时等待的总时长（毫秒） */
+    private final LongAdder throttledMillis = new LongAdder();
+
+    void recordRequest() {
+        requests.increment();
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    void recordThrottle(long millis) {
+        throttledMillis.add(millis);
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getThrottledMillis() {
+        return throttledMillis.sum();
+    }
+}
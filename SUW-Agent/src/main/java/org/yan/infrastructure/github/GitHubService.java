@@ -1,15 +1,11 @@
 package org.yan.infrastructure.github;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.kohsuke.github.GHContent;
-import org.kohsuke.github.GHRef;
-import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -18,13 +14,16 @@ import org.yan.infrastructure.config.GitHubProperties;
 import org.yan.infrastructure.exception.BusinessException;
 
 import jakarta.annotation.PostConstruct;
-import java.io.FileNotFoundException;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /** 与 GitHub API 交互的服务。 负责从源GitHub仓库下载内容，验证仓库信息，以及将内容推送到目标GitHub仓库。 */
 @Service
@@ -32,13 +31,11 @@ public class GitHubService {
     private static final Logger logger = LoggerFactory.getLogger(GitHubService.class);
 
     private final GitHubProperties gitHubProperties;
-    private final GitHub github;
+    private final GitHubApiClient gitHubApiClient;
 
-    public GitHubService(GitHubProperties gitHubProperties) throws IOException {
+    public GitHubService(GitHubProperties gitHubProperties, GitHubApiClient gitHubApiClient) {
         this.gitHubProperties = gitHubProperties;
-        // 生产环境强烈建议配置个人访问令牌（PAT），例如：
-        // this.github = new GitHubBuilder().withOAuthToken("YOUR_GITHUB_PERSONAL_ACCESS_TOKEN").build();
-        this.github = new GitHubBuilder().build(); // 使用匿名访问，可能受速率限制影响
+        this.gitHubApiClient = gitHubApiClient;
     }
 
     /** 初始化时验证配置 */
@@ -76,123 +73,47 @@ public class GitHubService {
 
         logger.info("开始通过 GitHub API 验证仓库：{}，引用：{}，路径：{}", repoInfo.getFullName(), ref, pathInRepo);
 
-        GHRepository repository = github.getRepository(repoInfo.getFullName());
+        JsonNode repository = gitHubApiClient.getRepository(owner, repoName);
 
         if (repository == null) {
             throw new BusinessException("GitHub 仓库不存在：" + repoInfo.getFullName());
         }
-        if (repository.isPrivate()) {
+        if (repository.path("private").asBoolean(false)) {
             throw new BusinessException("GitHub 仓库必须是公开的：" + repoInfo.getFullName());
         }
 
-        String effectiveRef = null;
+        String effectiveRef;
 
         // 决定使用哪个 ref (分支/Tag) 进行验证
         if (ref == null || ref.trim().isEmpty()) {
             // 如果 URL 中未指定 ref，则使用仓库的默认分支
-            effectiveRef = repository.getDefaultBranch();
-            if (effectiveRef == null || effectiveRef.trim().isEmpty()) {
+            effectiveRef = repository.path("default_branch").asText("");
+            if (effectiveRef.trim().isEmpty()) {
                 throw new BusinessException("无法获取仓库 " + repoInfo.getFullName() + " 的默认分支。");
             }
             logger.info("URL 未指定引用，默认使用仓库的默认分支：'{}'", effectiveRef);
         } else {
             // 如果 URL 中指定了 ref，则验证它是一个有效的分支或 Tag
-            boolean refFound = false;
-            String potentialBranchRef = "heads/" + ref; // 分支的引用形式 (如 "heads/main")
-            String potentialTagRef = "tags/" + ref; // Tag 的引用形式 (如 "tags/v1.0.0")
-
-            // 1. 尝试作为分支验证 (直接使用 ref 名称)
-            try {
-                // getRef 接受 "heads/branchName" 形式
-                GHRef branchRef = repository.getRef(potentialBranchRef);
-                if (branchRef != null) {
-                    effectiveRef = ref; // 实际使用时还是用原始的 ref 名称
-                    refFound = true;
-                    logger.info("引用 '{}' 已验证为有效的分支。", ref);
-                }
-            } catch (IOException e) {
-                if (e instanceof FileNotFoundException) {
-                    logger.debug("引用 '{}' 不是有效分支 ({})，尝试作为 Tag 验证。", ref, e.getMessage());
-                } else {
-                    throw e; // 抛出其他非404的IOException
-                }
-            }
-
-            // 2. 如果不是分支，尝试作为 Tag 验证 (直接使用 ref 名称)
-            if (!refFound) {
-                try {
-                    // getRef 接受 "tags/tagName" 形式
-                    GHRef tagRef = repository.getRef(potentialTagRef);
-                    if (tagRef != null) {
-                        effectiveRef = ref; // 实际使用时还是用原始的 ref 名称
-                        refFound = true;
-                        logger.info("引用 '{}' 已验证为有效的 Tag。", ref);
-                    }
-                } catch (IOException e) {
-                    if (e instanceof FileNotFoundException) {
-                        logger.debug("引用 '{}' 也不是有效的 Tag ({})。", ref, e.getMessage());
-                    } else {
-                        throw e; // 抛出其他非404的IOException
-                    }
-                }
-            }
-
-            if (!refFound) {
+            if (gitHubApiClient.getRef(owner, repoName, "heads/" + ref) != null) {
+                logger.info("引用 '{}' 已验证为有效的分支。", ref);
+            } else if (gitHubApiClient.getRef(owner, repoName, "tags/" + ref) != null) {
+                logger.info("引用 '{}' 已验证为有效的 Tag。", ref);
+            } else {
                 throw new BusinessException(
                         "指定的引用 '" + ref + "' 在 GitHub 仓库 '" + repoInfo.getFullName() + "' 中不是一个有效的分支也不是一个有效的 Tag。");
             }
+            effectiveRef = ref;
         }
 
-        // 验证仓库内的路径是否存在于 effectiveRef 下
+        // 验证仓库内的路径是否存在于 effectiveRef 下，目录和文件都可以
         if (pathInRepo != null && !pathInRepo.isEmpty()) {
-            // 构造实际用于 API 调用的 ref 字符串，优先尝试 Tag
-            String apiRefForContent = effectiveRef;
-            try {
-                // 再次尝试获取 "tags/" 形式的引用，以确定它是 Tag 还是分支
-                // 如果能成功获取到，说明 effectiveRef 对应的是一个 Tag
-                repository.getRef("tags/" + effectiveRef);
-                apiRefForContent = "tags/" + effectiveRef; // 确认为 Tag，使用带 tags/ 前缀的 ref
-            } catch (IOException e) {
-                // 如果不是 Tag，则保持 original effectiveRef 作为分支名 (e.g., "main")
-            }
-
-            boolean pathExists = false;
-            try {
-                // 1. 尝试作为目录获取内容
-                List<GHContent> contents = repository.getDirectoryContent(pathInRepo, apiRefForContent);
-                // 只要不抛出异常，就说明路径存在且是目录
-                pathExists = true;
-                logger.info("路径 '{}' 在引用 '{}' 中验证成功，它是一个目录。", pathInRepo, effectiveRef);
-            } catch (IOException e) {
-                // 如果是 FileNotFoundException，则继续尝试作为文件
-                if (!(e instanceof FileNotFoundException)) {
-                    throw e; // 抛出其他非404的IOException
-                }
-                logger.debug("路径 '{}' 在引用 '{}' 中不是目录，尝试作为文件验证。", pathInRepo, effectiveRef);
-            }
-
-            if (!pathExists) {
-                try {
-                    // 2. 尝试作为文件获取内容
-                    GHContent fileContent = repository.getFileContent(pathInRepo, apiRefForContent);
-                    // 只要不抛出异常且文件内容不为 null，就说明路径是文件且存在
-                    if (fileContent != null) {
-                        pathExists = true;
-                        logger.info("路径 '{}' 在引用 '{}' 中验证成功，它是一个文件。", pathInRepo, effectiveRef);
-                    }
-                } catch (IOException e) {
-                    // 如果是 FileNotFoundException，说明文件也不存在
-                    if (!(e instanceof FileNotFoundException)) {
-                        throw e; // 抛出其他非404的IOException
-                    }
-                    logger.debug("路径 '{}' 在引用 '{}' 中也不是文件。", pathInRepo, effectiveRef);
-                }
-            }
-
-            if (!pathExists) {
+            JsonNode content = gitHubApiClient.getContent(owner, repoName, pathInRepo, effectiveRef);
+            if (content == null) {
                 throw new BusinessException(
                         "指定路径 '" + pathInRepo + "' 在 GitHub 仓库的引用 '" + effectiveRef + "' 中不存在或无法访问。");
             }
+            logger.info("路径 '{}' 在引用 '{}' 中验证成功，它是一个{}。", pathInRepo, effectiveRef,
+                    content.isArray() ? "目录" : "文件");
         }
         logger.info("GitHub 仓库、引用和路径验证通过：{}", repoInfo.getFullName());
     }
@@ -211,12 +132,20 @@ public class GitHubService {
         if (basicInfo.getRef() == null || basicInfo.getRef().trim().isEmpty()) {
             logger.info("源URL {} 未指定ref，将获取仓库 {}/{} 的默认分支最新commit SHA", sourceGithubUrl, basicInfo.getOwner(),
                     basicInfo.getRepoName());
-            GHRepository repository = github.getRepository(basicInfo.getFullName());
-            String defaultBranch = repository.getDefaultBranch();
-            if (defaultBranch == null || defaultBranch.trim().isEmpty()) {
+            JsonNode repository = gitHubApiClient.getRepository(basicInfo.getOwner(), basicInfo.getRepoName());
+            if (repository == null) {
+                throw new BusinessException("GitHub 仓库不存在：" + basicInfo.getFullName());
+            }
+            String defaultBranch = repository.path("default_branch").asText("");
+            if (defaultBranch.trim().isEmpty()) {
                 throw new BusinessException("无法获取仓库 " + basicInfo.getFullName() + " 的默认分支。");
             }
-            String latestCommitSha = repository.getRef("heads/" + defaultBranch).getObject().getSha();
+            JsonNode branchRef = gitHubApiClient.getRef(basicInfo.getOwner(), basicInfo.getRepoName(),
+                    "heads/" + defaultBranch);
+            String latestCommitSha = branchRef != null ? branchRef.path("object").path("sha").asText("") : "";
+            if (latestCommitSha.isEmpty()) {
+                throw new BusinessException("无法获取仓库 " + basicInfo.getFullName() + " 默认分支的最新提交。");
+            }
             logger.info("仓库 {}/{} 的默认分支 {} 最新commit SHA为: {}", basicInfo.getOwner(), basicInfo.getRepoName(),
                     defaultBranch, latestCommitSha);
             return new GitHubRepoInfo(basicInfo.getOwner(), basicInfo.getRepoName(), latestCommitSha,
@@ -225,35 +154,64 @@ public class GitHubService {
         return basicInfo;
     }
 
-    /** 下载指定GitHub仓库特定ref的内容为ZIP归档文件。
+    /** 获取源路径在指定版本下的Git对象SHA 目录为树对象SHA，文件为blob SHA。Git对象SHA由内容逐层计算，
+     * 本身就是内容的Merkle哈希，只需一两次API请求，不用克隆目标仓库或下载归档就能判断内容是否变化
      *
-     * @param repoInfo 包含仓库所有者、名称和ref的GitHubRepoInfo对象
-     * @return 下载的ZIP文件的本地临时路径
-     * @throws IOException 如果下载或文件操作失败 */
-    public Path downloadRepositoryArchive(GitHubRepoInfo repoInfo) throws IOException {
-        logger.info("开始下载仓库归档: {}/{}, ref: {}", repoInfo.getOwner(), repoInfo.getRepoName(), repoInfo.getRef());
-
-        String archiveUrlString = String.format("https://github.com/%s/%s/zipball/%s", repoInfo.getOwner(),
-                repoInfo.getRepoName(), repoInfo.getRef());
-        URL archiveUrl = new URL(archiveUrlString);
-
-        Path tempZipFile = Files.createTempFile(
-                "source-repo-" + repoInfo.getRepoName() + "-" + UUID.randomUUID().toString().substring(0, 8), ".zip");
-        FileUtils.copyURLToFile(archiveUrl, tempZipFile.toFile(), 30000, 60000);
-
-        logger.info("源仓库归档已下载到: {}", tempZipFile);
-        return tempZipFile;
+     * @param repoInfo 包含仓库所有者、名称、ref和仓库内路径的GitHubRepoInfo对象
+     * @return 对象SHA，路径不存在或无法获取时返回null
+     * @throws IOException 如果与GitHub API通信时发生错误 */
+    public String resolveSourceContentHash(GitHubRepoInfo repoInfo) throws IOException {
+        String path = repoInfo.getPathInRepo() != null ? repoInfo.getPathInRepo().replaceAll("^/+|/+$", "") : "";
+        if (path.isEmpty()) {
+            JsonNode commit = gitHubApiClient.getCommit(repoInfo.getOwner(), repoInfo.getRepoName(), repoInfo.getRef());
+            String treeSha = commit != null ? commit.path("commit").path("tree").path("sha").asText("") : "";
+            return treeSha.isEmpty() ? null : treeSha;
+        }
+        // 目录自身的内容接口只返回子项，对象SHA要从上级目录的列表中取
+        int slash = path.lastIndexOf('/');
+        String parent = slash >= 0 ? path.substring(0, slash) : "";
+        String name = path.substring(slash + 1);
+        JsonNode entries = gitHubApiClient.getContent(repoInfo.getOwner(), repoInfo.getRepoName(), parent,
+                repoInfo.getRef());
+        if (entries == null || !entries.isArray()) {
+            return null;
+        }
+        for (JsonNode entry : entries) {
+            if (name.equals(entry.path("name").asText())) {
+                String sha = entry.path("sha").asText("");
+                return sha.isEmpty() ? null : sha;
+            }
+        }
+        return null;
     }
 
-    /** 将指定目录的内容提交并推送到目标GitHub仓库的指定路径下。
+    /** 以流的方式读取源仓库归档，只把指定子路径下的文件直接写入目标仓库工作区，再提交并推送到目标GitHub仓库。
+     * 归档只读取一遍，不落地完整的ZIP文件和解压目录，磁盘占用和耗时与工具本身的大小相关，而不是整个源仓库。
      *
-     * @param sourceDirectoryPath 本地源文件目录的Path对象
+     * @param sourceRepoInfo 包含源仓库所有者、名称、ref和仓库内路径的GitHubRepoInfo对象
      * @param targetPathInRepo 内容在目标仓库中的存放路径 (例如: "tools/MyTool-author/v1.0.0")
      * @param commitMessage Git提交信息
-     * @throws IOException 如果本地文件操作或网络IO失败
+     * @throws IOException 如果下载归档、本地文件操作或网络IO失败
      * @throws GitAPIException 如果Git操作失败
-     * @throws BusinessException 如果目标仓库配置不完整 */
-    public void commitAndPushToTargetRepo(Path sourceDirectoryPath, String targetPathInRepo, String commitMessage)
+     * @throws BusinessException 如果目标仓库配置不完整或源路径在归档中不存在 */
+    public void publishArchiveToTargetRepo(GitHubRepoInfo sourceRepoInfo, String targetPathInRepo,
+            String commitMessage) throws IOException, GitAPIException {
+        pushToTargetRepo(targetPathInRepo, commitMessage, targetDirectory -> {
+            int fileCount = extractArchive(sourceRepoInfo, targetDirectory);
+            if (fileCount == 0) {
+                throw new BusinessException("源URL中指定的路径 '" + sourceRepoInfo.getPathInRepo() + "' 在仓库归档中不存在或为空。");
+            }
+            logger.info("已从源仓库归档写入 {} 个文件到 {}", fileCount, targetDirectory);
+        });
+    }
+
+    /** 克隆目标仓库并清空目标路径，由writer写入内容后提交并推送。
+     * Git按内容寻址存储文件，与已有版本相同的文件直接引用已有的对象，推送时只传输新增的对象；目标路径没有变化时不提交。
+     *
+     * @param targetPathInRepo 内容在目标仓库中的存放路径
+     * @param commitMessage Git提交信息
+     * @param writer 向克隆仓库中的目标路径写入内容 */
+    private void pushToTargetRepo(String targetPathInRepo, String commitMessage, TargetContentWriter writer)
             throws IOException, GitAPIException {
 
         String targetUsername = gitHubProperties.getTarget().getUsername();
@@ -291,11 +249,17 @@ public class GitHubService {
             }
             Files.createDirectories(fullTargetPathInClone);
 
-            logger.info("复制文件从源路径 {} 到克隆仓库的目标路径 {}", sourceDirectoryPath, fullTargetPathInClone);
-            FileUtils.copyDirectory(sourceDirectoryPath.toFile(), fullTargetPathInClone.toFile());
+            writer.write(fullTargetPathInClone);
 
             logger.info("执行 git add {} (相对于仓库根)", targetPathInRepo);
             git.add().addFilepattern(targetPathInRepo).call();
+            // 同时暂存目标路径下被删除的文件
+            git.add().setUpdate(true).addFilepattern(targetPathInRepo).call();
+
+            if (git.status().addPath(targetPathInRepo).call().isClean()) {
+                logger.info("目标路径 {} 的内容没有变化，跳过提交和推送", targetPathInRepo);
+                return;
+            }
 
             logger.info("执行 git commit -m \"{}\"", commitMessage);
             git.commit().setMessage(commitMessage).call();
@@ -322,81 +286,61 @@ public class GitHubService {
         }
     }
 
-    /** 提供给其他服务使用的重载方法，支持指定目标仓库名
+    /** 边下载边解析源仓库的ZIP归档，只把仓库内路径下的文件写入目标目录。
+     * GitHub归档的第一层目录是 {owner}-{repo}-{sha}，去掉后才是文件在仓库中的路径。
      *
-     * @param sourceDirectoryPath 本地源文件目录的Path对象
-     * @param targetRepoName 目标仓库的名称 (不包含所有者/用户名)
-     * @param targetPathInRepo 内容在目标仓库中的存放路径 (例如: "tools/MyTool-author/v1.0.0")
-     * @param commitMessage Git提交信息
-     * @throws IOException 如果本地文件操作或网络IO失败
-     * @throws GitAPIException 如果Git操作失败
-     * @throws BusinessException 如果目标仓库配置不完整 */
-    public void commitAndPushToTargetRepo(Path sourceDirectoryPath, String targetRepoName, String targetPathInRepo,
-            String commitMessage) throws IOException, GitAPIException {
-
-        if (targetRepoName == null || targetRepoName.trim().isEmpty()) {
-            targetRepoName = gitHubProperties.getTarget().getRepoName();
-        }
-
-        String targetUsername = gitHubProperties.getTarget().getUsername();
-        String targetToken = gitHubProperties.getTarget().getToken();
+     * @param repoInfo 包含仓库所有者、名称、ref和仓库内路径的GitHubRepoInfo对象
+     * @param targetDirectory 写入的目标目录
+     * @return 写入的文件数
+     * @throws IOException 如果下载或写入失败 */
+    private int extractArchive(GitHubRepoInfo repoInfo, Path targetDirectory) throws IOException {
+        logger.info("开始流式读取仓库归档: {}/{}, ref: {}", repoInfo.getOwner(), repoInfo.getRepoName(), repoInfo.getRef());
 
-        if (targetUsername == null || targetUsername.trim().isEmpty()) {
-            throw new BusinessException("目标GitHub仓库的用户名未配置 (github.target.username)");
-        }
-        if (targetToken == null || targetToken.trim().isEmpty()) {
-            throw new BusinessException("目标GitHub仓库的Token未配置或为空 (github.target.token)");
-        }
-
-        String targetRepoFullName = targetUsername + "/" + targetRepoName;
-        String targetRemoteUrl = "https://github.com/" + targetRepoFullName + ".git";
-        logger.info("准备提交到目标仓库: {}，目标路径: {}，操作用户: {}", targetRemoteUrl, targetPathInRepo, targetUsername);
-
-        Path tempCloneDir = Files
-                .createTempDirectory("target-repo-clone-" + UUID.randomUUID().toString().substring(0, 8));
-        Git git = null;
-
-        try {
-            logger.info("克隆目标仓库 {} 到临时目录 {}", targetRemoteUrl, tempCloneDir);
-            git = Git.cloneRepository().setURI(targetRemoteUrl).setDirectory(tempCloneDir.toFile())
-                    .setCredentialsProvider(new UsernamePasswordCredentialsProvider(targetUsername, targetToken))
-                    .call();
-
-            Path fullTargetPathInClone = tempCloneDir.resolve(targetPathInRepo);
-            if (Files.exists(fullTargetPathInClone)) {
-                logger.info("目标路径 {} 在克隆仓库中已存在，将被清理。", fullTargetPathInClone);
-                FileUtils.deleteDirectory(fullTargetPathInClone.toFile());
-            }
-            Files.createDirectories(fullTargetPathInClone);
-
-            logger.info("复制文件从源路径 {} 到克隆仓库的目标路径 {}", sourceDirectoryPath, fullTargetPathInClone);
-            FileUtils.copyDirectory(sourceDirectoryPath.toFile(), fullTargetPathInClone.toFile());
-
-            logger.info("执行 git add {} (相对于仓库根)", targetPathInRepo);
-            git.add().addFilepattern(targetPathInRepo).call();
-
-            logger.info("执行 git commit -m \"{}\"", commitMessage);
-            git.commit().setMessage(commitMessage).call();
-
-            logger.info("执行 git push 到远程仓库 {}", targetRemoteUrl);
-            PushCommand pushCommand = git.push();
-            pushCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(targetUsername, targetToken));
-            pushCommand.call();
-
-            logger.info("成功提交并推送到目标GitHub仓库: {}", targetRepoFullName);
-
-        } finally {
-            if (git != null) {
-                git.close();
+        String archiveUrlString = String.format("https://github.com/%s/%s/zipball/%s", repoInfo.getOwner(),
+                repoInfo.getRepoName(), repoInfo.getRef());
+        URLConnection connection = new URL(archiveUrlString).openConnection();
+        connection.setConnectTimeout(30000);
+        connection.setReadTimeout(60000);
+
+        String prefix = "";
+        if (repoInfo.getPathInRepo() != null) {
+            prefix = repoInfo.getPathInRepo().replaceAll("^/+|/+$", "");
+            if (!prefix.isEmpty()) {
+                prefix = prefix + "/";
             }
-            if (Files.exists(tempCloneDir)) {
-                try {
-                    FileUtils.deleteDirectory(tempCloneDir.toFile());
-                    logger.info("临时克隆目录 {} 已成功清理。", tempCloneDir);
-                } catch (IOException e) {
-                    logger.error("清理临时克隆目录 {} 失败: {}", tempCloneDir, e.getMessage());
+        }
+        Path root = targetDirectory.toAbsolutePath().normalize();
+
+        int fileCount = 0;
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(connection.getInputStream()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                int slash = name.indexOf('/');
+                String pathInRepo = slash >= 0 ? name.substring(slash + 1) : "";
+                if (!pathInRepo.startsWith(prefix) || pathInRepo.length() == prefix.length()) {
+                    continue;
+                }
+                Path target = root.resolve(pathInRepo.substring(prefix.length())).normalize();
+                if (!target.startsWith(root)) {
+                    throw new BusinessException("仓库归档中包含非法路径: " + name);
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    continue;
                 }
+                Files.createDirectories(target.getParent());
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                fileCount++;
             }
         }
+        return fileCount;
+    }
+
+    /** 向克隆仓库中的目标路径写入内容 */
+    @FunctionalInterface
+    private interface TargetContentWriter {
+
+        void write(Path targetDirectory) throws IOException;
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package org.yan.infrastructure.llm;
+
+import org.yan.infrastructure.llm.config.ProviderConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** 服务商限流器 按接口地址和密钥分别维护令牌桶，令牌按固定速率补充，允许少量突发；
+ * 获取令牌时预约下一个可用时间并等待，等待时间超过上限时放弃，不占用令牌 */
+public class ProviderRateLimiter {
+
+    /** 每个令牌的补充间隔（纳秒） */
+    private final long intervalNanos;
+
+    /** 令牌桶容量，即允许的突发请求数 */
+    private final int burst;
+
+    /** 服务商 -> 令牌桶 */
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /** @param permitsPerMinute 每分钟允许的请求数
+     * @param burst 允许的突发请求数 */
+    public ProviderRateLimiter(int permitsPerMinute, int burst) {
+        if (permitsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("限流速率和突发数必须大于0");
+        }
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burst = burst;
+    }
+
+    /** 获取一个令牌，必要时等待
+     *
+     * @param providerConfig 服务商配置
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否获取成功，等待时间超过上限时返回false
+     * @throws InterruptedException 等待时被中断 */
+    public boolean acquire(ProviderConfig providerConfig, long timeout, TimeUnit unit) throws InterruptedException {
+        Bucket bucket = buckets.computeIfAbsent(key(providerConfig), k -> new Bucket(System.nanoTime()));
+        long waitNanos = bucket.reserve(System.nanoTime(), unit.toNanos(timeout));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /** 服务商的键，按接口地址和密钥区分，不保存密钥原文 */
+    private String key(ProviderConfig providerConfig) {
+        String apiKey = String.valueOf(providerConfig.getApiKey());
+        return providerConfig.getBaseUrl() + "#" + Integer.toHexString(apiKey.hashCode());
+    }
+
+    /** 令牌桶 记录下一个令牌的可用时间，桶满时的可用时间不早于当前时间减去突发容量对应的时长 */
+    private final class Bucket {
+
+        private long nextFreeNanos;
+
+        Bucket(long now) {
+            this.nextFreeNanos = now - intervalNanos * burst;
+        }
+
+        /** 预约一个令牌
+         *
+         * @return 需要等待的纳秒数，超过上限时返回-1 */
+        synchronized long reserve(long now, long maxWaitNanos) {
+            long earliest = Math.max(nextFreeNanos, now - intervalNanos * (burst - 1));
+            long waitNanos = Math.max(0, earliest - now);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            nextFreeNanos = earliest + intervalNanos;
+            return waitNanos;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** MCP网关调用指标 */
+public class MCPGatewayMetrics {
+
+    /** 调用次数 */
+    private final LongAdder calls = new LongAdder();
+
+    /** 失败次数，包括非2xx响应、状态不是success的响应、网络异常和未就绪的探测 */
+    private final LongAdder errors = new LongAdder();
+
+    /** 调用总耗时（纳秒） */
+    private final LongAdder latencyNanos = new LongAdder();
+
+    void record(long nanos, boolean success) {
+        calls.increment();
+        latencyNanos.add(nanos);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /** 平均耗时（毫秒） */
+    public double getAverageLatencyMillis() {
+        long count = calls.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /** 错误率 */
+    public double getErrorRate() {
+        long count = calls.sum();
+        return count == 0 ? 0 : (double) errors.sum() / count;
+    }
+}
@@ -1,9 +1,6 @@
 package org.yan.infrastructure.mcp_gateway;
 
 import dev.langchain4j.agent.tool.ToolSpecification;
-import dev.langchain4j.mcp.client.DefaultMcpClient;
-import dev.langchain4j.mcp.client.McpClient;
-import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -11,6 +8,7 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,12 +19,20 @@ import org.yan.infrastructure.config.MCPGatewayProperties;
 import org.yan.infrastructure.exception.BusinessException;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.yan.infrastructure.utils.JsonUtils;
 
 import java.io.IOException;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /** MCP Gateway服务 处理与MCP网关的所有API交互 */
 @Service
@@ -36,6 +42,14 @@ public class MCPGatewayService {
 
     private final MCPGatewayProperties properties;
 
+    private final MCPGatewayMetrics metrics = new MCPGatewayMetrics();
+
+    /** 所有网关请求共用的HTTP客户端，复用连接 */
+    private CloseableHttpClient httpClient;
+
+    /** 执行就绪探测的线程池，调用方按剩余等待时间等待探测结果 */
+    private ExecutorService probeExecutor;
+
     /** 通过构造函数注入配置
      * 
      * @param properties MCP Gateway配置 */
@@ -54,9 +68,30 @@ public class MCPGatewayService {
             logger.warn("MCP Gateway API密钥未配置 (mcp.gateway.api-key)");
         }
 
+        this.httpClient = createHttpClient();
+        this.probeExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mcp-probe-thread");
+            t.setDaemon(true);
+            return t;
+        });
+
         logger.info("MCP Gateway服务已初始化，基础URL: {}", properties.getBaseUrl());
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (probeExecutor != null) {
+            probeExecutor.shutdownNow();
+        }
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("关闭MCP Gateway HTTP客户端失败: {}", e.getMessage());
+            }
+        }
+    }
+
     public String getSSEUrl(String mcpServerName) {
         return properties.getBaseUrl() + "/" + mcpServerName + "/sse/sse?api_key=" + properties.getApiKey();
     }
@@ -69,7 +104,9 @@ public class MCPGatewayService {
     public boolean deployTool(String installCommand) {
         String url = properties.getBaseUrl() + "/deploy";
 
-        try (CloseableHttpClient httpClient = createHttpClient()) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
             HttpPost httpPost = new HttpPost(url);
             httpPost.setHeader("Content-Type", "application/json");
             httpPost.setHeader("Authorization", "Bearer " + properties.getApiKey());
@@ -87,8 +124,9 @@ public class MCPGatewayService {
                     Map result = JsonUtils.parseObject(responseBody, Map.class);
                     logger.info("MCP Gateway部署响应: {}", result);
 
-                    // 检查状态是否为success
-                    return result.containsKey("status") && "success".equals(result.get("status"));
+                    // 检查状态是否为success，网关返回2xx但状态不是success时同样记为失败
+                    success = result != null && "success".equals(result.get("status"));
+                    return success;
                 } else {
                     String errorMsg = String.format("MCP Gateway部署失败，状态码: %d，响应: %s", statusCode, responseBody);
                     logger.error(errorMsg);
@@ -98,37 +136,88 @@ public class MCPGatewayService {
         } catch (IOException e) {
             logger.error("调用MCP Gateway API失败", e);
             throw new BusinessException("调用MCP Gateway API失败: " + e.getMessage(), e);
+        } finally {
+            recordCall(start, success);
         }
     }
 
-    /** 从MCP Gateway获取工具列表
+    /** 获取网关调用指标 */
+    public MCPGatewayMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** 从MCP Gateway获取工具列表 刚部署的服务可能尚未就绪，连接或获取失败时按指数退避加随机抖动重试，
+     * 服务就绪后立即返回，超过配置的等待时间仍未就绪时失败；每次探测最多等待到截止时间，
+     * 接受连接却迟迟不返回工具列表的服务不会让调用方等到传输层超时；每次探测都计入网关调用指标
      *
      * @param toolName 可选，特定工具名称
+     * @param probe 获取一次工具列表，由调用方通过池化客户端连接网关
+     * @param abort 探测超过截止时间时调用，由调用方断开探测占用的连接，让仍在等待的探测结束
      * @return 工具定义列表
      * @throws BusinessException 如果API调用失败 */
-    public List<ToolDefinition> listTools(String toolName) throws Exception {
-        // 需要等待部署完成
-        Thread.sleep(10000);
-        String url = properties.getBaseUrl() + "/" + toolName + "/sse/sse?api_key=" + properties.getApiKey();
-        HttpMcpTransport transport = new HttpMcpTransport.Builder().sseUrl(url).timeout(Duration.ofSeconds(10))
-                .logRequests(false).logResponses(true).build();
-        McpClient client = new DefaultMcpClient.Builder().transport(transport).build();
-        try {
-            List<ToolSpecification> toolSpecifications = client.listTools();
-            return ToolSpecificationConverter.convert(toolSpecifications);
-        } catch (Exception e) {
-            logger.error("调用MCP Gateway API失败", e);
-            throw new BusinessException("调用MCP Gateway API失败: " + e.getMessage(), e);
-        } finally {
-            client.close();
+    public List<ToolDefinition> listTools(String toolName, Supplier<List<ToolSpecification>> probe, Runnable abort)
+            throws Exception {
+        long deadline = System.currentTimeMillis() + properties.getDeployReadyTimeout();
+        long backoff = properties.getDeployReadyInitialBackoff();
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            long start = System.nanoTime();
+            Future<List<ToolSpecification>> future = probeExecutor.submit(probe::get);
+            Throwable failure;
+            try {
+                List<ToolSpecification> specifications = future
+                        .get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                recordCall(start, true);
+                logger.info("MCP服务 {} 已就绪，第 {} 次探测成功", toolName, attempts);
+                return ToolSpecificationConverter.convert(specifications);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                abort.run();
+                recordCall(start, false);
+                logger.error("等待MCP服务 {} 就绪超时，第 {} 次探测未在截止时间前返回", toolName, attempts);
+                throw new BusinessException("等待MCP服务 " + toolName + " 就绪超时，获取工具列表无响应");
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                abort.run();
+                throw e;
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+            recordCall(start, false);
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                logger.error("等待MCP服务 {} 就绪超时，共探测 {} 次", toolName, attempts, failure);
+                throw new BusinessException("调用MCP Gateway API失败: " + failure.getMessage(), failure);
+            }
+            // 加入随机抖动，避免同时部署的多个服务在同一时刻探测网关
+            long wait = Math.min(remaining, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            logger.debug("MCP服务 {} 尚未就绪，{} 毫秒后重试: {}", toolName, wait, failure.getMessage());
+            Thread.sleep(wait);
+            backoff = Math.min(backoff * 2, properties.getDeployReadyMaxBackoff());
         }
     }
 
-    /** 创建配置了超时的HTTP客户端 */
+    private void recordCall(long start, boolean success) {
+        metrics.record(System.nanoTime() - start, success);
+        logger.debug("MCP Gateway 调用次数: {}，平均耗时: {} ms，错误率: {}", metrics.getCalls(),
+                String.format("%.1f", metrics.getAverageLatencyMillis()),
+                String.format("%.3f", metrics.getErrorRate()));
+    }
+
+    /** 创建配置了超时和连接池的HTTP客户端，后台回收过期和空闲的连接 */
     private CloseableHttpClient createHttpClient() {
         RequestConfig config = RequestConfig.custom().setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectTimeout())
                 .setSocketTimeout(properties.getReadTimeout()).build();
 
-        return HttpClients.custom().setDefaultRequestConfig(config).build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity(2000);
+
+        return HttpClients.custom().setDefaultRequestConfig(config).setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getIdleConnectionTimeout(), TimeUnit.SECONDS).build();
     }
 }
\ No newline at end of file
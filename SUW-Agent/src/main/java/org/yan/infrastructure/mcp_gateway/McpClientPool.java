@@ -0,0 +1,224 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.client.DefaultMcpClient;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.mcp.client.transport.McpTransport;
+import dev.langchain4j.mcp.client.transport.PresetParameter;
+import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yan.infrastructure.utils.JsonUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** MCP客户端池 按MCP服务名和预设参数指纹复用长连接，代替每轮对话新建连接；
+ * 同一服务的客户端共用一个隔离舱限制并发，后台定期做健康检查并回收长时间空闲的连接 */
+@Component
+public class McpClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpClientPool.class);
+
+    /** 单个MCP服务的最大并发调用数 */
+    private static final int MAX_CONCURRENT_CALLS = 8;
+
+    /** 单个MCP服务的最大排队调用数 */
+    private static final int MAX_QUEUED_CALLS = 16;
+
+    /** 连续超时多少次后暂停使用该服务 */
+    private static final int TIMEOUTS_TO_SUSPEND = 3;
+
+    /** 暂停使用的时长（毫秒） */
+    private static final long SUSPEND_MILLIS = 2 * 60 * 1000;
+
+    /** 空闲多久后回收（毫秒） */
+    private static final long IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+    /** 健康检查间隔（秒） */
+    private static final long HEALTH_CHECK_INTERVAL_SECONDS = 30;
+
+    /** 传输层超时，只作为兜底，单次工具调用的超时由调用方按工具定义控制 */
+    private static final Duration TRANSPORT_TIMEOUT = Duration.ofMinutes(10);
+
+    /** 客户端等待工具结果的时间，不小于工具可声明的超时上限，否则客户端默认的60秒会先于调用方的超时生效 */
+    private static final Duration TOOL_EXECUTION_TIMEOUT = Duration.ofMinutes(5);
+
+    private final MCPGatewayService mcpGatewayService;
+
+    /** 池键 -> 池化客户端 */
+    private final Map<String, PooledMcpClient> clients = new ConcurrentHashMap<>();
+
+    /** MCP服务名称 -> 隔离舱 */
+    private final Map<String, McpServerBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final McpClientPoolMetrics metrics = new McpClientPoolMetrics();
+
+    private ScheduledExecutorService scheduler;
+
+    public McpClientPool(MCPGatewayService mcpGatewayService) {
+        this.mcpGatewayService = mcpGatewayService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mcp-client-pool-thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintain, HEALTH_CHECK_INTERVAL_SECONDS,
+                HEALTH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        clients.values().forEach(PooledMcpClient::close);
+        clients.clear();
+    }
+
+    /** 获取MCP服务的池化客户端 只登记客户端，连接在首次调用时建立
+     *
+     * @param mcpServerName MCP服务名称
+     * @param presetParams 该服务的预设参数，工具名 -> 参数名 -> 参数值
+     * @return 池化客户端 */
+    public PooledMcpClient acquire(String mcpServerName, Map<String, Map<String, String>> presetParams) {
+        String key = mcpServerName + "#" + fingerprint(presetParams);
+        PooledMcpClient client = clients.get(key);
+        if (client != null) {
+            return client;
+        }
+        List<PresetParameter> presetParameters = toPresetParameters(presetParams);
+        McpServerBulkhead bulkhead = bulkheads.computeIfAbsent(mcpServerName, name -> new McpServerBulkhead(name,
+                MAX_CONCURRENT_CALLS, MAX_QUEUED_CALLS, TIMEOUTS_TO_SUSPEND, SUSPEND_MILLIS));
+        return register(key, mcpServerName, presetParameters, bulkhead);
+    }
+
+    /** 服务重新部署后断开该服务的已有连接并清除退避，下次使用时连接到新部署的服务
+     *
+     * @param mcpServerName MCP服务名称 */
+    public void reset(String mcpServerName) {
+        for (PooledMcpClient client : clients.values()) {
+            if (client.getMcpServerName().equals(mcpServerName)) {
+                client.close();
+                client.resetBackoff();
+            }
+        }
+    }
+
+    /** 通过池化客户端获取一次工具列表，用于部署后的就绪探测 重试节奏由调用方控制，探测前清除连接退避；
+     * 探测成功后连接留在池中，对话时直接复用
+     *
+     * @param mcpServerName MCP服务名称
+     * @return 工具规范列表 */
+    public List<ToolSpecification> probeTools(String mcpServerName) {
+        PooledMcpClient client = acquire(mcpServerName, null);
+        client.resetBackoff();
+        return client.listTools();
+    }
+
+    /** 获取池的运行指标 */
+    public McpClientPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** 当前登记的客户端数 */
+    public int size() {
+        return clients.size();
+    }
+
+    /** 登记客户端，客户端被回收后通过同一个键重新登记，持有旧客户端的调用方不会再建立游离于池外的连接 */
+    private PooledMcpClient register(String key, String mcpServerName, List<PresetParameter> presetParameters,
+            McpServerBulkhead bulkhead) {
+        return clients.computeIfAbsent(key, k -> new PooledMcpClient(k, mcpServerName,
+                () -> connect(mcpServerName, presetParameters), metrics, bulkhead,
+                () -> register(k, mcpServerName, presetParameters, bulkhead)));
+    }
+
+    /** 建立连接并完成初始化握手 */
+    private McpClient connect(String mcpServerName, List<PresetParameter> presetParameters) {
+        String sseUrl = mcpGatewayService.getSSEUrl(mcpServerName);
+        McpTransport transport = new HttpMcpTransport.Builder().sseUrl(sseUrl).logRequests(true).logResponses(true)
+                .timeout(TRANSPORT_TIMEOUT).build();
+        McpClient mcpClient = new DefaultMcpClient.Builder().transport(transport)
+                .toolExecutionTimeout(TOOL_EXECUTION_TIMEOUT).build();
+        if (!presetParameters.isEmpty()) {
+            mcpClient.presetParameters(presetParameters);
+        }
+        return mcpClient;
+    }
+
+    /** 健康检查、空闲回收和指标输出 */
+    private void maintain() {
+        try {
+            long idleBefore = System.currentTimeMillis() - IDLE_TIMEOUT_MILLIS;
+            int connected = 0;
+            int inFlight = 0;
+            for (PooledMcpClient client : clients.values()) {
+                if (client.getInFlight() == 0 && client.getLastUsedAt() < idleBefore) {
+                    clients.remove(client.getKey(), client);
+                    client.evict();
+                    metrics.recordEviction();
+                    continue;
+                }
+                if (!client.checkHealth()) {
+                    logger.warn("MCP服务 {} 健康检查失败，已断开连接，下次调用时重连", client.getMcpServerName());
+                }
+                connected += client.isConnected() ? 1 : 0;
+                inFlight += client.getInFlight();
+            }
+            long suspended = bulkheads.values().stream().filter(bulkhead -> !bulkhead.isAvailable()).count();
+            if (!clients.isEmpty()) {
+                logger.debug("MCP客户端池 客户端: {}，已连接: {}，调用中: {}/{}，暂停的服务: {}，平均握手耗时: {} ms，握手失败: {}，拒绝调用: {}，回收: {}",
+                        clients.size(), connected, inFlight, bulkheads.size() * MAX_CONCURRENT_CALLS, suspended,
+                        String.format("%.1f", metrics.getAverageHandshakeMillis()), metrics.getHandshakeFailures(),
+                        metrics.getRejectedCalls(), metrics.getEvictions());
+            }
+        } catch (Exception e) {
+            logger.error("MCP客户端池维护异常: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<PresetParameter> toPresetParameters(Map<String, Map<String, String>> presetParams) {
+        List<PresetParameter> presetParameters = new ArrayList<>();
+        if (presetParams != null) {
+            presetParams.forEach((toolName, params) -> presetParameters
+                    .add(new PresetParameter(toolName, JsonUtils.toJsonString(params))));
+        }
+        return presetParameters;
+    }
+
+    /** 计算预设参数的指纹，参数内容相同的Agent共用同一个客户端 */
+    private String fingerprint(Map<String, Map<String, String>> presetParams) {
+        if (presetParams == null || presetParams.isEmpty()) {
+            return "none";
+        }
+        Map<String, Map<String, String>> sorted = new TreeMap<>();
+        presetParams.forEach((toolName, params) -> sorted.put(toolName,
+                params != null ? new TreeMap<>(params) : new TreeMap<>()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(JsonUtils.toJsonString(sorted).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
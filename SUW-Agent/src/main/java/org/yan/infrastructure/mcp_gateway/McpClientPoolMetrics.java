@@ -0,0 +1,83 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** MCP客户端池指标 */
+public class McpClientPoolMetrics {
+
+    /** 握手成功次数 */
+    private final LongAdder handshakes = new LongAdder();
+
+    /** 握手总耗时（纳秒） */
+    private final LongAdder handshakeNanos = new LongAdder();
+
+    /** 握手失败次数 */
+    private final LongAdder handshakeFailures = new LongAdder();
+
+    /** 连接断开次数，包括健康检查失败、调用异常和空闲回收 */
+    private final LongAdder disconnects = new LongAdder();
+
+    /** 工具调用次数 */
+    private final LongAdder calls = new LongAdder();
+
+    /** 因并发已满被拒绝的调用次数 */
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    /** 空闲回收的客户端数 */
+    private final LongAdder evictions = new LongAdder();
+
+    void recordHandshake(long nanos) {
+        handshakes.increment();
+        handshakeNanos.add(nanos);
+    }
+
+    void recordHandshakeFailure() {
+        handshakeFailures.increment();
+    }
+
+    void recordDisconnect() {
+        disconnects.increment();
+    }
+
+    void recordCall() {
+        calls.increment();
+    }
+
+    void recordRejectedCall() {
+        rejectedCalls.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    public long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    /** 平均握手耗时（毫秒） */
+    public double getAverageHandshakeMillis() {
+        long count = handshakes.sum();
+        return count == 0 ? 0 : handshakeNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public long getHandshakeFailures() {
+        return handshakeFailures.sum();
+    }
+
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
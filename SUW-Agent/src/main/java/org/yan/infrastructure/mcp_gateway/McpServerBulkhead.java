@@ -0,0 +1,140 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** MCP服务隔离舱 同一个MCP服务的所有客户端共用，限制并发调用数和排队数；
+ * 超出并发上限的调用在本服务的队列中排队，排队期间不占用共享线程池的线程，排队已满时直接拒绝，
+ * 单个服务挂起时最多占用与其并发上限相同的线程数；连续多次调用超时的服务在冷却期内暂停使用，不再提供给模型 */
+public class McpServerBulkhead {
+
+    private final String mcpServerName;
+
+    private final int maxConcurrentCalls;
+
+    private final int maxQueuedCalls;
+
+    private final int timeoutsToSuspend;
+
+    private final long suspendMillis;
+
+    /** 已交给线程池的调用数，包括在线程池队列中等待和正在执行的 */
+    private int running;
+
+    /** 等待名额的调用 */
+    private final Deque<FutureTask<?>> waiting = new ArrayDeque<>();
+
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+
+    /** 暂停使用的截止时间 */
+    private volatile long suspendedUntil;
+
+    McpServerBulkhead(String mcpServerName, int maxConcurrentCalls, int maxQueuedCalls, int timeoutsToSuspend,
+            long suspendMillis) {
+        this.mcpServerName = mcpServerName;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.timeoutsToSuspend = timeoutsToSuspend;
+        this.suspendMillis = suspendMillis;
+    }
+
+    /** 提交调用 有空闲名额时交给线程池执行，否则在本服务的队列中排队，名额释放时再交给线程池
+     *
+     * @param call 调用任务，排队期间被取消的任务不再执行
+     * @param executor 共享的工具调用线程池
+     * @return 是否已接受，排队已满或线程池拒绝时返回false */
+    boolean submit(FutureTask<?> call, Executor executor) {
+        synchronized (this) {
+            if (running >= maxConcurrentCalls) {
+                if (waiting.size() >= maxQueuedCalls) {
+                    // 调用方放弃等待的任务仍留在队列中，先清理再判断
+                    waiting.removeIf(Future::isDone);
+                }
+                if (waiting.size() >= maxQueuedCalls) {
+                    return false;
+                }
+                waiting.add(call);
+                return true;
+            }
+            running++;
+        }
+        try {
+            executor.execute(() -> run(call, executor));
+            return true;
+        } catch (RejectedExecutionException e) {
+            release(executor);
+            return false;
+        }
+    }
+
+    private void run(FutureTask<?> call, Executor executor) {
+        try {
+            call.run();
+        } finally {
+            release(executor);
+        }
+    }
+
+    /** 释放名额，队列中有等待的调用时把名额直接交给它；线程池拒绝时取消该调用，由调用方按拒绝处理 */
+    private void release(Executor executor) {
+        while (true) {
+            FutureTask<?> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            if (next.isDone()) {
+                continue;
+            }
+            try {
+                FutureTask<?> call = next;
+                executor.execute(() -> run(call, executor));
+                return;
+            } catch (RejectedExecutionException e) {
+                next.cancel(false);
+            }
+        }
+    }
+
+    /** 记录一次成功调用，清零连续超时次数 */
+    public void recordSuccess() {
+        consecutiveTimeouts.set(0);
+    }
+
+    /** 记录一次调用超时，连续超时达到阈值时暂停使用该服务
+     *
+     * @return 本次是否触发了暂停 */
+    public boolean recordTimeout() {
+        if (consecutiveTimeouts.incrementAndGet() < timeoutsToSuspend) {
+            return false;
+        }
+        consecutiveTimeouts.set(0);
+        suspendedUntil = System.currentTimeMillis() + suspendMillis;
+        return true;
+    }
+
+    /** 服务是否可用，暂停期内返回false */
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= suspendedUntil;
+    }
+
+    public String getMcpServerName() {
+        return mcpServerName;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,148 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.springframework.stereotype.Component;
+import org.yan.domain.tool.constant.ToolResultCacheScope;
+import org.yan.domain.tool.model.config.ToolResultCacheConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** MCP工具结果缓存 只缓存工具作者声明为可缓存的幂等工具，按服务、预设参数指纹、工具名和规范化后的参数复用结果，
+ * 按配置的范围在用户内或全局共享；容量有上限，超出时淘汰最久未使用的结果 */
+@Component
+public class McpToolResultCache {
+
+    /** 最多缓存的结果数 */
+    private static final int MAX_ENTRIES = 2000;
+
+    /** 超过该长度的结果不缓存 */
+    private static final int MAX_RESULT_LENGTH = 64 * 1024;
+
+    /** 参数规范化用，对象键按字典序输出 */
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final Map<String, CachedResult> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /** 查找缓存的工具结果
+     *
+     * @param client 池化客户端，池键包含服务名和预设参数指纹
+     * @param request 工具调用请求
+     * @param config 工具的缓存配置
+     * @param userId 调用者，按用户隔离时参与缓存键
+     * @return 缓存的结果，未命中或已过期时返回null */
+    public String get(PooledMcpClient client, ToolExecutionRequest request, ToolResultCacheConfig config,
+            String userId) {
+        String key = cacheKey(client, request, config, userId);
+        synchronized (cache) {
+            CachedResult cached = cache.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                return cached.result;
+            }
+            if (cached != null) {
+                cache.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** 缓存工具结果
+     *
+     * @param client 池化客户端
+     * @param request 工具调用请求
+     * @param config 工具的缓存配置
+     * @param userId 调用者
+     * @param result 工具返回结果 */
+    public void put(PooledMcpClient client, ToolExecutionRequest request, ToolResultCacheConfig config,
+            String userId, String result) {
+        if (result == null || result.length() > MAX_RESULT_LENGTH || config.getTtlSeconds() == null
+                || config.getTtlSeconds() <= 0) {
+            return;
+        }
+        String key = cacheKey(client, request, config, userId);
+        long expiresAt = System.currentTimeMillis() + config.getTtlSeconds() * 1000L;
+        synchronized (cache) {
+            cache.put(key, new CachedResult(result, expiresAt));
+        }
+    }
+
+    /** 使MCP服务的缓存结果失效，服务重新部署后调用
+     *
+     * @param mcpServerName MCP服务名称 */
+    public void invalidate(String mcpServerName) {
+        String prefix = mcpServerName + "#";
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private String cacheKey(PooledMcpClient client, ToolExecutionRequest request, ToolResultCacheConfig config,
+            String userId) {
+        String owner = config.getScope() == ToolResultCacheScope.GLOBAL ? "*" : userId;
+        return client.getKey() + "|" + request.name() + "|" + owner + "|" + hash(canonicalArguments(request));
+    }
+
+    /** 规范化参数JSON，键顺序和空白不同的等价参数得到相同结果 */
+    private String canonicalArguments(ToolExecutionRequest request) {
+        String arguments = request.arguments();
+        if (arguments == null || arguments.isBlank()) {
+            return "{}";
+        }
+        try {
+            Object parsed = CANONICAL_MAPPER.readValue(arguments, Object.class);
+            return CANONICAL_MAPPER.writeValueAsString(parsed);
+        } catch (Exception e) {
+            // 参数不是合法JSON时按原文比较
+            return arguments;
+        }
+    }
+
+    private String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 缓存的工具结果 */
+    private static final class CachedResult {
+
+        private final String result;
+
+        private final long expiresAt;
+
+        CachedResult(String result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yan.domain.tool.model.config.ToolDefinition;
+import org.yan.domain.tool.model.config.ToolSpecificationConverter;
+import org.yan.infrastructure.utils.JsonUtils;
+import org.yan.infrastructure.utils.TokenCountUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** MCP工具规范缓存 按池化客户端缓存已编译好的ToolSpecification，首次使用时用发布时记录的工具定义预热，
+ * 不等待MCP服务返回工具列表；过期后先返回旧值，再在后台刷新。工具重新部署时由部署流程使对应服务的缓存失效。
+ * 缓存的是服务提供的全部工具，用户禁用的工具在读取时按各自的工具定义过滤；容量有上限，超出时淘汰最久未使用的服务 */
+@Component
+public class McpToolSpecificationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpToolSpecificationCache.class);
+
+    /** 缓存有效期（毫秒） */
+    private static final long TTL_MILLIS = 10 * 60 * 1000;
+
+    /** 最多缓存的池键数 */
+    private static final int MAX_ENTRIES = 1000;
+
+    /** 池键 -> 缓存的工具规范 */
+    private final Map<String, CachedTools> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTools> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private ExecutorService refreshExecutor;
+
+    @PostConstruct
+    public void init() {
+        this.refreshExecutor = new ThreadPoolExecutor(1, 4, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(256),
+                r -> {
+                    Thread t = new Thread(r, "mcp-tool-spec-refresh-thread");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /** 获取MCP服务的工具规范 有缓存时直接返回，过期时后台刷新；没有缓存时优先用发布时的工具定义预热，
+     * 无法预热时才同步请求MCP服务
+     *
+     * @param client 池化客户端
+     * @param seed 发布时记录的工具定义，可为空，其中禁用的工具不返回
+     * @return 工具规范列表 */
+    public List<ToolSpecification> getTools(PooledMcpClient client, List<ToolDefinition> seed) {
+        CachedTools cached = load(client, seed);
+        Set<String> disabled = disabledNames(seed);
+        if (disabled.isEmpty()) {
+            return cached.specifications;
+        }
+        List<ToolSpecification> enabled = new ArrayList<>(cached.specifications.size());
+        for (ToolSpecification specification : cached.specifications) {
+            if (!disabled.contains(specification.name())) {
+                enabled.add(specification);
+            }
+        }
+        return enabled;
+    }
+
+    /** 估算MCP服务的工具规范发送给模型时占用的Token数 与 {@link #getTools} 取同一份规范，结果随缓存一起保存
+     *
+     * @param client 池化客户端
+     * @param seed 发布时记录的工具定义，可为空，其中禁用的工具不计入
+     * @return 估算的Token数 */
+    public int getToolTokens(PooledMcpClient client, List<ToolDefinition> seed) {
+        CachedTools cached = load(client, seed);
+        Set<String> disabled = disabledNames(seed);
+        int tokens = 0;
+        for (int i = 0; i < cached.specifications.size(); i++) {
+            if (!disabled.contains(cached.specifications.get(i).name())) {
+                tokens += cached.tokens[i];
+            }
+        }
+        return tokens;
+    }
+
+    private CachedTools load(PooledMcpClient client, List<ToolDefinition> seed) {
+        CachedTools cached;
+        synchronized (cache) {
+            cached = cache.get(client.getKey());
+        }
+        if (cached != null) {
+            if (cached.isExpired()) {
+                refreshAsync(client, cached);
+            }
+            return cached;
+        }
+
+        List<ToolSpecification> seeded = ToolSpecificationConverter.toSpecifications(seed);
+        if (seeded != null) {
+            // 预热的数据来自发布时的快照，标记为已过期，首次使用后在后台与MCP服务核对
+            CachedTools seededTools = new CachedTools(seeded, 0);
+            synchronized (cache) {
+                cached = cache.putIfAbsent(client.getKey(), seededTools);
+            }
+            if (cached == null) {
+                refreshAsync(client, seededTools);
+                return seededTools;
+            }
+            return cached;
+        }
+
+        CachedTools loaded = new CachedTools(client.listTools(), System.currentTimeMillis());
+        synchronized (cache) {
+            cache.put(client.getKey(), loaded);
+        }
+        return loaded;
+    }
+
+    /** 工具定义中被禁用的工具名 */
+    private Set<String> disabledNames(List<ToolDefinition> seed) {
+        Set<String> disabled = new HashSet<>();
+        if (seed != null) {
+            for (ToolDefinition definition : seed) {
+                if (Boolean.FALSE.equals(definition.getEnabled())) {
+                    disabled.add(definition.getName());
+                }
+            }
+        }
+        return disabled;
+    }
+
+    /** 使MCP服务的缓存失效，服务重新部署后调用
+     *
+     * @param mcpServerName MCP服务名称 */
+    public void invalidate(String mcpServerName) {
+        String prefix = mcpServerName + "#";
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    private void refreshAsync(PooledMcpClient client, CachedTools cached) {
+        if (!cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    List<ToolSpecification> loaded = client.listTools();
+                    CachedTools refreshed = new CachedTools(loaded, System.currentTimeMillis());
+                    synchronized (cache) {
+                        cache.replace(client.getKey(), cached, refreshed);
+                    }
+                } catch (Exception e) {
+                    logger.warn("刷新MCP服务 {} 的工具列表失败，继续使用缓存: {}", client.getMcpServerName(), e.getMessage());
+                } finally {
+                    cached.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cached.refreshing.set(false);
+        }
+    }
+
+    /** 缓存的工具规范 */
+    private static final class CachedTools {
+
+        private final List<ToolSpecification> specifications;
+
+        /** 每个工具规范的估算Token数，按发送给模型的名称、描述和参数估算，与specifications一一对应 */
+        private final int[] tokens;
+
+        private final long loadedAt;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedTools(List<ToolSpecification> specifications, long loadedAt) {
+            this.specifications = List.copyOf(specifications);
+            this.tokens = new int[this.specifications.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                List<ToolDefinition> definition = ToolSpecificationConverter.convert(List.of(specifications.get(i)));
+                tokens[i] = definition.isEmpty() ? 0
+                        : TokenCountUtils.estimateMessage(JsonUtils.toJsonString(definition.get(0)));
+            }
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - loadedAt > TTL_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.yan.infrastructure.mcp_gateway;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.client.McpClient;
+import org.yan.infrastructure.exception.BusinessException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/** 池化的MCP客户端 同一个MCP服务和预设参数共用一个长连接，连接在首次使用时建立，失败后按指数退避重连；
+ * 调用通过所属服务的隔离舱提交，避免单个服务被同时打满或占满共享线程池；被池回收后不再重连，后续调用转交给池中当前的客户端 */
+public class PooledMcpClient {
+
+    /** 首次重连的等待时间（毫秒） */
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+    /** 重连等待时间上限（毫秒） */
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    private final String key;
+
+    private final String mcpServerName;
+
+    private final Supplier<McpClient> connector;
+
+    private final McpClientPoolMetrics metrics;
+
+    private final McpServerBulkhead bulkhead;
+
+    /** 被回收后获取池中当前客户端 */
+    private final Supplier<PooledMcpClient> successor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile McpClient client;
+
+    private volatile long lastUsedAt = System.currentTimeMillis();
+
+    /** 是否已被池回收 */
+    private volatile boolean evicted;
+
+    /** 连续连接失败次数 */
+    private int failures;
+
+    /** 下次允许重连的时间 */
+    private long nextConnectAt;
+
+    PooledMcpClient(String key, String mcpServerName, Supplier<McpClient> connector, McpClientPoolMetrics metrics,
+            McpServerBulkhead bulkhead, Supplier<PooledMcpClient> successor) {
+        this.key = key;
+        this.mcpServerName = mcpServerName;
+        this.connector = connector;
+        this.metrics = metrics;
+        this.bulkhead = bulkhead;
+        this.successor = successor;
+    }
+
+    /** 获取工具列表
+     *
+     * @return 工具规范列表 */
+    public List<ToolSpecification> listTools() {
+        McpClient current = connected();
+        if (current == null) {
+            return successor.get().listTools();
+        }
+        try {
+            return current.listTools();
+        } catch (RuntimeException e) {
+            invalidateOnTransportError(current, e);
+            throw e;
+        }
+    }
+
+    /** 提交工具调用 按所属服务的隔离舱限制并发，超出上限时在该服务的队列中排队，排队期间不占用线程池的线程
+     *
+     * @param call 调用任务，任务中通过 {@link #executeTool} 请求MCP服务
+     * @param executor 共享的工具调用线程池
+     * @return 是否已接受，排队已满或线程池已满时返回false */
+    public boolean submit(FutureTask<?> call, Executor executor) {
+        if (bulkhead.submit(call, executor)) {
+            return true;
+        }
+        metrics.recordRejectedCall();
+        return false;
+    }
+
+    /** 调用工具 并发名额在提交时通过 {@link #submit} 占用
+     *
+     * @param request 工具调用请求
+     * @return 工具返回结果 */
+    public String executeTool(ToolExecutionRequest request) {
+        if (evicted) {
+            return successor.get().executeTool(request);
+        }
+        inFlight.incrementAndGet();
+        metrics.recordCall();
+        try {
+            McpClient current = connected();
+            if (current != null) {
+                try {
+                    return current.executeTool(request);
+                } catch (RuntimeException e) {
+                    invalidateOnTransportError(current, e);
+                    throw e;
+                }
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            lastUsedAt = System.currentTimeMillis();
+        }
+        // 排队期间被回收，转交给池中当前的客户端
+        return successor.get().executeTool(request);
+    }
+
+    /** 健康检查 空闲时才检查，失败时断开连接，下次使用时重连
+     *
+     * @return 连接是否健康，未连接时返回true */
+    public boolean checkHealth() {
+        McpClient current = client;
+        if (current == null || inFlight.get() > 0) {
+            return true;
+        }
+        try {
+            current.checkHealth();
+            return true;
+        } catch (Exception e) {
+            invalidate(current);
+            return false;
+        }
+    }
+
+    /** 清除连接退避，下次使用时立即尝试连接 */
+    void resetBackoff() {
+        synchronized (this) {
+            failures = 0;
+            nextConnectAt = 0;
+        }
+    }
+
+    /** 回收 标记后不再建立新连接，再关闭当前连接 */
+    void evict() {
+        synchronized (this) {
+            evicted = true;
+        }
+        close();
+    }
+
+    /** 关闭连接 */
+    public void close() {
+        McpClient current = client;
+        if (current != null) {
+            invalidate(current);
+        }
+    }
+
+    /** 获取已建立的连接，未连接时建立连接，处于退避期时直接失败
+     *
+     * @return 连接，已被回收时返回null */
+    private McpClient connected() {
+        McpClient current = client;
+        if (current != null) {
+            lastUsedAt = System.currentTimeMillis();
+            return current;
+        }
+        synchronized (this) {
+            if (evicted) {
+                return null;
+            }
+            if (client != null) {
+                return client;
+            }
+            long now = System.currentTimeMillis();
+            if (now < nextConnectAt) {
+                throw new BusinessException("MCP服务 " + mcpServerName + " 暂不可用，将在 " + (nextConnectAt - now)
+                        + " 毫秒后重试连接");
+            }
+            long start = System.nanoTime();
+            try {
+                client = connector.get();
+                metrics.recordHandshake(System.nanoTime() - start);
+                failures = 0;
+                lastUsedAt = System.currentTimeMillis();
+                return client;
+            } catch (RuntimeException e) {
+                metrics.recordHandshakeFailure();
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failures, 16));
+                failures++;
+                // 加入随机抖动，避免多个请求在同一时刻重连
+                nextConnectAt = now + backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                throw new BusinessException("连接MCP服务 " + mcpServerName + " 失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** 只有传输层异常才断开连接，工具自身报错、协议错误和中断不影响连接复用 */
+    private void invalidateOnTransportError(McpClient current, RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                invalidate(current);
+                return;
+            }
+        }
+    }
+
+    private void invalidate(McpClient current) {
+        synchronized (this) {
+            if (client != current) {
+                return;
+            }
+            client = null;
+        }
+        try {
+            current.close();
+        } catch (Exception ignored) {
+            // 连接已不可用，关闭失败无需处理
+        }
+        metrics.recordDisconnect();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getMcpServerName() {
+        return mcpServerName;
+    }
+
+    public boolean isConnected() {
+        return client != null;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public McpServerBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+}
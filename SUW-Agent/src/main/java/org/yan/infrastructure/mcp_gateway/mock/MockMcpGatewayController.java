@@ -0,0 +1,202 @@
+package org.yan.infrastructure.mcp_gateway.mock;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.yan.infrastructure.config.MockMcpGatewayProperties;
+import org.yan.infrastructure.utils.JsonUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** MCP网关替身 仅在mcp-mock环境启用，在本进程内模拟网关的部署接口和MCP服务的SSE传输，
+ * 支持initialize、ping、tools/list和tools/call，工具调用的延迟、失败率和结果大小可配置，
+ * 用于在单机上对工具相关的对话流程做集成测试和压测 */
+@RestController
+@Profile("mcp-mock")
+@RequestMapping("/mcp-mock")
+public class MockMcpGatewayController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockMcpGatewayController.class);
+
+    private static final String PROTOCOL_VERSION = "2024-11-05";
+
+    private final MockMcpGatewayProperties properties;
+
+    /** 会话ID -> SSE连接 */
+    private final Map<String, SseEmitter> sessions = new ConcurrentHashMap<>();
+
+    /** 模拟工具调用延迟，不占用请求线程 */
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+        Thread t = new Thread(r, "mcp-mock-gateway-thread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MockMcpGatewayController(MockMcpGatewayProperties properties) {
+        this.properties = properties;
+        logger.warn("MCP网关替身已启用，所有工具调用都由本进程模拟");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        sessions.values().forEach(SseEmitter::complete);
+        sessions.clear();
+    }
+
+    /** 部署接口 */
+    @PostMapping("/deploy")
+    public ResponseEntity<Map<String, Object>> deploy(@RequestBody String installCommand)
+            throws InterruptedException {
+        Thread.sleep(properties.getDeployLatencyMillis());
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (ThreadLocalRandom.current().nextDouble() < properties.getDeployFailureRate()) {
+            result.put("status", "error");
+            result.put("message", "模拟部署失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+        result.put("status", "success");
+        return ResponseEntity.ok(result);
+    }
+
+    /** 建立MCP服务的SSE连接，首个事件告知客户端发送消息的地址 */
+    @GetMapping(value = "/{mcpServerName}/sse/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter connect(@PathVariable String mcpServerName) throws IOException {
+        SseEmitter emitter = new SseEmitter(0L);
+        String sessionId = UUID.randomUUID().toString();
+        sessions.put(sessionId, emitter);
+        emitter.onCompletion(() -> sessions.remove(sessionId));
+        emitter.onTimeout(() -> sessions.remove(sessionId));
+        emitter.onError(e -> sessions.remove(sessionId));
+
+        String endpoint = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/mcp-mock/{mcpServerName}/message").queryParam("sessionId", sessionId)
+                .buildAndExpand(mcpServerName).toUriString();
+        emitter.send(SseEmitter.event().name("endpoint").data(endpoint));
+        return emitter;
+    }
+
+    /** 接收JSON-RPC消息，响应通过SSE连接返回 */
+    @PostMapping("/{mcpServerName}/message")
+    public ResponseEntity<Void> message(@PathVariable String mcpServerName, @RequestParam String sessionId,
+            @RequestBody Map<String, Object> message) {
+        SseEmitter emitter = sessions.get(sessionId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Object id = message.get("id");
+        String method = (String) message.get("method");
+        if (id == null) {
+            // 通知消息无需响应
+            return ResponseEntity.accepted().build();
+        }
+        switch (method != null ? method : "") {
+            case "initialize" -> reply(sessionId, emitter, id, initializeResult(mcpServerName));
+            case "ping" -> reply(sessionId, emitter, id, Map.of());
+            case "tools/list" -> reply(sessionId, emitter, id, Map.of("tools", fakeTools(mcpServerName)));
+            case "tools/call" -> scheduler.schedule(() -> reply(sessionId, emitter, id,
+                    callTool(mcpServerName, message)), toolLatency(), TimeUnit.MILLISECONDS);
+            default -> {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("code", -32601);
+                error.put("message", "Method not found: " + method);
+                send(sessionId, emitter, response(id, "error", error));
+            }
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    private Map<String, Object> initializeResult(String mcpServerName) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("protocolVersion", PROTOCOL_VERSION);
+        result.put("capabilities", Map.of("tools", Map.of()));
+        result.put("serverInfo", Map.of("name", mcpServerName, "version", "mock"));
+        return result;
+    }
+
+    private List<Map<String, Object>> fakeTools(String mcpServerName) {
+        List<Map<String, Object>> tools = new ArrayList<>();
+        for (int i = 1; i <= properties.getToolCount(); i++) {
+            Map<String, Object> input = new LinkedHashMap<>();
+            input.put("type", "string");
+            input.put("description", "任意输入，原样返回");
+            Map<String, Object> inputSchema = new LinkedHashMap<>();
+            inputSchema.put("type", "object");
+            inputSchema.put("properties", Map.of("input", input));
+            inputSchema.put("required", List.of("input"));
+
+            Map<String, Object> tool = new LinkedHashMap<>();
+            tool.put("name", "mock_tool_" + i);
+            tool.put("description", mcpServerName + " 的模拟工具 " + i);
+            tool.put("inputSchema", inputSchema);
+            tools.add(tool);
+        }
+        return tools;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> callTool(String mcpServerName, Map<String, Object> message) {
+        Map<String, Object> params = (Map<String, Object>) message.getOrDefault("params", Map.of());
+        boolean failed = ThreadLocalRandom.current().nextDouble() < properties.getFailureRate();
+        String text = failed
+                ? "模拟工具调用失败"
+                : mcpServerName + "/" + params.get("name") + " " + JsonUtils.toJsonString(params.get("arguments"))
+                        + "x".repeat(Math.max(0, properties.getResultPaddingChars()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("content", List.of(Map.of("type", "text", "text", text)));
+        result.put("isError", failed);
+        return result;
+    }
+
+    private long toolLatency() {
+        long jitter = properties.getLatencyJitterMillis();
+        return properties.getLatencyMillis() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    private void reply(String sessionId, SseEmitter emitter, Object id, Object result) {
+        send(sessionId, emitter, response(id, "result", result));
+    }
+
+    private Map<String, Object> response(Object id, String key, Object value) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put(key, value);
+        return response;
+    }
+
+    private void send(String sessionId, SseEmitter emitter, Map<String, Object> response) {
+        try {
+            // 同一连接上的事件不能并发写入
+            synchronized (emitter) {
+                emitter.send(SseEmitter.event().name("message").data(JsonUtils.toJsonString(response)));
+            }
+        } catch (Exception e) {
+            sessions.remove(sessionId);
+            emitter.completeWithError(e);
+        }
+    }
+}
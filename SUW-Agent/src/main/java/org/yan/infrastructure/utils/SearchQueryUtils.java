@@ -0,0 +1,44 @@
+package org.yan.infrastructure.utils;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** 全文搜索工具类 把用户输入的关键词转换为PostgreSQL的tsquery，每个词按前缀匹配 */
+public class SearchQueryUtils {
+
+    /** 参与匹配的词，只保留字母、数字和下划线，tsquery的运算符不会进入查询 */
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("[\\p{L}\\p{N}_]+");
+
+    /** 最多参与匹配的词数 */
+    private static final int MAX_TOKENS = 8;
+
+    /** 关键词最大长度 */
+    private static final int MAX_KEYWORD_LENGTH = 100;
+
+    /** 规范化关键词，去掉首尾空白并截断，为空时返回null */
+    public static String normalizeKeyword(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = keyword.trim();
+        return trimmed.length() > MAX_KEYWORD_LENGTH ? trimmed.substring(0, MAX_KEYWORD_LENGTH) : trimmed;
+    }
+
+    /** 转换为前缀匹配的tsquery，例如 "web search" 转换为 "web:* & search:*"
+     *
+     * @param keyword 关键词
+     * @return tsquery表达式，没有可用的词时返回null */
+    public static String toPrefixTsQuery(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(keyword.toLowerCase());
+        while (matcher.find() && tokens.size() < MAX_TOKENS) {
+            tokens.add(matcher.group() + ":*");
+        }
+        return tokens.isEmpty() ? null : String.join(" & ", tokens);
+    }
+}
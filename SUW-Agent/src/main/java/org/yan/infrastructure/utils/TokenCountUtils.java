@@ -0,0 +1,65 @@
+package org.yan.infrastructure.utils;
+
+/** Token估算工具类 不依赖具体模型的分词器，按字符类型近似估算，用于调用模型前的预算规划 */
+public class TokenCountUtils {
+
+    /** 每条消息的固定开销（角色、分隔符等） */
+    public static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /** 每张图片的估算Token数 */
+    public static final int IMAGE_TOKENS = 765;
+
+    /** 估算文本的Token数 中日韩字符约每字1个Token，其他字符约每4个字符1个Token
+     *
+     * @param text 文本
+     * @return 估算的Token数 */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                wide++;
+            } else {
+                narrow++;
+            }
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    /** 保留文本末尾不超过指定Token数的部分，估算方式与 {@link #estimate(String)} 一致
+     *
+     * @param text 文本
+     * @param maxTokens 最大Token数
+     * @return 截取后的文本，一个字符都放不下时返回null */
+    public static String keepTail(String text, int maxTokens) {
+        if (text == null) {
+            return null;
+        }
+        int start = text.length();
+        int wide = 0;
+        int narrow = 0;
+        while (start > 0) {
+            boolean isWide = text.charAt(start - 1) >= 0x2E80;
+            int nextWide = isWide ? wide + 1 : wide;
+            int nextNarrow = isWide ? narrow : narrow + 1;
+            if (nextWide + (nextNarrow + 3) / 4 > maxTokens) {
+                break;
+            }
+            wide = nextWide;
+            narrow = nextNarrow;
+            start--;
+        }
+        return start < text.length() ? text.substring(start) : null;
+    }
+
+    /** 估算一条消息的Token数，包含消息的固定开销
+     *
+     * @param text 消息文本
+     * @return 估算的Token数 */
+    public static int estimateMessage(String text) {
+        return estimate(text) + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
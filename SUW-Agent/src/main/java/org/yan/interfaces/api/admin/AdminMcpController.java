@@ -0,0 +1,27 @@
+package org.yan.interfaces.api.admin;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.yan.application.admin.mcp.dto.McpMetricsDTO;
+import org.yan.application.admin.mcp.service.AdminMcpAppService;
+import org.yan.interfaces.api.common.Result;
+
+/** 管理员MCP运行状态 */
+@RestController
+@RequestMapping("/admin/mcp")
+public class AdminMcpController {
+
+    private final AdminMcpAppService adminMcpAppService;
+
+    public AdminMcpController(AdminMcpAppService adminMcpAppService) {
+        this.adminMcpAppService = adminMcpAppService;
+    }
+
+    /** 获取MCP客户端池和网关调用的运行指标
+     * @return 指标快照 */
+    @GetMapping("/metrics")
+    public Result<McpMetricsDTO> getMetrics() {
+        return Result.success(adminMcpAppService.getMetrics());
+    }
+}
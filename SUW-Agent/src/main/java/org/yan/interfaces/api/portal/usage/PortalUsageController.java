@@ -0,0 +1,31 @@
+package org.yan.interfaces.api.portal.usage;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.yan.application.usage.dto.TokenUsageSummaryDTO;
+import org.yan.application.usage.service.UsageAppService;
+import org.yan.infrastructure.auth.UserContext;
+import org.yan.interfaces.api.common.Result;
+import org.yan.interfaces.dto.usage.request.QueryUsageRequest;
+
+/** 用量统计 */
+@RestController
+@RequestMapping("/usage")
+public class PortalUsageController {
+
+    private final UsageAppService usageAppService;
+
+    public PortalUsageController(UsageAppService usageAppService) {
+        this.usageAppService = usageAppService;
+    }
+
+    /** 获取当前用户的Token用量统计
+     * @param queryUsageRequest 查询条件，支持按Agent、模型和时间范围过滤
+     * @return 用量统计 */
+    @GetMapping("/tokens")
+    public Result<TokenUsageSummaryDTO> getTokenUsage(QueryUsageRequest queryUsageRequest) {
+        String userId = UserContext.getCurrentUserId();
+        return Result.success(usageAppService.getTokenUsage(userId, queryUsageRequest));
+    }
+}
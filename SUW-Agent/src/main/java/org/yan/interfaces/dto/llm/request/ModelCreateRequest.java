@@ -20,6 +20,9 @@ public class ModelCreateRequest {
     /** 模型描述 */
     private String description;
 
+    /** 上下文窗口（Token数），为空时按模型ID匹配常见模型系列 */
+    private Integer contextWindow;
+
     /** 模型类型 */
     private ModelType type;
 
@@ -63,4 +66,11 @@ public class ModelCreateRequest {
         this.type = type;
     }
 
-}
\ No newline at end of file
+    public Integer getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(Integer contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+}
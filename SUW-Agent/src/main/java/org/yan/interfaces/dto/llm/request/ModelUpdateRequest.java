@@ -19,6 +19,9 @@ public class ModelUpdateRequest {
     /** 模型描述 */
     private String description;
 
+    /** 上下文窗口（Token数），为空时按模型ID匹配常见模型系列 */
+    private Integer contextWindow;
+
     /** 模型状态 */
     public String getId() {
         return id;
@@ -51,4 +54,12 @@ public class ModelUpdateRequest {
     public void setModelId(String modelId) {
         this.modelId = modelId;
     }
-}
\ No newline at end of file
+
+    public Integer getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(Integer contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+}
@@ -6,6 +6,9 @@ public class QueryToolRequest extends Page {
 
     private String toolName;
 
+    /** 上一页最后一条记录的ID，传入时从该记录之后继续查询，不再按页码跳过 */
+    private String lastId;
+
     public String getToolName() {
         return toolName;
     }
@@ -13,4 +16,12 @@ public class QueryToolRequest extends Page {
     public void setToolName(String toolName) {
         this.toolName = toolName;
     }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(String lastId) {
+        this.lastId = lastId;
+    }
 }
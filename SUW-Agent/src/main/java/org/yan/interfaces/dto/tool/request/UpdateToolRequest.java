@@ -3,6 +3,7 @@ package org.yan.interfaces.dto.tool.request;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import org.yan.domain.tool.model.config.ToolResultCacheConfig;
 
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,15 @@ public class UpdateToolRequest {
     @NotNull(message = "安装命令不可为空")
     private Map<String, Object> installCommand;
 
+    /** 工具结果缓存配置，工具名 -> 缓存配置，配置为空表示关闭缓存；不传时保持原配置 */
+    private Map<String, ToolResultCacheConfig> resultCaches;
+
+    /** 工具调用超时时间（秒），工具名 -> 超时时间，值为空表示使用默认值；不传时保持原配置 */
+    private Map<String, Integer> toolTimeouts;
+
+    /** 工具输出长度上限（字符），工具名 -> 长度上限，值为空表示使用默认值；不传时保持原配置 */
+    private Map<String, Integer> outputLimits;
+
     // 构造方法
     public UpdateToolRequest() {
     }
@@ -98,4 +108,28 @@ public class UpdateToolRequest {
     public void setUploadUrl(String uploadUrl) {
         this.uploadUrl = uploadUrl;
     }
-}
\ No newline at end of file
+
+    public Map<String, ToolResultCacheConfig> getResultCaches() {
+        return resultCaches;
+    }
+
+    public void setResultCaches(Map<String, ToolResultCacheConfig> resultCaches) {
+        this.resultCaches = resultCaches;
+    }
+
+    public Map<String, Integer> getToolTimeouts() {
+        return toolTimeouts;
+    }
+
+    public void setToolTimeouts(Map<String, Integer> toolTimeouts) {
+        this.toolTimeouts = toolTimeouts;
+    }
+
+    public Map<String, Integer> getOutputLimits() {
+        return outputLimits;
+    }
+
+    public void setOutputLimits(Map<String, Integer> outputLimits) {
+        this.outputLimits = outputLimits;
+    }
+}
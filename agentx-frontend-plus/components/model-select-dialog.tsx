@@ -324,7 +324,7 @@ export function ModelSelectDialog({
             <DialogTitle className="sr-only">Token策略设置</DialogTitle>
             <div>
               <h3 className="mb-4 font-medium">策略选择</h3>
-              <div className="grid grid-cols-1 md:grid-cols-3 gap-4">
+              <div className="grid grid-cols-1 md:grid-cols-2 lg:grid-cols-4 gap-4">
                 <div
                   className={`border rounded-lg p-4 cursor-pointer ${strategyType === "NONE" ? "bg-blue-50 border-blue-500" : ""}`}
                   onClick={() => setStrategyType("NONE")}
@@ -363,6 +363,19 @@ export function ModelSelectDialog({
                   </div>
                   <p className="text-sm text-muted-foreground">将旧消息转换为摘要，保留关键信息</p>
                 </div>
+
+                <div
+                  className={`border rounded-lg p-4 cursor-pointer ${strategyType === "RELEVANCE" ? "bg-blue-50 border-blue-500" : ""}`}
+                  onClick={() => setStrategyType("RELEVANCE")}
+                >
+                  <div className="flex items-center gap-2 mb-2">
+                    <div className={`w-4 h-4 rounded-full ${strategyType === "RELEVANCE" ? "bg-blue-500" : "border border-gray-400"}`}>
+                      {strategyType === "RELEVANCE" && <div className="w-2 h-2 bg-white rounded-full m-1"></div>}
+                    </div>
+                    <h4 className="font-medium">相关性保留</h4>
+                  </div>
+                  <p className="text-sm text-muted-foreground">保留最近几轮对话及与当前问题最相关的历史消息</p>
+                </div>
               </div>
             </div>
 
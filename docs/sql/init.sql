@@ -1,5 +1,8 @@
 -- AgentX初始化数据库脚本 - PostgreSQL版本
 
+-- 三元组索引扩展，用于市场搜索的子串和拼写相近匹配
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- 会话表，存储用户与Agent的对话会话
 CREATE TABLE sessions (
     id VARCHAR(36) PRIMARY KEY,
@@ -42,6 +45,23 @@ CREATE TABLE context (
     deleted_at TIMESTAMP
 );
 
+-- 分层摘要表，存储消息块摘要及其合并后的高层摘要
+CREATE TABLE context_summaries (
+    id VARCHAR(36) PRIMARY KEY,
+    session_id VARCHAR(36) NOT NULL,
+    level INTEGER NOT NULL DEFAULT 0,
+    start_seq INTEGER NOT NULL,
+    end_seq INTEGER NOT NULL,
+    start_message_id VARCHAR(36) NOT NULL,
+    end_message_id VARCHAR(36) NOT NULL,
+    message_count INTEGER NOT NULL DEFAULT 0,
+    content TEXT NOT NULL,
+    token_count INTEGER DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted_at TIMESTAMP
+);
+
 -- Agent 相关表结构
 CREATE TABLE agents (
     id VARCHAR(36) PRIMARY KEY,
@@ -83,6 +103,10 @@ CREATE TABLE agent_versions (
     user_id VARCHAR(36) NOT NULL,
     tool_preset_params JSONB,
     multi_modal BOOLEAN DEFAULT FALSE,
+    latest_published BOOLEAN NOT NULL DEFAULT FALSE,
+    search_vector TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B')) STORED,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     deleted_at TIMESTAMP
@@ -125,6 +149,7 @@ CREATE TABLE models (
     is_official BOOLEAN DEFAULT FALSE,
     type VARCHAR(20) NOT NULL,
     status BOOLEAN DEFAULT TRUE,
+    context_window INTEGER,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     deleted_at TIMESTAMP
@@ -198,6 +223,7 @@ CREATE TABLE tools (
     reject_reason TEXT,
     failed_step_status VARCHAR(20),
     mcp_server_name VARCHAR(255),
+    content_hash VARCHAR(64),
     status VARCHAR(20) NOT NULL,
     is_office BOOLEAN DEFAULT FALSE,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -221,8 +247,14 @@ CREATE TABLE tool_versions (
     tool_list JSONB,
     labels JSONB,
     mcp_server_name VARCHAR(255),
+    content_hash VARCHAR(64),
     is_office BOOLEAN DEFAULT FALSE,
     public_status BOOLEAN DEFAULT FALSE,
+    latest_public BOOLEAN NOT NULL DEFAULT FALSE,
+    search_vector TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B') ||
+        setweight(to_tsvector('simple', coalesce(labels::text, '')), 'C')) STORED,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     deleted_at TIMESTAMP
@@ -259,6 +291,58 @@ CREATE TABLE user_settings (
     deleted_at TIMESTAMP
 );
 
+-- Token用量小时汇总表
+CREATE TABLE token_usage_rollups (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id VARCHAR(36) NOT NULL,
+    agent_id VARCHAR(36) NOT NULL DEFAULT '',
+    model_id VARCHAR(100) NOT NULL DEFAULT '',
+    provider_id VARCHAR(36) NOT NULL DEFAULT '',
+    bucket_hour TIMESTAMP NOT NULL,
+    input_tokens BIGINT NOT NULL DEFAULT 0,
+    output_tokens BIGINT NOT NULL DEFAULT 0,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted_at TIMESTAMP
+);
+
+-- 配额分配表
+CREATE TABLE quota_allocations (
+    id VARCHAR(36) PRIMARY KEY,
+    quota_key VARCHAR(150) NOT NULL,
+    window_start TIMESTAMP NOT NULL,
+    limit_value BIGINT NOT NULL,
+    allocated BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted_at TIMESTAMP
+);
+
+-- 工具状态任务表
+CREATE TABLE tool_state_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    tool_id VARCHAR(36) NOT NULL,
+    tool_status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    run_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_by VARCHAR(100),
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted_at TIMESTAMP
+);
+
+-- 工具安装数表
+CREATE TABLE tool_install_counts (
+    tool_id VARCHAR(36) PRIMARY KEY,
+    install_count BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted_at TIMESTAMP
+);
+
 -- 添加索引
 CREATE INDEX idx_user_settings_user_id ON user_settings(user_id);
 
@@ -271,6 +355,7 @@ CREATE INDEX idx_sessions_user_id ON sessions(user_id);
 CREATE INDEX idx_sessions_agent_id ON sessions(agent_id);
 CREATE INDEX idx_context_session_id ON context(session_id);
 CREATE INDEX idx_messages_session_id ON messages(session_id);
+CREATE INDEX idx_context_summaries_session_seq ON context_summaries(session_id, start_seq);
 CREATE INDEX idx_agent_tasks_session_id ON agent_tasks(session_id);
 CREATE INDEX idx_agent_tasks_user_id ON agent_tasks(user_id);
 CREATE INDEX idx_agent_tasks_parent_task_id ON agent_tasks(parent_task_id);
@@ -287,8 +372,44 @@ CREATE INDEX idx_scheduled_tasks_user_id ON scheduled_tasks(user_id);
 CREATE INDEX idx_scheduled_tasks_agent_id ON scheduled_tasks(agent_id);
 CREATE INDEX idx_scheduled_tasks_session_id ON scheduled_tasks(session_id);
 CREATE INDEX idx_scheduled_tasks_status ON scheduled_tasks(status);
+CREATE UNIQUE INDEX uk_token_usage_rollups_key
+    ON token_usage_rollups(user_id, agent_id, model_id, provider_id, bucket_hour);
+CREATE INDEX idx_token_usage_rollups_user_bucket ON token_usage_rollups(user_id, bucket_hour);
+CREATE INDEX idx_token_usage_rollups_provider_bucket ON token_usage_rollups(provider_id, bucket_hour);
+CREATE UNIQUE INDEX uk_quota_allocations_key_window ON quota_allocations(quota_key, window_start);
+CREATE UNIQUE INDEX uk_tool_state_jobs_tool_id ON tool_state_jobs(tool_id);
+CREATE INDEX idx_tool_state_jobs_run_at ON tool_state_jobs(run_at);
+CREATE INDEX idx_tool_versions_tool_id_created_at ON tool_versions(tool_id, created_at DESC);
+CREATE INDEX idx_tool_versions_latest_public ON tool_versions(created_at DESC, id DESC)
+    WHERE latest_public = TRUE AND deleted_at IS NULL;
+CREATE INDEX idx_user_tools_tool_id ON user_tools(tool_id) WHERE deleted_at IS NULL;
+CREATE INDEX idx_tool_versions_search_vector ON tool_versions USING gin(search_vector)
+    WHERE latest_public = TRUE AND deleted_at IS NULL;
+CREATE INDEX idx_tool_versions_name_trgm ON tool_versions USING gin(name gin_trgm_ops)
+    WHERE latest_public = TRUE AND deleted_at IS NULL;
+CREATE INDEX idx_agent_versions_search_vector ON agent_versions USING gin(search_vector)
+    WHERE latest_published = TRUE AND deleted_at IS NULL;
+CREATE INDEX idx_agent_versions_name_trgm ON agent_versions USING gin(name gin_trgm_ops)
+    WHERE latest_published = TRUE AND deleted_at IS NULL;
+CREATE INDEX idx_agent_versions_agent_id_published_at ON agent_versions(agent_id, published_at DESC);
+CREATE INDEX idx_agent_versions_latest_published ON agent_versions(agent_id)
+    WHERE latest_published = TRUE AND deleted_at IS NULL;
 CREATE INDEX idx_user_settings_user_id ON user_settings(user_id);
 
+-- 回填最新公开版本标记，在已有数据的库上补建latest_public列后执行，新版本由版本变更时维护
+UPDATE tool_versions t SET latest_public = TRUE
+FROM (SELECT DISTINCT ON (tool_id) id FROM tool_versions
+    WHERE public_status = TRUE AND deleted_at IS NULL
+    ORDER BY tool_id, created_at DESC, id DESC) latest
+WHERE t.id = latest.id AND t.latest_public = FALSE;
+
+-- 回填当前生效的已发布版本标记（publish_status = 2 为已发布），在已有数据的库上补建latest_published列后执行
+UPDATE agent_versions t SET latest_published = TRUE
+FROM (SELECT DISTINCT ON (agent_id) id FROM agent_versions
+    WHERE publish_status = 2 AND deleted_at IS NULL
+    ORDER BY agent_id, published_at DESC, id DESC) latest
+WHERE t.id = latest.id AND t.latest_published = FALSE;
+
 -- 添加表和列的注释
 COMMENT ON TABLE sessions IS '会话实体类，代表一个独立的对话会话/主题';
 COMMENT ON COLUMN sessions.id IS '会话唯一ID';
@@ -320,11 +441,26 @@ COMMENT ON TABLE context IS '上下文实体类，管理会话的上下文窗口
 COMMENT ON COLUMN context.id IS '上下文唯一ID';
 COMMENT ON COLUMN context.session_id IS '所属会话ID';
 COMMENT ON COLUMN context.active_messages IS '活跃消息ID列表，JSON数组格式';
-COMMENT ON COLUMN context.summary IS '历史消息摘要';
+COMMENT ON COLUMN context.summary IS '历史消息摘要，由分层摘要拼接出的有界摘录';
 COMMENT ON COLUMN context.created_at IS '创建时间';
 COMMENT ON COLUMN context.updated_at IS '更新时间';
 COMMENT ON COLUMN context.deleted_at IS '逻辑删除时间';
 
+COMMENT ON TABLE context_summaries IS '分层摘要实体类，第0层为固定大小消息块的摘要，更高层由相邻摘要合并而成';
+COMMENT ON COLUMN context_summaries.id IS '摘要唯一ID';
+COMMENT ON COLUMN context_summaries.session_id IS '所属会话ID';
+COMMENT ON COLUMN context_summaries.level IS '摘要层级，0为消息块摘要';
+COMMENT ON COLUMN context_summaries.start_seq IS '覆盖的起始消息块序号（含）';
+COMMENT ON COLUMN context_summaries.end_seq IS '覆盖的结束消息块序号（含）';
+COMMENT ON COLUMN context_summaries.start_message_id IS '覆盖的第一条消息ID';
+COMMENT ON COLUMN context_summaries.end_message_id IS '覆盖的最后一条消息ID';
+COMMENT ON COLUMN context_summaries.message_count IS '覆盖的消息数量';
+COMMENT ON COLUMN context_summaries.content IS '摘要内容';
+COMMENT ON COLUMN context_summaries.token_count IS '摘要Token数（估算）';
+COMMENT ON COLUMN context_summaries.created_at IS '创建时间';
+COMMENT ON COLUMN context_summaries.updated_at IS '更新时间';
+COMMENT ON COLUMN context_summaries.deleted_at IS '逻辑删除时间';
+
 COMMENT ON TABLE agents IS 'Agent实体类，代表一个AI助手';
 COMMENT ON COLUMN agents.id IS 'Agent唯一ID';
 COMMENT ON COLUMN agents.name IS 'Agent名称';
@@ -358,6 +494,8 @@ COMMENT ON COLUMN agent_versions.reject_reason IS '审核拒绝原因';
 COMMENT ON COLUMN agent_versions.review_time IS '审核时间';
 COMMENT ON COLUMN agent_versions.published_at IS '发布时间';
 COMMENT ON COLUMN agent_versions.user_id IS '创建者用户ID';
+COMMENT ON COLUMN agent_versions.latest_published IS '是否为该Agent当前生效的已发布版本';
+COMMENT ON COLUMN agent_versions.search_vector IS '搜索向量，由名称和描述生成';
 COMMENT ON COLUMN agent_versions.created_at IS '创建时间';
 COMMENT ON COLUMN agent_versions.updated_at IS '更新时间';
 COMMENT ON COLUMN agent_versions.deleted_at IS '逻辑删除时间';
@@ -394,6 +532,7 @@ COMMENT ON COLUMN models.description IS '模型描述';
 COMMENT ON COLUMN models.is_official IS '是否官方模型';
 COMMENT ON COLUMN models.type IS '模型类型';
 COMMENT ON COLUMN models.status IS '模型状态';
+COMMENT ON COLUMN models.context_window IS '上下文窗口（Token数），为空时按模型ID匹配常见模型系列';
 COMMENT ON COLUMN models.created_at IS '创建时间';
 COMMENT ON COLUMN models.updated_at IS '更新时间';
 COMMENT ON COLUMN models.deleted_at IS '逻辑删除时间';
@@ -452,6 +591,7 @@ COMMENT ON COLUMN tools.install_command IS '安装命令，JSON格式';
 COMMENT ON COLUMN tools.tool_list IS '工具列表，JSON数组格式';
 COMMENT ON COLUMN tools.status IS '审核状态';
 COMMENT ON COLUMN tools.is_office IS '是否官方工具';
+COMMENT ON COLUMN tools.content_hash IS '发布内容在源仓库中的Git对象SHA';
 COMMENT ON COLUMN tools.created_at IS '创建时间';
 COMMENT ON COLUMN tools.updated_at IS '更新时间';
 COMMENT ON COLUMN tools.deleted_at IS '逻辑删除时间';
@@ -470,7 +610,10 @@ COMMENT ON COLUMN tool_versions.upload_url IS '上传URL';
 COMMENT ON COLUMN tool_versions.tool_list IS '工具列表，JSON数组格式';
 COMMENT ON COLUMN tool_versions.labels IS '标签列表，JSON数组格式';
 COMMENT ON COLUMN tool_versions.is_office IS '是否官方工具';
+COMMENT ON COLUMN tool_versions.content_hash IS '发布内容在源仓库中的Git对象SHA';
 COMMENT ON COLUMN tool_versions.public_status IS '公开状态';
+COMMENT ON COLUMN tool_versions.latest_public IS '是否为该工具最新的公开版本';
+COMMENT ON COLUMN tool_versions.search_vector IS '搜索向量，由名称、描述和标签生成';
 COMMENT ON COLUMN tool_versions.created_at IS '创建时间';
 COMMENT ON COLUMN tool_versions.updated_at IS '更新时间';
 COMMENT ON COLUMN tool_versions.deleted_at IS '逻辑删除时间';
@@ -497,4 +640,48 @@ COMMENT ON COLUMN user_settings.user_id IS '用户ID，关联users表';
 COMMENT ON COLUMN user_settings.setting_config IS '设置配置JSON，格式：{"default_model": "模型ID"}';
 COMMENT ON COLUMN user_settings.created_at IS '创建时间';
 COMMENT ON COLUMN user_settings.updated_at IS '更新时间';
-COMMENT ON COLUMN user_settings.deleted_at IS '逻辑删除时间';
\ No newline at end of file
+COMMENT ON COLUMN user_settings.deleted_at IS '逻辑删除时间';
+
+COMMENT ON TABLE token_usage_rollups IS 'Token用量小时汇总表，由内存用量账本定期批量累加写入';
+COMMENT ON COLUMN token_usage_rollups.id IS '汇总记录唯一ID';
+COMMENT ON COLUMN token_usage_rollups.user_id IS '用户ID';
+COMMENT ON COLUMN token_usage_rollups.agent_id IS 'Agent ID，无Agent的对话为空字符串';
+COMMENT ON COLUMN token_usage_rollups.model_id IS '模型ID';
+COMMENT ON COLUMN token_usage_rollups.provider_id IS '服务商ID，用于服务商配额校准';
+COMMENT ON COLUMN token_usage_rollups.bucket_hour IS '小时桶，整点时间';
+COMMENT ON COLUMN token_usage_rollups.input_tokens IS '输入Token数';
+COMMENT ON COLUMN token_usage_rollups.output_tokens IS '输出Token数';
+COMMENT ON COLUMN token_usage_rollups.request_count IS '请求次数';
+COMMENT ON COLUMN token_usage_rollups.created_at IS '创建时间';
+COMMENT ON COLUMN token_usage_rollups.updated_at IS '更新时间';
+COMMENT ON COLUMN token_usage_rollups.deleted_at IS '逻辑删除时间';
+
+COMMENT ON TABLE quota_allocations IS '配额分配表，各节点按块申请额度后在内存中扣减';
+COMMENT ON COLUMN quota_allocations.id IS '分配记录唯一ID';
+COMMENT ON COLUMN quota_allocations.quota_key IS '配额键，格式为 类型:主体ID';
+COMMENT ON COLUMN quota_allocations.window_start IS '窗口开始时间';
+COMMENT ON COLUMN quota_allocations.limit_value IS '窗口内的配额上限';
+COMMENT ON COLUMN quota_allocations.allocated IS '已分配给各节点的额度，校准时不低于实际用量';
+COMMENT ON COLUMN quota_allocations.created_at IS '创建时间';
+COMMENT ON COLUMN quota_allocations.updated_at IS '更新时间';
+COMMENT ON COLUMN quota_allocations.deleted_at IS '逻辑删除时间';
+
+COMMENT ON TABLE tool_state_jobs IS '工具状态任务表，持久化待处理的工具状态，各节点用SKIP LOCKED领取';
+COMMENT ON COLUMN tool_state_jobs.id IS '任务唯一ID，重新提交时更换';
+COMMENT ON COLUMN tool_state_jobs.tool_id IS '工具ID，每个工具最多一条任务';
+COMMENT ON COLUMN tool_state_jobs.tool_status IS '待处理的工具状态';
+COMMENT ON COLUMN tool_state_jobs.attempts IS '当前状态已尝试的次数';
+COMMENT ON COLUMN tool_state_jobs.run_at IS '最早可执行时间，重试时按退避时间推后';
+COMMENT ON COLUMN tool_state_jobs.locked_by IS '领取任务的节点';
+COMMENT ON COLUMN tool_state_jobs.locked_until IS '租约到期时间，到期后可被重新领取';
+COMMENT ON COLUMN tool_state_jobs.last_error IS '最近一次失败原因';
+COMMENT ON COLUMN tool_state_jobs.created_at IS '创建时间';
+COMMENT ON COLUMN tool_state_jobs.updated_at IS '更新时间';
+COMMENT ON COLUMN tool_state_jobs.deleted_at IS '逻辑删除时间';
+
+COMMENT ON TABLE tool_install_counts IS '工具安装数表，安装和卸载时增减，后台定期按用户工具表校正';
+COMMENT ON COLUMN tool_install_counts.tool_id IS '工具ID';
+COMMENT ON COLUMN tool_install_counts.install_count IS '安装数';
+COMMENT ON COLUMN tool_install_counts.created_at IS '创建时间';
+COMMENT ON COLUMN tool_install_counts.updated_at IS '更新时间';
+COMMENT ON COLUMN tool_install_counts.deleted_at IS '逻辑删除时间';